@@ -2,11 +2,39 @@ import frontend.*;
 import frontend.Error;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 
 public class Compiler {
     // ✅ 本地调试开关，提交时改成 false
     public static final boolean DEBUG_MODE = true;
+    // 采样 profiler 开关，开启后输出 data/profile.folded 和 data/profile.txt
+    public static final boolean PROFILE_MODE = false;
+    // 二进制轨迹开关，开启后写入 data/trace.bin（出错时由执行器自动写出），用 frontend.TraceDecoder 解码
+    public static final boolean TRACE_MODE = false;
+    // 运行结果缓存开关，缓存目录为 data/cache
+    public static final boolean CACHE_MODE = false;
+    // OSR 开关：关掉执行器逐条指令的调试输出，热循环编译成 CompiledLoop 执行（执行结果不变，日志里没有逐条执行记录）
+    public static final boolean OSR_MODE = false;
+    // OSR 编译结果缓存开关，缓存目录为 data/cache/loops（同 OSR_MODE 一样会关掉执行器的逐条调试输出）
+    public static final boolean LOOP_CACHE_MODE = false;
+    // 按需加载开关：代码写成按函数分段的 data/pcode.mod，执行时函数第一次被调用才加载
+    public static final boolean LAZY_LOAD_MODE = false;
+    // 运行时计数开关：注册 JMX MXBean（frontend:type=RuntimeMetrics），结束时写出 data/metrics.txt
+    public static final boolean METRICS_MODE = false;
+    // METRICS_MODE 下大于 0 时在 localhost 该端口提供 /metrics（OpenMetrics 文本），进程执行完后不退出，便于抓取
+    public static final int METRICS_HTTP_PORT = 0;
+    // 词法分析走内存映射 + 按字节扫描的路径，Token 存成 TokenBuffer 的平行数组（Token、错误和调试输出与默认路径一致）
+    public static final boolean MAPPED_LEX_MODE = false;
+    // 分块并行词法分析（ForkJoinPool 公共池），Token 和错误与顺序扫描一致；逐词调试输出只能顺序打印，这个模式下关掉
+    public static final boolean PARALLEL_LEX_MODE = false;
+    // 流式词法分析：不先生成完整的 Token 列表，语法分析读到哪里才扫描到哪里，只保留回溯需要的一小段 Token；
+    // Token 数要到语法分析结束才知道，逐词调试输出同样关掉
+    public static final boolean STREAM_LEX_MODE = false;
+    // 函数体并行语法分析（ForkJoinPool 公共池）：预扫描出各个函数定义的范围和签名，函数体各自分析后按源码顺序合并，
+    // 错误、符号表和调试输出与顺序分析一致；流式词法分析时没有完整的 Token 序列，仍顺序分析
+    public static final boolean PARALLEL_PARSE_MODE = false;
 
     public static void main(String[] args) throws Exception {
         if (DEBUG_MODE) {
@@ -14,17 +42,49 @@ public class Compiler {
         }
         // ✅ 将输入重定向为 input.txt
         System.setIn(new FileInputStream("data/input.txt"));
+        RuntimeMetrics metrics = RuntimeMetrics.global();
+        if (METRICS_MODE) {
+            metrics.register();
+            if (METRICS_HTTP_PORT > 0) {
+                metrics.startHttpServer(METRICS_HTTP_PORT);
+                System.out.println("OpenMetrics 已在 http://localhost:" + METRICS_HTTP_PORT + "/metrics 提供");
+            }
+        }
+        long phaseStart = System.nanoTime();
         System.out.println("Step 1: 开始词法分析...");
         Lexer lexer = new Lexer();
-        List<Token> tokens = lexer.tokenize("data/testfile.txt");
-        System.out.println("词法分析完成，Token数: " + tokens.size());
+        List<Token> tokens = null;
+        TokenSource stream = null;
+        int tokenCount = 0;
+        if (STREAM_LEX_MODE) {
+            lexer.verbose = false;
+            stream = lexer.tokenizeStreaming("data/testfile.txt");
+            System.out.println("流式词法分析，Token 在语法分析时按需扫描");
+        } else if (PARALLEL_LEX_MODE) {
+            lexer.verbose = false;
+            tokens = lexer.tokenizeParallel("data/testfile.txt");
+        } else {
+            tokens = MAPPED_LEX_MODE ? lexer.tokenizeMapped("data/testfile.txt") : lexer.tokenize("data/testfile.txt");
+        }
+        if (tokens != null) {
+            tokenCount = tokens.size();
+            System.out.println("词法分析完成，Token数: " + tokenCount);
+        }
+        metrics.recordPhase(RuntimeMetrics.Phase.LEX, System.nanoTime() - phaseStart);
 
         // 收集错误
         List<Error> errors = lexer.errors;
         CodeGenerator codeGenerator = new CodeGenerator();
-        Parser parser = new Parser(tokens, errors, lexer.errorLines, codeGenerator);
+        Parser parser = stream != null ? new Parser(stream, errors, lexer.errorLines, codeGenerator)
+                : new Parser(tokens, errors, lexer.errorLines, codeGenerator);
         System.out.println("Step 2: 开始语法分析...");
-        ASTNode ast = parser.parse(); // ← parse 现在有返回值
+        phaseStart = System.nanoTime();
+        ASTNode ast = PARALLEL_PARSE_MODE ? parser.parseParallel() : parser.parse(); // ← parse 现在有返回值
+        if (stream != null) {
+            tokenCount = stream.finish();
+            System.out.println("词法分析完成，Token数: " + tokenCount);
+        }
+        metrics.recordPhase(RuntimeMetrics.Phase.PARSE, System.nanoTime() - phaseStart);
         System.out.println(ast);
         System.out.println("语法分析完成");
 
@@ -64,7 +124,10 @@ public class Compiler {
             // 生成中间代码
             System.out.println("Step 3: 生成中间代码...");
             // CodeGenerator codeGen = new CodeGenerator();
+            phaseStart = System.nanoTime();
             List<PCode> pcodes = codeGenerator.generate(ast);
+            metrics.recordPhase(RuntimeMetrics.Phase.CODEGEN, System.nanoTime() - phaseStart);
+            metrics.recordCompile(tokenCount, countNodes(ast), pcodes.size());
             System.out.println("中间代码生成完成，指令数: " + pcodes.size());
 
             // 写入 pcode.txt
@@ -81,19 +144,115 @@ public class Compiler {
 
             // 执行中间代码
             System.out.println("Step 4: 执行 PCode...");
-            PCodeExecutor executor = new PCodeExecutor(pcodes);
+            PCodeExecutor executor;
+            CodeModule.Image image = null;
+            if (LAZY_LOAD_MODE) {
+                CodeModule.build(pcodes, codeGenerator.funcEntryMap, CodeGenerator.stringPool).write("data/pcode.mod");
+                CodeModule module = CodeModule.read("data/pcode.mod");
+                image = module.newImage();
+                executor = new PCodeExecutor(image);
+                executor.setStringPool(module.getStringPool());
+            } else {
+                executor = new PCodeExecutor(pcodes);
+            }
 
             // ✅ 添加这段代码：
             Integer entry = codeGenerator.funcEntryMap.get("main");
             if (entry == null) throw new RuntimeException("没有找到 main 函数的入口地址！");
             executor.setPC(entry);
+
+            // 结果缓存：同一程序 + 同一输入（不读输入的程序忽略输入）直接复用上次的输出
+            ResultCache cache = null;
+            String cacheKey = null;
+            StringWriter captured = null;
+            if (CACHE_MODE) {
+                cache = new ResultCache("data/cache");
+                byte[] inputBytes = Files.readAllBytes(Paths.get("data/input.txt"));
+                String programHash = ResultCache.programHash(pcodes, CodeGenerator.stringPool, entry);
+                cacheKey = ResultCache.key(programHash, ResultCache.readsInput(pcodes), inputBytes);
+                ResultCache.Result cached = cache.get(cacheKey);
+                if (cached != null) {
+                    Files.write(Paths.get("data/pcoderesult.txt"), cached.output);
+                    System.out.println("命中结果缓存（" + cached.status + "），结果已写入 pcoderesult.txt");
+                    System.out.println("所有流程执行完毕！");
+                    return;
+                }
+                captured = new StringWriter();
+                executor.setOutput(captured);
+            }
+
+            TraceRecorder trace = null;
+            if (TRACE_MODE) {
+                trace = new TraceRecorder();
+                executor.setTraceRecorder(trace);
+            }
+
+            SamplingProfiler profiler = null;
+            if (PROFILE_MODE) {
+                profiler = new SamplingProfiler(executor, pcodes, codeGenerator.funcEntryMap);
+                profiler.start();
+            }
             
+            if (OSR_MODE || LOOP_CACHE_MODE) {
+                executor.setVerbose(false); // 逐条调试输出开着时执行器不做 OSR
+            }
+            if (METRICS_MODE) {
+                executor.setMetrics(metrics);
+            }
+            if (LOOP_CACHE_MODE) {
+                executor.setLoopCache(new CompiledLoopCache("data/cache/loops"));
+            }
+            phaseStart = System.nanoTime();
             executor.execute(); // 自动写入 pcoderesult.txt
+            metrics.recordPhase(RuntimeMetrics.Phase.EXECUTE, System.nanoTime() - phaseStart);
+
+            if (profiler != null) {
+                profiler.stop();
+                profiler.writeCollapsed("data/profile.folded");
+                profiler.writeReport("data/profile.txt");
+                System.out.println("采样结果已写入 profile.folded / profile.txt，样本数: " + profiler.getTotalSamples());
+            }
+            if (image != null) {
+                System.out.println("按需加载函数 " + image.getLoadedFunctionCount() + " / " + codeGenerator.funcEntryMap.size()
+                        + "，指令 " + image.getLoadedInstructionCount() + " / " + image.size() + ": " + image.getLoadedFunctions());
+            }
+            if (LOOP_CACHE_MODE) {
+                System.out.println("OSR 编译循环 " + executor.getCompiledLoopCount() + " 个，其中缓存命中 " + executor.getCachedLoopCount() + " 个");
+            } else if (OSR_MODE) {
+                System.out.println("OSR 编译循环 " + executor.getCompiledLoopCount() + " 个");
+            }
+            if (cache != null) {
+                byte[] outputBytes = captured.toString().getBytes(StandardCharsets.UTF_8);
+                Files.write(Paths.get("data/pcoderesult.txt"), outputBytes);
+                cache.put(cacheKey, new ResultCache.Result(executor.getStatus(), outputBytes));
+            }
+            if (trace != null && executor.getStatus() == PCodeExecutor.Status.HALTED) {
+                trace.dump(trace.getFailureDumpPath());
+                System.out.println("执行轨迹已写入 " + trace.getFailureDumpPath() + "，共 " + trace.getCount() + " 条指令");
+            }
             System.out.println("执行完成，结果已写入 pcoderesult.txt");
         } else {
             System.out.println("存在语法错误，跳过中间代码生成与执行");
         }
 
+        if (METRICS_MODE) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get("data/metrics.txt"), StandardCharsets.UTF_8)) {
+                metrics.writeOpenMetrics(writer);
+            }
+            System.out.println("运行时计数已写入 metrics.txt");
+        }
+
         System.out.println("所有流程执行完毕！");
     }
+
+    private static int countNodes(ASTNode node) {
+        if (node == null) {
+            return 0;
+        }
+        int count = 1;
+        for (ASTNode child : node.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
 }
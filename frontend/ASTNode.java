@@ -50,6 +50,11 @@ public class ASTNode {
         return name;  // 把 name 作为类型名返回
     }
 
+    // 字面量节点解码好的值，见 Literal
+    public Literal getLiteral() {
+        return token != null ? token.literal : null;
+    }
+
     public String getValue() {
         if (token != null) {
             return token.value;
@@ -0,0 +1,114 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// 检查执行器热路径预热后不再分配内存：先跑 WARMUP 条指令（栈扩容、首次分配都在这里），
+// 再用 ThreadMXBean.getThreadAllocatedBytes 量接下来 MEASURE 条指令期间本线程分配的字节数，
+// 解释执行和 OSR 各量一次，超过允许值就以非零状态退出。
+// 用法：java frontend.AllocationCheck [源文件 [允许的字节数]]，不给源文件时用内置的循环程序
+public class AllocationCheck {
+    static final long WARMUP = 200_000;
+    static final long MEASURE = 5_000_000;
+    static final long DEFAULT_BUDGET = 4096; // 程序结束时写出结果的那一点分配
+
+    // 循环、函数调用、全局变量和局部变量都要走到
+    private static final String LOOP_PROGRAM = String.join("\n",
+            "int total;",
+            "int step(int n) {",
+            "    int k;",
+            "    int s = 0;",
+            "    for (k = 0; k < n; k = k + 1) {",
+            "        s = (s + k * 7) % 10007;",
+            "    }",
+            "    return s;",
+            "}",
+            "int main() {",
+            "    int i;",
+            "    for (i = 0; i < 2000000; i = i + 1) {",
+            "        total = (total + i / 3 + step(4)) % 65536;",
+            "    }",
+            "    printf(\"%d\\n\", total);",
+            "    return 0;",
+            "}",
+            "");
+
+    public static void main(String[] args) throws IOException {
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET;
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+            System.err.println("当前 JVM 不支持按线程统计分配字节数");
+            System.exit(2);
+        }
+
+        Path source;
+        if (args.length > 0) {
+            source = Path.of(args[0]);
+        } else {
+            source = Files.createTempFile("alloc-check", ".c");
+            source.toFile().deleteOnExit();
+            Files.write(source, LOOP_PROGRAM.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // 词法 / 语法 / 代码生成都有大量调试输出，检查时不需要
+        PrintStream stdout = System.out;
+        List<PCode> code;
+        int entry;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Lexer lexer = new Lexer();
+            List<Token> tokens = lexer.tokenize(source.toString());
+            CodeGenerator codeGenerator = new CodeGenerator();
+            Parser parser = new Parser(tokens, lexer.errors, lexer.errorLines, codeGenerator);
+            ASTNode ast = parser.parse();
+            if (!lexer.errors.isEmpty()) {
+                stdout.println("❌ 源文件有语法错误: " + source);
+                System.exit(2);
+            }
+            code = codeGenerator.generate(ast);
+            entry = codeGenerator.funcEntryMap.get("main");
+        } finally {
+            System.setOut(stdout);
+        }
+
+        long tid = Thread.currentThread().threadId();
+        boolean passed = true;
+        for (boolean osr : new boolean[] {false, true}) {
+            PCodeExecutor executor = new PCodeExecutor(code);
+            executor.setPC(entry);
+            executor.setVerbose(false);
+            executor.setOsrEnabled(osr);
+            executor.setOutput(new StringWriter(1 << 16));
+            executor.setInput(new ByteArrayInputStream(new byte[0]));
+            executor.run(WARMUP);
+
+            long instructionsBefore = executor.getInstructionCount();
+            long bytesBefore = threadMXBean.getThreadAllocatedBytes(tid);
+            PCodeExecutor.Status status = executor.run(MEASURE);
+            long bytes = threadMXBean.getThreadAllocatedBytes(tid) - bytesBefore;
+            long instructions = executor.getInstructionCount() - instructionsBefore;
+
+            String mode = osr ? "OSR" : "解释执行";
+            if (instructions == 0) {
+                System.out.println("⚠️ " + mode + ": 预热阶段程序已结束（" + status + "），换一个运行更久的程序");
+                passed = false;
+            } else if (bytes > budget) {
+                System.out.println("❌ " + mode + ": " + instructions + " 条指令分配了 " + bytes + " 字节，超过允许的 " + budget + " 字节");
+                passed = false;
+            } else {
+                System.out.println("✅ " + mode + ": " + instructions + " 条指令分配了 " + bytes + " 字节");
+            }
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
@@ -30,6 +30,9 @@ public class CodeGenerator {
 
     private Stack<Integer> exitLabelStack = new Stack<>();
     private Stack<Integer> stepLabelStack = new Stack<>();
+    private int currentLine = -1; // 最近访问到的 token 所在行，用于给指令标注源代码行号
+    // 把形如 for(i=a; i<b; i=i+1) { s = s + E; ... } 的计数循环折叠成闭式计算，见 tryFoldCountedLoop
+    public boolean foldCountedLoops = true;
 
     // 全局变量的层级，假设为 -1
     public static final int GLOBAL_LEVEL = -1;
@@ -71,17 +74,16 @@ public class CodeGenerator {
     }
 
     public String parseEscapes(String s) {
-        return s
-            .replace("\\n", "\n")
-            .replace("\\t", "\t")
-            .replace("\\\"", "\"")
-            .replace("\\\\", "\\");
+        return Literal.unescape(s);
     }
 
     // ✅ 封装函数
     public int getStringIndex(String s) {
-        String parsed = parseEscapes(s); // 处理转义字符
-    
+        return internString(parseEscapes(s)); // 处理转义字符
+    }
+
+    // 已经转义过的字符串（如 STRCON 的 Literal.text）放进字符串池
+    private int internString(String parsed) {
         if (!stringTable.containsKey(parsed)) {
             stringTable.put(parsed, stringPool.size());
             stringPool.add(parsed);
@@ -92,6 +94,7 @@ public class CodeGenerator {
     private void emit(PCode inst, ASTNode node) {
         System.out.println("[PCode-DEBUG] 添加指令: " + inst + "  来自节点: " + node.getType() + 
             (node.getValue() != null ? ", 值: " + node.getValue() : ""));
+        inst.setLine(node.getToken() != null ? node.getToken().lineNumber : currentLine);
         if (isGeneratingGlobalInit) { // <-- 修改：根据标记决定添加到哪个列表
             globalInitCodeList.add(inst);
         } else {
@@ -99,6 +102,18 @@ public class CodeGenerator {
         }
     }    
 
+    // 与 getSymbol 查找顺序相同但不打调试信息，找不到返回 null；
+    // 给只做分析、不一定生成代码的地方用（比如计数循环折叠），免得调试日志里多出没有对应指令的查找记录
+    private Symbol findSymbol(String varName) {
+        for (int i = symbolTableStack.size() - 1; i >= 0; i--) {
+            Symbol sym = symbolTableStack.get(i).get(varName);
+            if (sym != null) {
+                return sym;
+            }
+        }
+        return globalSymbolTable.get(varName);
+    }
+
     private Symbol getSymbol(String varName) {
         // 1. 从栈顶向栈底查找局部作用域
         for (int i = symbolTableStack.size() - 1; i >= 0; i--) {
@@ -121,6 +136,9 @@ public class CodeGenerator {
 
     private void visit(ASTNode node) {
         if (node == null) return;
+        if (node.getToken() != null) {
+            currentLine = node.getToken().lineNumber;
+        }
         System.out.println("[DEBUG] 访问节点类型: " + node.getType() + (node.getValue() != null ? ", 值: " + node.getValue() : ""));
 
         switch (node.getType()) {
@@ -232,6 +250,7 @@ public class CodeGenerator {
 
                     if (child.getToken() != null && child.getToken().type == TokenType.IDENFR) {
                         funcName = child.getToken().value; // 🔍 找到 IDENFR 节点，提取其值作为函数名
+                        currentLine = child.getToken().lineNumber; // 形参 STO 等入口指令归到函数头所在行
                         System.out.println("[DEBUG][FuncDef] 找到函数名节点，函数名: " + funcName);
                     }
                     if ("FuncFParams".equals(child.getType())) {
@@ -691,8 +710,9 @@ public class CodeGenerator {
                     String str = first.getValue();  // 获取STRCON值 比如 "21371295\n"
                     System.out.println("[DEBUG] 输出字符串常量: " + str);
 
-                    // ✅ 直接进行转义处理
-                    String parsed = parseEscapes(str);
+                    // ✅ 词法分析时已经转义过，直接用
+                    Literal literal = first.getLiteral();
+                    String parsed = literal != null ? literal.text : parseEscapes(str);
                     System.out.println("[DEBUG] 格式化解析后字符串: " + parsed);
 
                     // ✅ 统计 format 占位符数量
@@ -714,7 +734,7 @@ public class CodeGenerator {
                     }
 
                     // 如果你支持字符串输出，建议加入 PRINTSTR 指令（可自定义）
-                    int idx = getStringIndex(str);
+                    int idx = internString(parsed);
                     emit(new PCode(PCode.OpCode.PRINTSTR, 0, idx), node); // 🎯生成PRINTSTR指令
                 
                     // ✅ 提前 break，不再进入后面的 PRINT 循环
@@ -799,8 +819,9 @@ public class CodeGenerator {
             case "INTCON": // 处理整数常量 Token
             case "IntLiteral": // 或者处理整数常量 AST 节点
                 String valStr = node.getValue();
+                Literal intLiteral = node.getLiteral();
                 try {
-                    int val = Integer.parseInt(valStr);
+                    int val = intLiteral != null ? intLiteral.value : Integer.parseInt(valStr);
                     System.out.println("[DEBUG] 生成 LIT 指令: 加载常量 " + val);
                     emit(new PCode(PCode.OpCode.LIT, 0, val), node);
                 } catch (NumberFormatException e) {
@@ -813,7 +834,12 @@ public class CodeGenerator {
             case "CHRCON":
             case "CharLiteral":
                 String charStr = node.getValue();
-                if (charStr.length() >= 3 && charStr.startsWith("'") && charStr.endsWith("'")) {
+                Literal charLiteral = node.getLiteral();
+                if (charLiteral != null) {
+                    int asciiVal = charLiteral.value; // 词法分析时已经取好中间的字符
+                    System.out.println("[DEBUG] 生成 LIT 指令: 加载字符ASCII码 " + asciiVal);
+                    emit(new PCode(PCode.OpCode.LIT, 0, asciiVal), node);
+                } else if (charStr.length() >= 3 && charStr.startsWith("'") && charStr.endsWith("'")) {
                     char innerChar = charStr.charAt(1); // 提取中间的字符
                     int asciiVal = (int) innerChar;
                     System.out.println("[DEBUG] 生成 LIT 指令: 加载字符ASCII码 " + asciiVal);
@@ -970,6 +996,9 @@ public class CodeGenerator {
 
             case "ForStmt":
                 System.out.println("[DEBUG] 处理 ForStmt");
+                if (foldCountedLoops && tryFoldCountedLoop(node)) {
+                    break;
+                }
             
                 // for循环各部分
                 ASTNode initNode = node.getChildren().get(0);  // 初始赋值
@@ -1273,6 +1302,337 @@ public class CodeGenerator {
     }
     
 
+    // ===== 计数循环折叠 =====
+    // 识别 for(i = a; i < b; i = i + 1) 且循环体只有下面几种赋值的循环：
+    //   v = v + E / v = E + v / v = v - E   → v ± n*E
+    //   v = v + i / v = i + v / v = v - i   → v ± (n*i + n(n-1)/2)
+    //   v = E                               → n > 0 时 v = E
+    // 其中 n 是迭代次数（TRIP 指令算出），E 和 b 只能是常量、变量和 + - * 组成的纯表达式，
+    // 不能引用 i 和循环体里被赋值的变量（所以对每次迭代都是同一个值，也不会除零）。
+    // 循环结束后 i = i + n，与逐次执行的结果一致。所有运算都按 int 回绕，和原循环逐位相同。
+    // i、v 和 E、b 里的变量都只能是全局变量（见 isFoldableVariable），用到局部变量的循环不折叠。
+    // 不匹配时返回 false，什么都不生成，由调用方按普通循环生成。等价性检查见 FoldCheck。
+    private static final int FOLD_ADD = 0, FOLD_SUB = 1, FOLD_ADD_INDEX = 2, FOLD_SUB_INDEX = 3, FOLD_FILL = 4;
+
+    private boolean tryFoldCountedLoop(ASTNode node) {
+        List<ASTNode> children = node.getChildren();
+        if (children.size() < 4) {
+            return false;
+        }
+        ASTNode initNode = children.get(0);
+        ASTNode condNode = children.get(1);
+        ASTNode stepNode = children.get(2);
+
+        // 条件：i < b 或 i <= 常量
+        if (condNode == null || condNode.getChildren().size() != 2
+                || !("RelExp_LSS".equals(condNode.getType()) || "RelExp_LEQ".equals(condNode.getType()))) {
+            return false;
+        }
+        String indexName = singleIdent(condNode.getChildren().get(0));
+        ASTNode boundNode = condNode.getChildren().get(1);
+        if (indexName == null) {
+            return false;
+        }
+        Integer inclusiveBound = null;
+        if ("RelExp_LEQ".equals(condNode.getType())) {
+            inclusiveBound = intConstant(boundNode);
+            if (inclusiveBound == null || inclusiveBound == Integer.MAX_VALUE) {
+                return false; // i <= MAX 永远为真，不能折叠
+            }
+        }
+
+        // 步进：i = i + 1 或 i = 1 + i
+        if (stepNode == null || !"AssignExp".equals(stepNode.getType()) || stepNode.getChildren().size() != 2
+                || !indexName.equals(singleIdent(stepNode.getChildren().get(0)))) {
+            return false;
+        }
+        ASTNode stepExp = unwrapExp(stepNode.getChildren().get(1));
+        if (stepExp == null || !"AddExpr".equals(stepExp.getType())) {
+            return false;
+        }
+        boolean stepOk = (indexName.equals(singleIdent(stepExp.getChildren().get(0))) && Integer.valueOf(1).equals(intConstant(stepExp.getChildren().get(1))))
+                || (indexName.equals(singleIdent(stepExp.getChildren().get(1))) && Integer.valueOf(1).equals(intConstant(stepExp.getChildren().get(0))));
+        if (!stepOk) {
+            return false;
+        }
+
+        // 初始化：没有，或者 i = 纯表达式
+        if (initNode != null && !"Null".equals(initNode.getType())) {
+            if (!"AssignExp".equals(initNode.getType()) || initNode.getChildren().size() != 2
+                    || !indexName.equals(singleIdent(initNode.getChildren().get(0)))) {
+                return false;
+            }
+        }
+
+        // 循环体：只能是赋值语句
+        List<ASTNode> assigns = new ArrayList<>();
+        for (ASTNode stmt : children.subList(3, children.size())) {
+            if (!collectAssigns(stmt, assigns)) {
+                return false;
+            }
+        }
+        if (assigns.isEmpty()) {
+            return false;
+        }
+
+        java.util.Set<String> written = new java.util.HashSet<>();
+        written.add(indexName);
+        for (ASTNode assign : assigns) {
+            String target = singleIdent(assign.getChildren().get(0));
+            if (target == null || !written.add(target)) {
+                return false; // 同一变量赋值两次或给 i 赋值
+            }
+        }
+        if (!isFoldableVariable(indexName)) {
+            return false;
+        }
+
+        // 逐条分类
+        int[] kinds = new int[assigns.size()];
+        ASTNode[] operands = new ASTNode[assigns.size()];
+        for (int k = 0; k < assigns.size(); k++) {
+            ASTNode assign = assigns.get(k);
+            String target = singleIdent(assign.getChildren().get(0));
+            if (!isFoldableVariable(target)) {
+                return false;
+            }
+            ASTNode rhs = unwrapExp(assign.getChildren().get(1));
+            if (rhs == null) {
+                return false;
+            }
+            List<ASTNode> ops = rhs.getChildren();
+            if ("AddExpr".equals(rhs.getType()) && target.equals(singleIdent(ops.get(0)))) {
+                kinds[k] = indexName.equals(singleIdent(ops.get(1))) ? FOLD_ADD_INDEX : FOLD_ADD;
+                operands[k] = ops.get(1);
+            } else if ("AddExpr".equals(rhs.getType()) && target.equals(singleIdent(ops.get(1)))) {
+                kinds[k] = indexName.equals(singleIdent(ops.get(0))) ? FOLD_ADD_INDEX : FOLD_ADD;
+                operands[k] = ops.get(0);
+            } else if ("SubExpr".equals(rhs.getType()) && target.equals(singleIdent(ops.get(0)))) {
+                kinds[k] = indexName.equals(singleIdent(ops.get(1))) ? FOLD_SUB_INDEX : FOLD_SUB;
+                operands[k] = ops.get(1);
+            } else {
+                kinds[k] = FOLD_FILL;
+                operands[k] = assign.getChildren().get(1);
+            }
+            if ((kinds[k] == FOLD_ADD || kinds[k] == FOLD_SUB || kinds[k] == FOLD_FILL)
+                    && !isInvariant(operands[k], written)) {
+                return false;
+            }
+        }
+        if (inclusiveBound == null && !isInvariant(boundNode, written)) {
+            return false;
+        }
+        // 被写的变量两两不能同址，也不能和表达式读的变量同址
+        java.util.Set<Long> writtenAddresses = new java.util.HashSet<>();
+        for (String name : written) {
+            if (!writtenAddresses.add(addressKey(findSymbol(name)))) {
+                return false;
+            }
+        }
+        java.util.Set<String> read = new java.util.HashSet<>();
+        collectIdents(boundNode, read);
+        for (ASTNode operand : operands) {
+            collectIdents(operand, read);
+        }
+        for (String name : read) {
+            if (!written.contains(name) && writtenAddresses.contains(addressKey(findSymbol(name)))) {
+                return false;
+            }
+        }
+
+        // ---- 匹配成功，生成代码 ----
+        System.out.println("[DEBUG][ForStmt] 计数循环折叠: 下标 " + indexName + "，" + assigns.size() + " 条赋值");
+        if (initNode != null && !"Null".equals(initNode.getType())) {
+            visit(initNode); // AssignExp：计算初值并 STO 到 i
+        }
+        Symbol index = findSymbol(indexName);
+        for (int k = 0; k < assigns.size(); k++) {
+            ASTNode assign = assigns.get(k);
+            Symbol target = findSymbol(singleIdent(assign.getChildren().get(0)));
+            switch (kinds[k]) {
+                case FOLD_ADD:
+                case FOLD_SUB:
+                    // v = v ± n * E
+                    emit(new PCode(OpCode.LOD, target.level, target.offset), assign);
+                    emitTripCount(index, boundNode, inclusiveBound, node);
+                    visit(operands[k]);
+                    emit(new PCode(OpCode.MUL, 0, 0), assign);
+                    emit(new PCode(kinds[k] == FOLD_ADD ? OpCode.ADD : OpCode.SUB, 0, 0), assign);
+                    break;
+                case FOLD_ADD_INDEX:
+                case FOLD_SUB_INDEX:
+                    // v = v ± n * i ± n(n-1)/2
+                    OpCode op = kinds[k] == FOLD_ADD_INDEX ? OpCode.ADD : OpCode.SUB;
+                    emit(new PCode(OpCode.LOD, target.level, target.offset), assign);
+                    emitTripCount(index, boundNode, inclusiveBound, node);
+                    emit(new PCode(OpCode.LOD, index.level, index.offset), assign);
+                    emit(new PCode(OpCode.MUL, 0, 0), assign);
+                    emit(new PCode(op, 0, 0), assign);
+                    emitTripCount(index, boundNode, inclusiveBound, node);
+                    emit(new PCode(OpCode.TRIANG, 0, 0), assign);
+                    emit(new PCode(op, 0, 0), assign);
+                    break;
+                default:
+                    // n > 0 时 v = E
+                    int skipLabel = labelCount++;
+                    emitTripCount(index, boundNode, inclusiveBound, node);
+                    emit(new PCode(OpCode.JPC, 0, skipLabel), assign);
+                    visit(operands[k]);
+                    emit(new PCode(OpCode.STO, target.level, target.offset), assign);
+                    labelAddressMap.put(skipLabel, codeList.size());
+                    continue;
+            }
+            emit(new PCode(OpCode.STO, target.level, target.offset), assign);
+        }
+        // i = i + n
+        emit(new PCode(OpCode.LOD, index.level, index.offset), stepNode);
+        emitTripCount(index, boundNode, inclusiveBound, node);
+        emit(new PCode(OpCode.ADD, 0, 0), stepNode);
+        emit(new PCode(OpCode.STO, index.level, index.offset), stepNode);
+        return true;
+    }
+
+    // 压入迭代次数：LOD i; b; TRIP（i <= c 时 b 取 c + 1）
+    private void emitTripCount(Symbol index, ASTNode boundNode, Integer inclusiveBound, ASTNode node) {
+        emit(new PCode(OpCode.LOD, index.level, index.offset), node);
+        if (inclusiveBound != null) {
+            emit(new PCode(OpCode.LIT, 0, inclusiveBound + 1), node);
+        } else {
+            visit(boundNode);
+        }
+        emit(new PCode(OpCode.TRIP, 0, 0), node);
+    }
+
+    // 展开循环体里的 Stmt / Block，收集 AssignStmt；遇到其他语句返回 false
+    private boolean collectAssigns(ASTNode stmt, List<ASTNode> assigns) {
+        switch (stmt.getType()) {
+            case "Stmt":
+            case "Block":
+                for (ASTNode child : stmt.getChildren()) {
+                    if (!collectAssigns(child, assigns)) {
+                        return false;
+                    }
+                }
+                return true;
+            case "AssignStmt":
+                if (stmt.getChildren().size() != 2) {
+                    return false;
+                }
+                assigns.add(stmt);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // 只折叠普通 int 变量：参数的 LOD/STO 偏移不一致，常量不可赋值。
+    // 层差只能是全局（-1）或当前帧（0）：层差 > 0 的地址要经内存里的静态链计算，
+    // 循环里的写入可能改到静态链，逐次执行和一次算完的结果就不一样了。
+    // 局部变量生成的层差是作用域深度（>= 1），所以实际上只有全部用全局变量的循环会被折叠
+    private boolean isFoldableVariable(String name) {
+        Symbol sym = findSymbol(name);
+        return sym != null && !sym.isParam && !sym.isConst && sym.offset >= 0
+                && (sym.level == GLOBAL_LEVEL || sym.level == 0);
+    }
+
+    // (level, offset) 作为地址标识，用于检查不同名字是否落在同一内存单元
+    private static long addressKey(Symbol sym) {
+        return ((long) sym.level << 32) | (sym.offset & 0xffffffffL);
+    }
+
+    // 收集表达式里引用的变量名
+    private void collectIdents(ASTNode node, java.util.Set<String> names) {
+        if ("IDENFR".equals(node.getType())) {
+            names.add(node.getValue());
+        }
+        for (ASTNode child : node.getChildren()) {
+            collectIdents(child, names);
+        }
+    }
+
+    // 纯表达式（常量、变量、+ - *、一元 + - !），且不引用 excluded 中的变量
+    private boolean isInvariant(ASTNode node, java.util.Set<String> excluded) {
+        if (node == null) {
+            return false;
+        }
+        switch (node.getType()) {
+            case "INTCON":
+            case "CHRCON":
+                return true;
+            case "IDENFR":
+                return !excluded.contains(node.getValue()) && isKnownVariable(node.getValue());
+            case "Exp":
+            case "PrimaryExp":
+            case "Number":
+            case "LVal":
+            case "AddExpr":
+            case "SubExpr":
+            case "MulExpr":
+                break;
+            case "UnaryExp":
+                if (node.getChildren().size() == 2) {
+                    String op = node.getChildren().get(0).getValue();
+                    if (!"-".equals(op) && !"+".equals(op) && !"!".equals(op)) {
+                        return false;
+                    }
+                    return isInvariant(node.getChildren().get(1), excluded);
+                }
+                break;
+            default:
+                return false; // 函数调用、getint、除法取模等
+        }
+        if (node.getChildren().isEmpty()) {
+            return false;
+        }
+        for (ASTNode child : node.getChildren()) {
+            if (!isInvariant(child, excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isKnownVariable(String name) {
+        return findSymbol(name) != null;
+    }
+
+    // 去掉 Exp / UnaryExp / PrimaryExp 单孩子包装
+    private ASTNode unwrapExp(ASTNode node) {
+        while (node != null && node.getChildren().size() == 1
+                && ("Exp".equals(node.getType()) || "UnaryExp".equals(node.getType()) || "PrimaryExp".equals(node.getType()))) {
+            node = node.getChildren().get(0);
+        }
+        return node;
+    }
+
+    // 表达式恰好是一个变量时返回变量名
+    private String singleIdent(ASTNode node) {
+        node = unwrapExp(node);
+        if (node != null && "LVal".equals(node.getType()) && node.getChildren().size() == 1) {
+            node = node.getChildren().get(0);
+        }
+        return node != null && "IDENFR".equals(node.getType()) ? node.getValue() : null;
+    }
+
+    // 表达式恰好是一个整数常量时返回其值
+    private Integer intConstant(ASTNode node) {
+        node = unwrapExp(node);
+        if (node != null && "Number".equals(node.getType()) && node.getChildren().size() == 1) {
+            node = node.getChildren().get(0);
+        }
+        if (node != null && "INTCON".equals(node.getType())) {
+            if (node.getLiteral() != null) {
+                return node.getLiteral().value;
+            }
+            try {
+                return Integer.parseInt(node.getValue());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     // private int getVarAddress(String varName) {
     //     if (varName == null || varName.isEmpty()) {
     //         System.err.println("[ERROR] CodeGenerator: 无效的变量名!");
@@ -0,0 +1,368 @@
+package frontend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 按函数分段的编译产物。每个函数（funcEntryMap 中的一个入口）是一段，段内 JMP/JPC
+// 存成相对段首的偏移，CALL 存成目标段的序号。执行时用 newImage() 得到一个代码镜像，
+// 某个函数的代码只有在第一次执行到它（通常是第一次 CALL）时才解码并重定位，
+// 没被调用的函数不付出任何加载成本。
+//
+// 文件格式（大端）：
+//   int MAGIC, int VERSION, int 指令总数
+//   int 字符串个数, 每个字符串 int 字节数 + UTF-8 字节
+//   int 段数, 每段: 名字（同字符串）, int 起始地址, int 指令数, int 段体在文件中的偏移
+//   段体: 每条指令 INST_SIZE 字节 = byte op, int level, int address, int paramCount, int line
+public class CodeModule {
+    public static final int MAGIC = 0x50434d44; // "PCMD"
+    public static final int VERSION = 1;
+    static final int INST_SIZE = 17;
+    // 第一个函数入口之前的代码（正常情况下没有）归到这个段
+    static final String PRELUDE = "<prelude>";
+
+    private final ByteBuffer data;
+    private final int codeSize;
+    private final List<String> stringPool;
+    private final String[] names;
+    private final int[] starts;   // 升序
+    private final int[] lengths;
+    private final int[] offsets;
+
+    private CodeModule(ByteBuffer data, int codeSize, List<String> stringPool,
+                       String[] names, int[] starts, int[] lengths, int[] offsets) {
+        this.data = data;
+        this.codeSize = codeSize;
+        this.stringPool = stringPool;
+        this.names = names;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.offsets = offsets;
+    }
+
+    // 从代码生成结果构造模块：按入口地址切段并编码
+    public static CodeModule build(List<PCode> code, Map<String, Integer> funcEntryMap, List<String> stringPool) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(funcEntryMap.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        List<String> segNames = new ArrayList<>();
+        List<Integer> segStarts = new ArrayList<>();
+        if (entries.isEmpty() || entries.get(0).getValue() > 0) {
+            segNames.add(PRELUDE);
+            segStarts.add(0);
+        }
+        for (Map.Entry<String, Integer> e : entries) {
+            if (!segStarts.isEmpty() && segStarts.get(segStarts.size() - 1).equals(e.getValue())) {
+                throw new RuntimeException("函数 " + e.getKey() + " 与 " + segNames.get(segNames.size() - 1) + " 入口地址相同: " + e.getValue());
+            }
+            segNames.add(e.getKey());
+            segStarts.add(e.getValue());
+        }
+
+        int count = segStarts.size();
+        String[] names = segNames.toArray(new String[0]);
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        Map<Integer, Integer> segmentByEntry = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            starts[i] = segStarts.get(i);
+            segmentByEntry.put(starts[i], i);
+        }
+        for (int i = 0; i < count; i++) {
+            int end = i + 1 < count ? starts[i + 1] : code.size();
+            lengths[i] = end - starts[i];
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + code.size() * INST_SIZE);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeHeader(out, code.size(), stringPool, names, starts, lengths, new int[count]);
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = out.size();
+                for (int pc = starts[i]; pc < starts[i] + lengths[i]; pc++) {
+                    writeInstruction(out, code.get(pc), i, starts, lengths, segmentByEntry);
+                }
+            }
+            out.flush();
+            byte[] raw = bytes.toByteArray();
+            // 段偏移要等段体写完才知道，头部长度不变，重写一遍头部覆盖占位
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeHeader(new DataOutputStream(header), code.size(), stringPool, names, starts, lengths, offsets);
+            System.arraycopy(header.toByteArray(), 0, raw, 0, header.size());
+            return new CodeModule(ByteBuffer.wrap(raw), code.size(), new ArrayList<>(stringPool), names, starts, lengths, offsets);
+        } catch (IOException e) {
+            throw new RuntimeException("CodeModule 编码失败", e); // 写内存流不会发生
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, int codeSize, List<String> stringPool,
+                                    String[] names, int[] starts, int[] lengths, int[] offsets) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(codeSize);
+        out.writeInt(stringPool.size());
+        for (String s : stringPool) {
+            writeString(out, s);
+        }
+        out.writeInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            writeString(out, names[i]);
+            out.writeInt(starts[i]);
+            out.writeInt(lengths[i]);
+            out.writeInt(offsets[i]);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // 段内跳转改成相对偏移，CALL 改成目标段序号，这样段可以独立加载到任意位置
+    private static void writeInstruction(DataOutputStream out, PCode inst, int segment, int[] starts, int[] lengths,
+                                         Map<Integer, Integer> segmentByEntry) throws IOException {
+        int address = inst.getAddress();
+        switch (inst.getOp()) {
+            case JMP:
+            case JPC:
+                address -= starts[segment];
+                if (address < 0 || address > lengths[segment]) {
+                    throw new RuntimeException("跳转目标 " + inst.getAddress() + " 超出函数 [" + starts[segment] + ", "
+                            + (starts[segment] + lengths[segment]) + ")，无法按函数分段");
+                }
+                break;
+            case CALL:
+                Integer target = segmentByEntry.get(address);
+                if (target == null) {
+                    throw new RuntimeException("CALL 目标 " + address + " 不是任何函数的入口");
+                }
+                address = target;
+                break;
+            default:
+                break;
+        }
+        out.writeByte(inst.getOp().ordinal());
+        out.writeInt(inst.getLevel());
+        out.writeInt(address);
+        out.writeInt(inst.getParamCount());
+        out.writeInt(inst.getLine());
+    }
+
+    public void write(String fileName) throws IOException {
+        ByteBuffer copy = data.duplicate();
+        copy.clear();
+        byte[] raw = new byte[copy.remaining()];
+        copy.get(raw);
+        Files.write(Paths.get(fileName), raw);
+    }
+
+    // 只解析头部和段表；段体保持映射在文件里，加载到哪个函数才读哪一段
+    public static CodeModule read(String fileName) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buf.remaining() < 12 || buf.getInt() != MAGIC) {
+            throw new IOException("不是 PCode 模块文件: " + fileName);
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的模块版本 " + version);
+        }
+        int codeSize = buf.getInt();
+        int stringCount = buf.getInt();
+        List<String> stringPool = new ArrayList<>(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            stringPool.add(readString(buf));
+        }
+        int count = buf.getInt();
+        String[] names = new String[count];
+        int[] starts = new int[count];
+        int[] lengths = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = readString(buf);
+            starts[i] = buf.getInt();
+            lengths[i] = buf.getInt();
+            offsets[i] = buf.getInt();
+            if (offsets[i] < 0 || (long) offsets[i] + (long) lengths[i] * INST_SIZE > buf.capacity()) {
+                throw new IOException("模块文件已截断: " + fileName);
+            }
+        }
+        checkSegments(buf, codeSize, names, starts, lengths, offsets);
+        return new CodeModule(buf, codeSize, stringPool, names, starts, lengths, offsets);
+    }
+
+    // 段表和段体在读入时一次检查完，load 只管解码：损坏的文件不能让镜像越界，
+    // 也不能把任意字节当成 OpCode 序号或段序号。段体只看操作码和地址，不创建指令对象
+    private static void checkSegments(ByteBuffer buf, int codeSize, String[] names, int[] starts, int[] lengths, int[] offsets) {
+        int end = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0 && starts[i] <= starts[i - 1]) {
+                throw new RuntimeException("函数 " + names[i] + " 的入口地址 " + starts[i] + " 不大于前一个函数 "
+                        + names[i - 1] + " 的 " + starts[i - 1] + "，段表必须按入口地址升序");
+            }
+            if (lengths[i] < 0 || (long) starts[i] + lengths[i] > codeSize) {
+                throw new RuntimeException("函数 " + names[i] + " 的代码 [" + starts[i] + ", " + ((long) starts[i] + lengths[i])
+                        + ") 超出指令总数 " + codeSize);
+            }
+            if (starts[i] != end) {
+                throw new RuntimeException("函数 " + names[i] + " 的入口地址 " + starts[i] + " 与前一段的结尾 " + end + " 不相接");
+            }
+            end = starts[i] + lengths[i];
+        }
+        if (end != codeSize) {
+            throw new RuntimeException("各段只覆盖到地址 " + end + "，指令总数却是 " + codeSize);
+        }
+
+        int opCount = PCode.OpCode.values().length;
+        for (int i = 0; i < names.length; i++) {
+            int pos = offsets[i];
+            for (int k = 0; k < lengths[i]; k++, pos += INST_SIZE) {
+                int op = buf.get(pos) & 0xff; // 按无符号读，0x80 以上不会变成负下标
+                int address = buf.getInt(pos + 5);
+                if (op >= opCount) {
+                    throw new RuntimeException("地址 " + (starts[i] + k) + " 的操作码 " + op + " 不存在（只有 " + opCount + " 种）");
+                }
+                if (op == PCode.OpCode.CALL.ordinal() && (address < 0 || address >= names.length)) {
+                    throw new RuntimeException("地址 " + (starts[i] + k) + " 的 CALL 目标段 " + address + " 不存在（只有 "
+                            + names.length + " 段）");
+                }
+                if ((op == PCode.OpCode.JMP.ordinal() || op == PCode.OpCode.JPC.ordinal()) && (address < 0 || address > lengths[i])) {
+                    throw new RuntimeException("地址 " + (starts[i] + k) + " 的跳转偏移 " + address + " 超出函数 " + names[i]
+                            + " [0, " + lengths[i] + "]");
+                }
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getCodeSize() {
+        return codeSize;
+    }
+
+    public List<String> getStringPool() {
+        return Collections.unmodifiableList(stringPool);
+    }
+
+    public int getFunctionCount() {
+        return names.length;
+    }
+
+    // 函数名 → 入口地址（不含 PRELUDE）
+    public Map<String, Integer> getFuncEntryMap() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (!PRELUDE.equals(names[i])) {
+                map.put(names[i], starts[i]);
+            }
+        }
+        return map;
+    }
+
+    public int getEntry(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return starts[i];
+            }
+        }
+        throw new RuntimeException("模块中没有函数 " + name);
+    }
+
+    private int segmentOf(int pc) {
+        int i = Arrays.binarySearch(starts, pc);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // 每次运行一个镜像：地址布局与原始代码相同（funcEntryMap、profiler 都不受影响），
+    // 未加载的位置为空，get 到时整段解码。镜像不是线程安全的，只给一个执行器用。
+    public Image newImage() {
+        return new Image();
+    }
+
+    public class Image extends AbstractList<PCode> {
+        private final PCode[] slots = new PCode[codeSize];
+        private final boolean[] loaded = new boolean[names.length];
+        private int loadedFunctions = 0;
+        private int loadedInstructions = 0;
+
+        @Override
+        public PCode get(int pc) {
+            PCode inst = slots[pc];
+            if (inst == null) {
+                load(segmentOf(pc));
+                inst = slots[pc];
+            }
+            return inst;
+        }
+
+        @Override
+        public int size() {
+            return codeSize;
+        }
+
+        // 解码一段并把相对地址重定位成绝对地址
+        private void load(int segment) {
+            if (segment < 0 || loaded[segment]) {
+                return;
+            }
+            PCode.OpCode[] ops = PCode.OpCode.values();
+            int base = starts[segment];
+            int pos = offsets[segment];
+            for (int i = 0; i < lengths[segment]; i++, pos += INST_SIZE) {
+                PCode.OpCode op = ops[data.get(pos) & 0xff];
+                int level = data.getInt(pos + 1);
+                int address = data.getInt(pos + 5);
+                int paramCount = data.getInt(pos + 9);
+                int line = data.getInt(pos + 13);
+                if (op == PCode.OpCode.JMP || op == PCode.OpCode.JPC) {
+                    address += base;
+                } else if (op == PCode.OpCode.CALL) {
+                    address = starts[address];
+                }
+                PCode inst = new PCode(op, level, address, paramCount);
+                inst.setLine(line);
+                slots[base + i] = inst;
+            }
+            loaded[segment] = true;
+            loadedFunctions++;
+            loadedInstructions += lengths[segment];
+        }
+
+        public int getLoadedFunctionCount() {
+            return loadedFunctions;
+        }
+
+        public int getLoadedInstructionCount() {
+            return loadedInstructions;
+        }
+
+        public List<String> getLoadedFunctions() {
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                if (loaded[i]) {
+                    result.add(names[i]);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package frontend;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+// OSR（栈上替换）用的循环区域编译结果。
+//
+// 区域是 [header, backEdge]：回跳指令所在位置到它跳回的循环头。编译把区域内的 PCode
+// 翻成几个平行的 int 数组，做掉解释器每条指令都要做的事：
+//   - LOD/STO 层差 -1 直接是绝对地址，层差 0 是 bp 相对偏移：地址 = args + (bp & frameMask)，
+//     bp 在进入时读一次；层差 > 0 的静态链在内存里，循环体可能改写，每次访存都从 bp 重新沿链找基址；
+//   - 跳转目标变成区域内下标，跳出区域的下标落在 [0, length) 之外，执行循环自然结束；
+//   - 循环里最常见的两种指令序列合成一条：
+//       LOD x; LIT c; ADD/SUB; STO x   →  INC   （x += c）
+//       LOD x; LIT c; 关系运算; JPC t    →  TEST_JPC
+//     合成的序列中间不能是区域内的跳转目标，计数时仍按原来的每条指令累加；
+//   - 解释器才能处理的指令（CALL、RET、未知指令）变成 EXIT，
+//     执行到那里就把状态交还解释器，由解释器执行这条指令。
+// 执行见 PCodeExecutor.runCompiledLoop，跨进程持久化见 CompiledLoopCache。
+final class CompiledLoop {
+    // 翻译规则（操作码编号、合成规则、数组含义）变化时加一，旧的持久化结果随之失效
+    static final int VERSION = 3;
+
+    static final int LIT = 0;
+    static final int LOAD = 1;
+    static final int STORE = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int LSS = 6;
+    static final int BINARY = 7;      // 其余二元运算，consts 是 OpCode 序号
+    static final int DIVMOD = 8;      // 除数为 0 时交还解释器报错，consts 是 OpCode 序号
+    static final int SWAP = 9;
+    static final int POP = 10;
+    static final int JMP = 11;
+    static final int JPC = 12;
+    static final int TRIANG = 13;
+    static final int INT = 14;
+    static final int IO = 15;         // PRINT / PRINTSTR / READ，同步状态后调用解释器的实现
+    static final int INC = 16;        // args/frameMask 是地址，consts 是增量
+    static final int TEST_JPC = 17;   // args/frameMask 是地址，consts 是常量，relOps 是关系运算，targets 是跳转下标
+    static final int LOAD_UP = 18;    // consts 是层差，沿静态链找基址后按 args 偏移读
+    static final int STORE_UP = 19;   // 同上，写
+    static final int EXIT = 20;
+
+    // 循环头本身就要交还解释器的区域不值得编译，用这个标记避免反复尝试
+    static final CompiledLoop NOT_COMPILABLE = new CompiledLoop(-1, 0);
+
+    final int header;
+    final int[] ops;
+    final int[] args;
+    final int[] frameMask;  // bp 相对为 -1，绝对地址为 0
+    final int[] consts;
+    final int[] targets;
+    final int[] relOps;
+    final int[] widths;     // 合成指令覆盖的原指令条数，其余为 1
+    final byte[] sourceOps; // 原指令的 OpCode 序号，用于按操作码计数
+    final PCode[] source;
+
+    private CompiledLoop(int header, int length) {
+        this.header = header;
+        this.ops = new int[length];
+        this.args = new int[length];
+        this.frameMask = new int[length];
+        this.consts = new int[length];
+        this.targets = new int[length];
+        this.relOps = new int[length];
+        this.widths = new int[length];
+        this.sourceOps = new byte[length];
+        this.source = new PCode[length];
+    }
+
+    static CompiledLoop compile(List<PCode> code, int header, int backEdge) {
+        int length = backEdge - header + 1;
+        CompiledLoop loop = new CompiledLoop(header, length);
+        boolean[] jumpTarget = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            PCode inst = code.get(header + i);
+            loop.source[i] = inst;
+            loop.sourceOps[i] = (byte) inst.getOp().ordinal();
+            loop.widths[i] = 1;
+            loop.translate(i, inst);
+            if ((loop.ops[i] == JMP || loop.ops[i] == JPC) && loop.args[i] >= 0 && loop.args[i] < length) {
+                jumpTarget[loop.args[i]] = true;
+            }
+        }
+        if (loop.ops[0] == EXIT) {
+            return NOT_COMPILABLE;
+        }
+        for (int i = 0; i + 3 < length; i++) {
+            if (!jumpTarget[i + 1] && !jumpTarget[i + 2] && !jumpTarget[i + 3]) {
+                loop.fuse(i);
+            }
+        }
+        return loop;
+    }
+
+    private void translate(int i, PCode inst) {
+        int level = inst.getLevel();
+        args[i] = inst.getAddress();
+        switch (inst.getOp()) {
+            case LIT:
+                ops[i] = LIT;
+                break;
+            case LOD:
+            case STO:
+                if (level == -1) {
+                    args[i] = 1000 + inst.getAddress(); // 与 PCodeExecutor.base(-1) 一致
+                } else if (level == 0) {
+                    frameMask[i] = -1;
+                } else if (level > 0) {
+                    ops[i] = inst.getOp() == PCode.OpCode.LOD ? LOAD_UP : STORE_UP;
+                    consts[i] = level;
+                    break;
+                } else {
+                    ops[i] = EXIT;
+                    break;
+                }
+                ops[i] = inst.getOp() == PCode.OpCode.LOD ? LOAD : STORE;
+                break;
+            case ADD: ops[i] = ADD; break;
+            case SUB: ops[i] = SUB; break;
+            case MUL: ops[i] = MUL; break;
+            case LSS: ops[i] = LSS; break;
+            case EQL: case NEQ: case LEQ: case GTR: case GEQ: case OR: case AND: case TRIP:
+                ops[i] = BINARY;
+                consts[i] = inst.getOp().ordinal();
+                break;
+            case DIV: case MOD:
+                ops[i] = DIVMOD;
+                consts[i] = inst.getOp().ordinal();
+                break;
+            case SWAP: ops[i] = SWAP; break;
+            case POP: ops[i] = POP; break;
+            case JMP:
+            case JPC:
+                ops[i] = inst.getOp() == PCode.OpCode.JMP ? JMP : JPC;
+                args[i] = inst.getAddress() - header;
+                break;
+            case TRIANG: ops[i] = TRIANG; break;
+            case INT: ops[i] = INT; break;
+            case PRINT: case PRINTSTR: case READ: ops[i] = IO; break;
+            default: ops[i] = EXIT; break; // CALL、RET 以及解释器不认识的指令
+        }
+    }
+
+    private void fuse(int i) {
+        if (ops[i] != LOAD || ops[i + 1] != LIT) {
+            return;
+        }
+        PCode.OpCode third = source[i + 2].getOp();
+        if (ops[i + 3] == STORE && (third == PCode.OpCode.ADD || third == PCode.OpCode.SUB)
+                && args[i + 3] == args[i] && frameMask[i + 3] == frameMask[i]) {
+            ops[i] = INC;
+            consts[i] = third == PCode.OpCode.ADD ? args[i + 1] : -args[i + 1]; // x - c 与 x + (-c) 按 int 回绕相同
+            widths[i] = 4;
+        } else if (ops[i + 3] == JPC && isRelational(third)) {
+            ops[i] = TEST_JPC;
+            consts[i] = args[i + 1];
+            relOps[i] = third.ordinal();
+            targets[i] = args[i + 3];
+            widths[i] = 4;
+        }
+    }
+
+    // 只写翻译结果；source / sourceOps 读回时从代码里重新取，缓存键已保证代码相同
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(ops.length);
+        for (int i = 0; i < ops.length; i++) {
+            out.writeByte(ops[i]);
+            out.writeInt(args[i]);
+            out.writeInt(frameMask[i]);
+            out.writeInt(consts[i]);
+            out.writeInt(targets[i]);
+            out.writeByte(relOps[i]);
+            out.writeByte(widths[i]);
+        }
+    }
+
+    static CompiledLoop read(DataInputStream in, List<PCode> code, int header, int backEdge) throws IOException {
+        if (in.readInt() != VERSION) {
+            throw new IOException("翻译版本不符");
+        }
+        int length = in.readInt();
+        if (length != backEdge - header + 1) {
+            throw new IOException("区域长度不符: " + length);
+        }
+        CompiledLoop loop = new CompiledLoop(header, length);
+        int opCount = PCode.OpCode.values().length;
+        for (int i = 0; i < length; i++) {
+            PCode inst = code.get(header + i);
+            loop.source[i] = inst;
+            loop.sourceOps[i] = (byte) inst.getOp().ordinal();
+            loop.ops[i] = in.readByte();
+            loop.args[i] = in.readInt();
+            loop.frameMask[i] = in.readInt();
+            loop.consts[i] = in.readInt();
+            loop.targets[i] = in.readInt();
+            loop.relOps[i] = in.readByte();
+            loop.widths[i] = in.readByte();
+            // 损坏的数据不能让执行器越界或把操作数当成 OpCode 序号乱用
+            int op = loop.ops[i];
+            if (op < 0 || op > EXIT || loop.widths[i] < 1 || i + loop.widths[i] > length || loop.relOps[i] < 0 || loop.relOps[i] >= opCount
+                    || (op == BINARY || op == DIVMOD) && (loop.consts[i] < 0 || loop.consts[i] >= opCount)
+                    || (op == LOAD_UP || op == STORE_UP) && loop.consts[i] != inst.getLevel()
+                    || op == IO && inst.getOp() != PCode.OpCode.PRINT && inst.getOp() != PCode.OpCode.PRINTSTR && inst.getOp() != PCode.OpCode.READ) {
+                throw new IOException("编译结果已损坏，位置 " + i);
+            }
+        }
+        // 跳转目标只能是区域内某条（合成后的）指令的开头，或者区域末尾（跳出循环）
+        boolean[] start = new boolean[length + 1];
+        for (int i = 0; i < length; i += loop.widths[i]) {
+            start[i] = true;
+        }
+        start[length] = true;
+        for (int i = 0; i < length; i++) {
+            int op = loop.ops[i];
+            int target = op == TEST_JPC ? loop.targets[i] : op == JMP || op == JPC ? loop.args[i] : 0;
+            if (target < 0 || target > length || !start[target]) {
+                throw new IOException("跳转目标已损坏，位置 " + i + "，目标 " + target);
+            }
+        }
+        return loop;
+    }
+
+    private static boolean isRelational(PCode.OpCode op) {
+        switch (op) {
+            case EQL: case NEQ: case LSS: case LEQ: case GTR: case GEQ: return true;
+            default: return false;
+        }
+    }
+}
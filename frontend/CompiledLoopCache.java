@@ -0,0 +1,79 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+// OSR 编译结果的磁盘缓存：以 (翻译版本 + 循环头地址 + 区域内每条 PCode) 的哈希为键，
+// 保存 CompiledLoop 的翻译结果。执行器在某个循环头第一次回跳时查一次，命中就直接进入
+// 编译后的代码，不必再等回跳计数到阈值；没命中的区域编译后写回。
+// 翻译版本变了键也跟着变，旧条目不会再被读到，由 DiskLruStore 按大小上限淘汰。
+public class CompiledLoopCache {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int FORMAT_VERSION = 1;
+
+    private final DiskLruStore store;
+
+    public CompiledLoopCache(String dir) throws IOException {
+        this(dir, DEFAULT_MAX_BYTES);
+    }
+
+    public CompiledLoopCache(String dir, long maxBytes) throws IOException {
+        this.store = new DiskLruStore(dir, maxBytes);
+    }
+
+    static String key(List<PCode> code, int header, int backEdge) {
+        MessageDigest md = newDigest();
+        md.update(("loop v" + FORMAT_VERSION + "." + CompiledLoop.VERSION + "\nheader " + header + "\n").getBytes(StandardCharsets.UTF_8));
+        for (int pc = header; pc <= backEdge; pc++) {
+            md.update((code.get(pc).toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    CompiledLoop get(List<PCode> code, int header, int backEdge) {
+        String key = key(code, header, backEdge);
+        byte[] data = store.get(key);
+        if (data == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                store.remove(key);
+                return null;
+            }
+            return CompiledLoop.read(in, code, header, backEdge);
+        } catch (IOException e) {
+            store.remove(key); // 损坏的条目直接丢掉，重新编译
+            return null;
+        }
+    }
+
+    // 写失败只是下次要重新预热，不影响本次执行
+    void put(List<PCode> code, CompiledLoop loop, int backEdge) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + loop.ops.length * 23);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            loop.write(out);
+            out.flush();
+            store.put(key(code, loop.header, backEdge), bytes.toByteArray());
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
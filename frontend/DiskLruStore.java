@@ -0,0 +1,90 @@
+package frontend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// 目录里的简单键值存储，总大小超过上限时按最近使用时间（文件 mtime）淘汰。
+// 命中时更新 mtime，所以淘汰顺序就是 LRU。写入先写临时文件再原子改名，
+// 多个进程共用同一目录时不会读到半个文件。
+public class DiskLruStore {
+    private static final String SUFFIX = ".bin";
+
+    private final Path dir;
+    private final long maxBytes;
+
+    public DiskLruStore(String dir, long maxBytes) throws IOException {
+        this.dir = Paths.get(dir);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.dir);
+    }
+
+    // key 只能包含文件名安全的字符（调用方传十六进制哈希）
+    public byte[] get(String key) {
+        Path file = dir.resolve(key + SUFFIX);
+        try {
+            byte[] data = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return data;
+        } catch (IOException e) {
+            return null; // 不存在或刚被别的进程淘汰
+        }
+    }
+
+    public void put(String key, byte[] value) throws IOException {
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        Files.write(tmp, value);
+        Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(dir.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            // 忽略，下次淘汰时再处理
+        }
+    }
+
+    // 总大小超过上限时，从最久未使用的开始删
+    private void evict() {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+            }
+        }
+    }
+
+    public long sizeOnDisk() {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(SUFFIX));
+        long total = 0;
+        if (files != null) {
+            for (File f : files) {
+                total += f.length();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 同一段代码镜像的 PCodeExecutor 池。短程序每次新建执行器时，分配 memory、两个栈、
+// Scanner 和 FileWriter 的开销比执行本身还大；池中的执行器用 reset 复用这些缓冲区，
+// 只清零上一次运行写脏的内存区间。
+//
+// 池本身可被多线程共享；借出的执行器同一时刻只属于一个线程。
+public class ExecutorPool {
+    public static final int DEFAULT_MAX_IDLE = 64;
+
+    private final List<PCode> code;
+    private final int entryPc;
+    private final int maxIdle;
+    private final ConcurrentLinkedDeque<PCodeExecutor> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+
+    public ExecutorPool(List<PCode> code, int entryPc) {
+        this(code, entryPc, DEFAULT_MAX_IDLE);
+    }
+
+    public ExecutorPool(List<PCode> code, int entryPc, int maxIdle) {
+        this.code = code;
+        this.entryPc = entryPc;
+        this.maxIdle = maxIdle;
+    }
+
+    // 借出一个已复位、pc 指向入口的执行器
+    public PCodeExecutor acquire() {
+        PCodeExecutor vm = idle.pollFirst();
+        if (vm == null) {
+            created.incrementAndGet();
+            vm = new PCodeExecutor(code);
+            vm.setPC(entryPc);
+            return vm;
+        }
+        idleCount.decrementAndGet();
+        return vm;
+    }
+
+    // 归还执行器；空闲数已满时直接丢弃
+    public void release(PCodeExecutor vm) {
+        vm.reset(entryPc);
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(vm); // 后进先出，刚用过的执行器缓存更热
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    // 借一个执行器跑完整个程序再归还，返回最终状态
+    public PCodeExecutor.Status run(InputStream input, Writer output) {
+        PCodeExecutor vm = acquire();
+        try {
+            vm.setInput(input);
+            vm.setOutput(output);
+            vm.execute();
+            return vm.getStatus();
+        } finally {
+            release(vm);
+        }
+    }
+
+    public PCodeExecutor.Status run(String input, Writer output) {
+        return run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+    }
+
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
@@ -0,0 +1,221 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// 计数循环折叠（CodeGenerator.tryFoldCountedLoop）的等价性检查：同一个程序分别关掉和打开折叠
+// 生成代码并执行，输出和结束状态必须完全相同。
+// 不给文件时随机生成只用全局变量的计数循环程序（折叠只处理这种循环），
+// 覆盖 < 和 <=、各种初值和上界（含不进循环、负数、乘法回绕）以及每种赋值形状。
+// 有不一致就打印出程序并以非零状态退出。
+// 用法：java frontend.FoldCheck [-n 程序个数] [-seed 种子] [源文件...]
+public class FoldCheck {
+    static final int DEFAULT_PROGRAMS = 1000;
+    private static final String[] GLOBALS = {"a", "b", "c", "d", "e"};
+
+    public static void main(String[] args) throws IOException {
+        int programs = DEFAULT_PROGRAMS;
+        long seed = 20240601L;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                programs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                files.add(Path.of(args[i]));
+            }
+        }
+
+        Path scratch = null;
+        if (files.isEmpty()) {
+            scratch = Files.createTempFile("fold-check", ".c");
+            scratch.toFile().deleteOnExit();
+        }
+        Random random = new Random(seed);
+        int total = files.isEmpty() ? programs : files.size();
+        int folded = 0;
+        int mismatches = 0;
+        for (int n = 0; n < total; n++) {
+            Path source;
+            if (files.isEmpty()) {
+                source = scratch;
+                Files.write(source, randomProgram(random).getBytes(StandardCharsets.UTF_8));
+            } else {
+                source = files.get(n);
+            }
+            Result plain = run(source, false);
+            Result fold = run(source, true);
+            if (fold.folded) {
+                folded++;
+            }
+            if (!plain.output.equals(fold.output) || !plain.status.equals(fold.status)) {
+                mismatches++;
+                System.out.println("❌ 折叠前后结果不同: " + (files.isEmpty() ? "随机程序 #" + n : source));
+                if (files.isEmpty()) {
+                    System.out.print(Files.readString(source));
+                }
+                System.out.println("  不折叠: " + plain.status + " " + plain.output.replace("\n", "\\n"));
+                System.out.println("  折叠:   " + fold.status + " " + fold.output.replace("\n", "\\n"));
+            }
+        }
+        System.out.println((mismatches == 0 ? "✅ " : "❌ ") + total + " 个程序，其中 " + folded + " 个有循环被折叠，"
+                + mismatches + " 个结果不同");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static final class Result {
+        final String output;
+        final String status;
+        final boolean folded;
+
+        Result(String output, String status, boolean folded) {
+            this.output = output;
+            this.status = status;
+            this.folded = folded;
+        }
+    }
+
+    private static Result run(Path source, boolean fold) throws IOException {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        List<PCode> code;
+        CodeGenerator codeGenerator = new CodeGenerator();
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+            CodeGenerator.stringPool.clear();
+            Lexer lexer = new Lexer();
+            List<Token> tokens = lexer.tokenize(source.toString());
+            codeGenerator.foldCountedLoops = fold;
+            Parser parser = new Parser(tokens, lexer.errors, lexer.errorLines, codeGenerator);
+            ASTNode ast = parser.parse();
+            if (!lexer.errors.isEmpty()) {
+                return new Result("", "语法错误", false);
+            }
+            code = codeGenerator.generate(ast);
+
+            boolean folded = false;
+            for (PCode inst : code) {
+                folded |= inst.getOp() == PCode.OpCode.TRIP;
+            }
+            StringWriter output = new StringWriter();
+            PCodeExecutor executor = new PCodeExecutor(code);
+            executor.setPC(codeGenerator.funcEntryMap.get("main"));
+            executor.setVerbose(false);
+            executor.setOutput(output);
+            executor.setInput(new ByteArrayInputStream(new byte[0]));
+            executor.execute();
+            return new Result(output.toString(), String.valueOf(executor.getStatus()), folded);
+        } catch (RuntimeException e) {
+            return new Result("", e.getClass().getSimpleName(), false);
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    // int i、n、a..e 都是全局变量；一到两个计数循环，循环体是一到三条折叠认识（或差一点就认识）的赋值
+    static String randomProgram(Random random) {
+        StringBuilder sb = new StringBuilder("int i = ").append(smallConstant(random)).append(";\n");
+        sb.append("int n = ").append(random.nextInt(20)).append(";\n"); // 只出现在初值和上界里，保证不折叠时也跑得完
+        for (String name : GLOBALS) {
+            sb.append("int ").append(name).append(" = ").append(constant(random)).append(";\n");
+        }
+        sb.append("int main() {\n");
+        int loops = 1 + random.nextInt(2);
+        for (int l = 0; l < loops; l++) {
+            sb.append("    for (");
+            if (random.nextInt(4) != 0) {
+                sb.append("i = ").append(random.nextBoolean() ? smallConstant(random) : smallExpression(random));
+            }
+            sb.append("; ");
+            if (random.nextInt(3) == 0) {
+                sb.append("i <= ").append(smallConstant(random));
+            } else {
+                sb.append("i < ").append(random.nextBoolean() ? smallConstant(random) : smallExpression(random));
+            }
+            sb.append("; ").append(random.nextInt(5) == 0 ? "i = 1 + i" : "i = i + 1").append(") {\n");
+
+            List<String> targets = new ArrayList<>(List.of(GLOBALS));
+            java.util.Collections.shuffle(targets, random);
+            int assigns = 1 + random.nextInt(3);
+            List<String> written = targets.subList(0, assigns);
+            for (String target : written) {
+                sb.append("        ").append(target).append(" = ").append(assignment(random, target, written)).append(";\n");
+            }
+            sb.append("    }\n");
+        }
+        sb.append("    printf(\"%d %d %d %d %d %d\\n\", i");
+        for (String name : GLOBALS) {
+            sb.append(", ").append(name);
+        }
+        sb.append(");\n    return 0;\n}\n");
+        return sb.toString();
+    }
+
+    private static String assignment(Random random, String target, List<String> written) {
+        // 偶尔让表达式读被写的变量，这种循环不该被折叠
+        List<String> excluded = random.nextInt(8) == 0 ? null : written;
+        String e = expression(random, excluded, 2);
+        switch (random.nextInt(7)) {
+            case 0: return target + " + " + e;
+            case 1: return e + " + " + target;
+            case 2: return target + " - " + e;
+            case 3: return target + " + i";
+            case 4: return "i + " + target;
+            case 5: return target + " - i";
+            default: return e;
+        }
+    }
+
+    // 常量、全局变量（不含 excluded）和 + - *、一元负号组成的表达式
+    private static String expression(Random random, List<String> excluded, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            if (random.nextBoolean()) {
+                return constant(random);
+            }
+            String name = GLOBALS[random.nextInt(GLOBALS.length)];
+            return excluded != null && excluded.contains(name) ? constant(random) : name;
+        }
+        switch (random.nextInt(4)) {
+            case 0: return "(" + expression(random, excluded, depth - 1) + " + " + expression(random, excluded, depth - 1) + ")";
+            case 1: return "(" + expression(random, excluded, depth - 1) + " - " + expression(random, excluded, depth - 1) + ")";
+            case 2: return expression(random, excluded, depth - 1) + " * " + expression(random, excluded, depth - 1);
+            default: return "-" + expression(random, excluded, 0);
+        }
+    }
+
+    // 值在几十以内的表达式，用作初值和上界
+    private static String smallExpression(Random random) {
+        switch (random.nextInt(3)) {
+            case 0: return "n + " + random.nextInt(30);
+            case 1: return "n * " + random.nextInt(4) + " - " + random.nextInt(10);
+            default: return "-n + " + random.nextInt(40);
+        }
+    }
+
+    private static String smallConstant(Random random) {
+        return String.valueOf(random.nextInt(60) - 10);
+    }
+
+    private static String constant(Random random) {
+        switch (random.nextInt(4)) {
+            case 0: return String.valueOf(random.nextInt(10));
+            case 1: return String.valueOf(random.nextInt(1000));
+            case 2: return String.valueOf(100000 + random.nextInt(2000000000 - 100000)); // 乘起来会回绕
+            default: return String.valueOf(random.nextInt(100));
+        }
+    }
+}
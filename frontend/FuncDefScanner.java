@@ -0,0 +1,133 @@
+package frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 并行分析函数体之前的预扫描：只看词法单元，不建语法树，找出连续若干个 FuncDef 的范围和签名。
+// 只接受写法规整的函数定义，碰到第一个不规整的就停下，后面的交给顺序分析：
+//   - 头部是 FuncType Ident '(' [BType Ident ['[' ']'] { ',' BType Ident ['[' ']'] }] ')' '{'；
+//   - 函数体按大括号配对找到结尾，范围内没有 ERROR；
+//   - '=' 后面的 '{' 是初值列表，里面不能再有 '{'，其余的 '{' 都是 Block。
+// 另外记下分析这个函数会用掉几个作用域序号（FuncDef 一个，每个 Block 一个）和最后一个 BType，
+// 后一个函数按这些推算开始时的 scopeCounter / currentBType。这只是预测，合并时还要和实际分析的结果核对。
+final class FuncDefScanner {
+    static final class Range {
+        final int from;          // FuncType 的下标
+        final int to;            // 函数体 '}' 的下一个下标
+        final Symbol signature;  // 函数名、返回类型和形参类型
+        final int scopes;        // 分析时 enterScope 的次数
+        final String lastBType;  // 范围内最后一个 BType 的拼写，没有为 null
+
+        Range(int from, int to, Symbol signature, int scopes, String lastBType) {
+            this.from = from;
+            this.to = to;
+            this.signature = signature;
+            this.scopes = scopes;
+            this.lastBType = lastBType;
+        }
+    }
+
+    private FuncDefScanner() {
+    }
+
+    // 从下标 from 开始（跳过 ERROR）连续扫出的规整函数定义
+    static List<Range> scan(TokenBuffer tokens, int from) {
+        List<Range> ranges = new ArrayList<>();
+        int i = skipErrors(tokens, from);
+        Range range;
+        while ((range = scanOne(tokens, i)) != null) {
+            ranges.add(range);
+            i = skipErrors(tokens, range.to);
+        }
+        return ranges;
+    }
+
+    private static int skipErrors(TokenBuffer tokens, int i) {
+        while (i < tokens.size() && tokens.type(i) == TokenType.ERROR) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Range scanOne(TokenBuffer tokens, int from) {
+        int n = tokens.size();
+        if (from + 3 >= n) {
+            return null;
+        }
+        String funcType;
+        switch (tokens.type(from)) {
+            case INTTK:
+                funcType = "IntFunc";
+                break;
+            case CHARTK:
+                funcType = "CharFunc";
+                break;
+            case VOIDTK:
+                funcType = "VoidFunc";
+                break;
+            default:
+                return null;
+        }
+        if (tokens.type(from + 1) != TokenType.IDENFR || tokens.type(from + 2) != TokenType.LPARENT) {
+            return null;
+        }
+        Symbol signature = new Symbol(tokens.lexeme(from + 1), funcType, 1);
+        String lastBType = null;
+        int i = from + 3;
+        if (tokens.type(i) != TokenType.RPARENT) {
+            while (true) {
+                if (i + 1 >= n || !isBType(tokens.type(i)) || tokens.type(i + 1) != TokenType.IDENFR) {
+                    return null;
+                }
+                lastBType = tokens.lexeme(i);
+                boolean array = i + 3 < n && tokens.type(i + 2) == TokenType.LBRACK && tokens.type(i + 3) == TokenType.RBRACK;
+                signature.paramTypes.add(lastBType.equals("int") ? (array ? "IntArray" : "Int") : (array ? "CharArray" : "Char"));
+                i += array ? 4 : 2;
+                if (i >= n || tokens.type(i) != TokenType.COMMA) {
+                    break;
+                }
+                i++;
+            }
+            if (i >= n || tokens.type(i) != TokenType.RPARENT) {
+                return null;
+            }
+        }
+        i++;
+        if (i >= n || tokens.type(i) != TokenType.LBRACE) {
+            return null;
+        }
+
+        int scopes = 1; // 形参的作用域
+        int depth = 0;
+        boolean inInitList = false;
+        for (; i < n; i++) {
+            TokenType type = tokens.type(i);
+            if (type == TokenType.ERROR) {
+                return null;
+            } else if (type == TokenType.LBRACE) {
+                if (inInitList) {
+                    return null;
+                }
+                if (tokens.type(i - 1) == TokenType.ASSIGN) {
+                    inInitList = true;
+                } else {
+                    scopes++;
+                    depth++;
+                }
+            } else if (type == TokenType.RBRACE) {
+                if (inInitList) {
+                    inInitList = false;
+                } else if (--depth == 0) {
+                    return new Range(from, i + 1, signature, scopes, lastBType);
+                }
+            } else if (isBType(type)) {
+                lastBType = tokens.lexeme(i);
+            }
+        }
+        return null; // 大括号不配对
+    }
+
+    private static boolean isBType(TokenType type) {
+        return type == TokenType.INTTK || type == TokenType.CHARTK;
+    }
+}
@@ -0,0 +1,111 @@
+package frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// 增量重扫：编辑器每次改动只重扫受影响的一段，其余 Token 从上一次的结果里平移过来。
+//
+// 字节扫描器在两个 Token 之间没有别的状态（注释、字符串、字符常量都在一次扫描里整段读完），
+// 所以任何一个 Token 的开头都可以作为重新开始扫描的位置：
+//   - 从改动位置之前最后一个 Token 的开头开始扫（它可能被改动接长，比如在标识符后面补字母）；
+//     ERROR 的起点不一定是真正的 Token 边界（一段非 ASCII 字符解码出的几个 ERROR 共用一个起点），往前跳过；
+//   - 扫出的 Token 起点越过改动的末尾，并且平移回旧源码后正好也是一个旧 Token 的起点时，
+//     之后的源码字节和扫描状态都与旧的一样，后面的 Token 也一样，直接平移起点和行号，停止扫描。
+// 改出一个未闭合的块注释或字符串时会一直扫到文件末尾，这是它本来的结果。
+final class IncrementalLexer {
+    private static final int STEP_BYTES = 256; // 每次往后扫的字节数，通常一两步就能对上
+
+    private IncrementalLexer() {
+    }
+
+    // 旧的 Token 序列 previous 对应的源码在 [offset, offset + deletedLength) 处换成 inserted 之后重扫
+    static TokenEdit relex(TokenBuffer previous, int offset, int deletedLength, String inserted) {
+        ByteBuffer old = previous.source();
+        if (old == null) {
+            throw new IllegalArgumentException("由 Token 列表转来的 TokenBuffer 没有源码，不能增量重扫");
+        }
+        int oldSize = old.limit();
+        if (offset < 0 || deletedLength < 0 || offset + deletedLength > oldSize) {
+            throw new IndexOutOfBoundsException("编辑范围 [" + offset + ", " + (offset + deletedLength) + ") 超出源码 " + oldSize + " 字节");
+        }
+        byte[] insertedBytes = inserted.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[oldSize - deletedLength + insertedBytes.length];
+        old.get(0, bytes, 0, offset);
+        System.arraycopy(insertedBytes, 0, bytes, offset, insertedBytes.length);
+        old.get(offset + deletedLength, bytes, offset + insertedBytes.length, oldSize - offset - deletedLength);
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        int byteDelta = insertedBytes.length - deletedLength;
+        int damageEnd = offset + insertedBytes.length; // 新源码里改动的末尾
+
+        int from = lastStartBefore(previous, offset);
+        while (from >= 0 && previous.type(from) == TokenType.ERROR) {
+            from--;
+        }
+        int scanStart = from >= 0 ? previous.start(from) : 0;
+        int startLine = from >= 0 ? previous.line(from) : 1;
+        from = Math.max(from, 0);
+
+        Lexer lexer = new Lexer();
+        lexer.verbose = false;
+        lexer.setSource(source.duplicate());
+        TokenBuffer middle = new TokenBuffer(source);
+        int limit = Lexer.limitOf(source);
+        int pos = scanStart;
+        int line = startLine;
+        int checked = 0;
+        while (pos < limit) {
+            pos = lexer.scan(middle, pos, Math.min(pos + STEP_BYTES, limit), Lexer.ENTER_NORMAL, line);
+            line = lexer.line;
+            for (; checked < middle.size(); checked++) {
+                int start = middle.start(checked);
+                if (start < damageEnd || middle.type(checked) == TokenType.ERROR) {
+                    continue;
+                }
+                int same = indexOfStart(previous, start - byteDelta, from);
+                if (same >= 0) {
+                    List<Error> errors = lexer.errors;
+                    if (!errors.isEmpty()) {
+                        // 最后一步可能扫过了对上的位置，错误只算到那里为止
+                        Lexer exact = new Lexer();
+                        exact.verbose = false;
+                        exact.setSource(source.duplicate());
+                        exact.scan(new TokenBuffer(source), scanStart, start, Lexer.ENTER_NORMAL, startLine);
+                        errors = exact.errors;
+                    }
+                    int lineDelta = middle.line(checked) - previous.line(same);
+                    TokenBuffer tokens = TokenBuffer.splice(previous, source, from, same, middle, checked, byteDelta, lineDelta);
+                    return new TokenEdit(tokens, from, same - from, checked, byteDelta, lineDelta, errors, start - scanStart);
+                }
+            }
+        }
+        TokenBuffer tokens = TokenBuffer.splice(previous, source, from, previous.size(), middle, middle.size(), byteDelta, 0);
+        return new TokenEdit(tokens, from, previous.size() - from, middle.size(), byteDelta, 0, lexer.errors, limit - scanStart);
+    }
+
+    // 起点小于 offset 的最后一个 Token，没有返回 -1（起点单调不减）
+    private static int lastStartBefore(TokenBuffer tokens, int offset) {
+        int lo = 0;
+        int hi = tokens.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.start(mid) < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    // [from, size) 里起点正好是 start 的非 ERROR Token，没有返回 -1
+    private static int indexOfStart(TokenBuffer tokens, int start, int from) {
+        int i = Math.max(lastStartBefore(tokens, start) + 1, from);
+        for (; i < tokens.size() && tokens.start(i) == start; i++) {
+            if (tokens.type(i) != TokenType.ERROR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,51 +1,20 @@
 package frontend;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class Lexer {
     public List<Error> errors = new ArrayList<>();
     public Set<Integer> errorLines = new HashSet<>();
-    private Map<String, TokenType> RESERVED_WORDS;
+    // 每个标识符 / 常量一行的调试输出；关闭后词法分析不再逐词打印
+    public boolean verbose = true;
 
     public Lexer() {
-        RESERVED_WORDS = new HashMap<>();
-        RESERVED_WORDS.put("const", TokenType.CONSTTK);
-        RESERVED_WORDS.put("int", TokenType.INTTK);
-        RESERVED_WORDS.put("break", TokenType.BREAKTK);
-        RESERVED_WORDS.put("continue", TokenType.CONTINUETK);
-        RESERVED_WORDS.put("if", TokenType.IFTK);
-        RESERVED_WORDS.put("else", TokenType.ELSETK);
-        RESERVED_WORDS.put("for", TokenType.FORTK);
-        RESERVED_WORDS.put("main", TokenType.MAINTK);
-        RESERVED_WORDS.put("void", TokenType.VOIDTK);
-        RESERVED_WORDS.put("return", TokenType.RETURNTK);
-        RESERVED_WORDS.put("char", TokenType.CHARTK);
-        RESERVED_WORDS.put("getchar", TokenType.GETCHARTK);
-        RESERVED_WORDS.put("printf", TokenType.PRINTFTK);
-        RESERVED_WORDS.put("getint", TokenType.GETINTTK);
-        RESERVED_WORDS.put("!", TokenType.NOT);
-        RESERVED_WORDS.put("&&", TokenType.AND);
-        RESERVED_WORDS.put("||", TokenType.OR);
-        RESERVED_WORDS.put("*", TokenType.MULT);
-        RESERVED_WORDS.put("%", TokenType.MOD);
-        RESERVED_WORDS.put("+", TokenType.PLUS);
-        RESERVED_WORDS.put("-", TokenType.MINU);
-        RESERVED_WORDS.put("=", TokenType.ASSIGN);
-        RESERVED_WORDS.put(";", TokenType.SEMICN);
-        RESERVED_WORDS.put(",", TokenType.COMMA);
-        RESERVED_WORDS.put("<", TokenType.LSS);
-        RESERVED_WORDS.put("<=", TokenType.LEQ);
-        RESERVED_WORDS.put(">", TokenType.GRE);
-        RESERVED_WORDS.put(">=", TokenType.GEQ);
-        RESERVED_WORDS.put("==", TokenType.EQL);
-        RESERVED_WORDS.put("!=", TokenType.NEQ);
-        RESERVED_WORDS.put("(", TokenType.LPARENT);
-        RESERVED_WORDS.put(")", TokenType.RPARENT);
-        RESERVED_WORDS.put("[", TokenType.LBRACK);
-        RESERVED_WORDS.put("]", TokenType.RBRACK);
-        RESERVED_WORDS.put("{", TokenType.LBRACE);
-        RESERVED_WORDS.put("}", TokenType.RBRACE);
     }
 
     public List<Token> tokenize(String fileName) {
@@ -135,11 +104,11 @@ public class Lexer {
                 }
                 // ✔️ 标识符或关键字
                 String lexeme = input.substring(start, pos);
-                TokenType type = RESERVED_WORDS.getOrDefault(lexeme, TokenType.IDENFR);
+                TokenType type = ScanTables.keyword(input, start, pos);
                 tokens.add(new Token(type, lexeme, tokenLine));
 
                 // ✅ 添加调试输出：
-                System.out.println("[DEBUG]" + lexeme + " 是合法的 " + type.name());
+                if (verbose) System.out.println("[DEBUG]" + lexeme + " 是合法的 " + type.name());
                 continue;
             }
             // 处理数字常量
@@ -152,7 +121,7 @@ public class Lexer {
                 tokens.add(new Token(TokenType.INTCON, lexeme, tokenLine));
 
                 // ✅ 添加调试输出：
-                System.out.println("[DEBUG] 整数常量 " + lexeme + " at line " + tokenLine);
+                if (verbose) System.out.println("[DEBUG] 整数常量 " + lexeme + " at line " + tokenLine);
                 continue;
             }
             // 处理字符串常量
@@ -205,7 +174,7 @@ public class Lexer {
                 tokens.add(new Token(TokenType.STRCON, lexeme, tokenLine));
 
                 // ✅ 添加调试输出：
-                System.out.println("[DEBUG] 字符串常量 " + lexeme + " at line " + tokenLine);
+                if (verbose) System.out.println("[DEBUG] 字符串常量 " + lexeme + " at line " + tokenLine);
                 continue;
             }
             // 处理字符常量
@@ -379,6 +348,478 @@ public class Lexer {
         return tokens;
     }
 
+    // ---- 字节路径 ----
+    // 把源文件映射进内存，直接按字节扫描：不再经过 readLine + StringBuilder + String 三份拷贝和整文件的字符集解码。
+    // 源程序除字符串 / 字符常量和注释外都是 ASCII，只有遇到 >= 0x80 的字节（字符串里的中文、非法字符）
+    // 才对那一小段做 UTF-8 解码。结果（Token、errors、errorLines、调试输出）与 tokenize(String) 完全一致：
+    //   - 换行按 readLine 的规则：\r\n 和单独的 \r 都算一个换行，常量里的换行统一成 \n；
+    //   - readLine 会给最后一行补一个 \n，这里在文件末尾没有换行时同样虚拟出一个。
+    // 关键字和运算符的 Token 直接用常量字符串，只有标识符、数字和字符串常量才从字节切出 lexeme。
+
+    private ByteBuffer src;
+    private int srcSize;      // 文件字节数
+    private int srcLimit;     // srcSize，加上末尾虚拟的 \n
+    private byte[] scratch = new byte[64];
+
+    public TokenBuffer tokenizeMapped(String fileName) {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            buf = ByteBuffer.allocate(0);
+        }
+        return tokenize(buf);
+    }
+
+    // 扫描 [position, limit) 范围内的 UTF-8 源码。返回的 TokenBuffer 按需从 source 切 lexeme，
+    // 使用期间 source 的内容不能改
+    public TokenBuffer tokenize(ByteBuffer source) {
+        setSource(source.slice());
+        TokenBuffer tokens = new TokenBuffer(src);
+        scan(tokens, 0, srcLimit, ENTER_NORMAL, 1);
+        src = null;
+        tokens.trim();
+        return tokens;
+    }
+
+    // 同 tokenizeMapped，按换行切块后在 ForkJoinPool 上并行扫描，结果与顺序扫描一致，见 ParallelLexer
+    public TokenBuffer tokenizeParallel(String fileName) {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            buf = ByteBuffer.allocate(0);
+        }
+        return new ParallelLexer(this).tokenize(buf);
+    }
+
+    // 同 tokenizeMapped，但不一次扫完：返回的 TokenSource 在语法分析读到时才按行成批扫描，
+    // 只保留语法分析还要用的一小段 Token，见 StreamingTokenSource。扫描和语法分析交替进行，
+    // 逐词调试输出会和语法分析的输出混在一起，需要的话先关掉 verbose
+    public TokenSource tokenizeStreaming(String fileName) {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            buf = ByteBuffer.allocate(0);
+        }
+        return new StreamingTokenSource(this, buf);
+    }
+
+    // 增量重扫：previous 的源码在 [offset, offset + deletedLength) 处换成 inserted，只重扫受影响的一段，
+    // 返回编辑后的完整 Token 序列和变化的范围，见 IncrementalLexer。重扫到的词法错误放在返回值里，不记入这个 Lexer
+    public TokenEdit relex(TokenBuffer previous, int offset, int deletedLength, String inserted) {
+        return IncrementalLexer.relex(previous, offset, deletedLength, inserted);
+    }
+
+    void setSource(ByteBuffer source) {
+        src = source.order(ByteOrder.LITTLE_ENDIAN); // getLong 的最低字节是位置最靠前的字节
+        srcSize = src.remaining();
+        srcLimit = limitOf(src);
+    }
+
+    // 扫描的终点：文件末尾没有换行时多一个虚拟的 \n
+    static int limitOf(ByteBuffer source) {
+        int size = source.remaining();
+        int last = size > 0 ? source.get(size - 1) : '\n';
+        return size + (last == '\n' || last == '\r' ? 0 : 1);
+    }
+
+    // scan 的入口状态：分块并行时，一块的开头可能落在上一块开始的块注释或字符串常量中间
+    static final int ENTER_NORMAL = 0;
+    static final int ENTER_COMMENT = 1;
+    static final int ENTER_STRING = 2;
+
+    // 可能跨过换行、从而越过块尾的结构
+    static final int SPAN_NONE = 0;
+    static final int SPAN_COMMENT = 1;
+    static final int SPAN_STRING = 2;
+    static final int SPAN_CHAR = 3;
+
+    int line;          // 扫描到的当前行号
+    int lastSpan;      // 最后一个开始的块注释 / 字符串 / 字符常量，scan 返回位置越过 to 时就是它越过的
+    int skipEnd;       // 入口状态不是 ENTER_NORMAL 时，跳过注释或字符串剩余部分后的位置
+    int skipLines;     // 以及跳过用掉的行数
+    private boolean plainString;
+
+    // 从 from 开始扫描，开始于 to 之前的 Token 都扫完（最后一个可以越过 to），返回停下的位置。
+    // 入口状态为注释 / 字符串时先跳过它们的剩余部分，剩余部分在 to 之前没结束则返回 -1。
+    int scan(TokenBuffer tokens, int from, int to, int enter, int firstLine) {
+        int limit = srcLimit;
+        int pos = from;
+        line = firstLine;
+        lastSpan = SPAN_NONE;
+        if (enter != ENTER_NORMAL) {
+            pos = enter == ENTER_COMMENT ? commentBody(from, to) : stringBody(from, from, to);
+            if (pos < 0) {
+                return -1;
+            }
+            skipEnd = pos;
+            skipLines = line - firstLine;
+        }
+
+        while (pos < to) {
+            int current = at(pos);
+            int cls = ScanTables.CLASS[current];
+            if (cls == ScanTables.C_BLANK || cls == ScanTables.C_NL) {
+                pos = skipSpace(pos, to);
+                continue;
+            }
+            int state = ScanTables.DELTA[ScanTables.START * ScanTables.CLASSES + cls];
+            if (state != ScanTables.DEAD) {
+                // 标识符、整数、运算符、非法 ASCII 字符：查表走到 DEAD 为止
+                int start = pos;
+                pos++;
+                int next;
+                while (pos < limit && (next = ScanTables.DELTA[state * ScanTables.CLASSES + ScanTables.CLASS[at(pos)]]) != ScanTables.DEAD) {
+                    state = next;
+                    pos++;
+                }
+                TokenType type = ScanTables.ACCEPT[state];
+                if (state == ScanTables.IDENT) {
+                    type = ScanTables.keyword(src, start, pos);
+                }
+                tokens.add(type, start, pos - start, line);
+                if (ScanTables.ERROR[state]) {
+                    addError(line);
+                }
+                if (verbose && state == ScanTables.IDENT) {
+                    System.out.println("[DEBUG]" + ascii(start, pos) + " 是合法的 " + type.name());
+                } else if (verbose && state == ScanTables.NUMBER) {
+                    System.out.println("[DEBUG] 整数常量 " + ascii(start, pos) + " at line " + line);
+                }
+                continue;
+            }
+            if (cls == ScanTables.C_CR) {
+                if (!crlf(pos)) {
+                    line++; // 单独的 \r 也是换行；\r\n 的换行由 \n 计
+                }
+                pos++;
+                continue;
+            }
+
+            // 注释或除法运算符
+            if (cls == ScanTables.C_SLASH) {
+                int next = pos + 1 < limit ? at(pos + 1) : -1;
+                if (next == '/') {
+                    pos = lineCommentEnd(pos + 2, limit);
+                } else if (next == '*') {
+                    lastSpan = SPAN_COMMENT;
+                    pos = commentBody(pos + 2, limit);
+                    if (pos < 0) {
+                        addError(line);
+                        pos = limit;
+                    }
+                } else {
+                    tokens.add(TokenType.DIV, pos, 1, line);
+                    pos++;
+                }
+                continue;
+            }
+
+            int tokenLine = line;
+            if (cls == ScanTables.C_DQUOTE) {
+                lastSpan = SPAN_STRING;
+                int start = pos;
+                pos = stringBody(pos + 1, start + 1, limit);
+                boolean closed = pos >= 0;
+                if (closed && plainString) {
+                    tokens.add(TokenType.STRCON, start, pos - 1 - (start + 1), tokenLine);
+                } else if (closed) {
+                    tokens.add(TokenType.STRCON, start, text(start + 1, pos - 1, false), tokenLine);
+                } else {
+                    addError(tokenLine);
+                    // 未闭合时字符串一直到文件末尾（含虚拟的 \n），开头的引号保留
+                    tokens.add(TokenType.STRCON, start, "\"" + text(start + 1, srcSize, plainString) + (srcLimit > srcSize ? "\n" : ""), tokenLine);
+                    pos = limit;
+                }
+                if (verbose) System.out.println("[DEBUG] 字符串常量 " + tokens.lexeme(tokens.size() - 1) + " at line " + tokenLine);
+                continue;
+            }
+            if (cls == ScanTables.C_SQUOTE) {
+                lastSpan = SPAN_CHAR;
+                pos = charConstant(tokens, pos + 1, tokenLine);
+                continue;
+            }
+            // 剩下的只有 C_HIGH：常量和注释之外的非 ASCII 字符，解码这一段，每个字符一个 ERROR
+            int end = pos;
+            while (end < srcSize && at(end) >= 0x80) {
+                end++;
+            }
+            errorChars(tokens, pos, decode(pos, end), tokenLine);
+            pos = end;
+        }
+        return pos;
+    }
+
+    // ---- 按 8 字节一组扫描（SWAR）----
+    // 空白、注释正文和字符串正文占了源码的大部分字节。下面几个循环每次用 getLong 读 8 个字节，
+    // 用位运算同时比较这 8 个字节，找出第一个需要逐字节处理的位置（注释里的 * 和 \r、字符串里的
+    // 引号、\r 和非 ASCII 字节……），之前的 \n 用 bitCount 一次数完。停下之后仍走原来的逐字节逻辑，
+    // 剩下不够 8 字节的尾部（以及末尾虚拟的 \n）也逐字节处理，结果与逐字节扫描完全一致。
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7f7f7f7f7f7f7f7fL;
+    private static final long HIGH = 0x8080808080808080L;
+
+    // word 中等于 b 的字节，对应字节的最高位为 1，其余为 0（逐字节精确，不受相邻字节进位影响）
+    private static long bytesEqual(long word, int b) {
+        long x = word ^ (ONES * b);
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    // mask 中位于前 n 个字节的标记个数
+    private static int countBefore(long mask, int n) {
+        return Long.bitCount(mask & ((1L << (n << 3)) - 1));
+    }
+
+    // 跳过空格、制表符和 \n 并数 \n，返回第一个其他字节的位置（最远到 bound）
+    private int skipSpace(int pos, int bound) {
+        int wordEnd = Math.min(bound, srcSize) - 8;
+        while (pos <= wordEnd) {
+            long word = src.getLong(pos);
+            long newlines = bytesEqual(word, '\n');
+            long stop = ~(newlines | bytesEqual(word, ' ') | bytesEqual(word, '\t')) & HIGH;
+            if (stop != 0) {
+                int n = Long.numberOfTrailingZeros(stop) >>> 3;
+                line += countBefore(newlines, n);
+                return pos + n;
+            }
+            line += Long.bitCount(newlines);
+            pos += 8;
+        }
+        while (pos < bound) {
+            int c = at(pos);
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    // // 注释正文，返回行尾（\n 或 \r）的位置
+    private int lineCommentEnd(int pos, int bound) {
+        int wordEnd = Math.min(bound, srcSize) - 8;
+        while (pos <= wordEnd) {
+            long word = src.getLong(pos);
+            long stop = bytesEqual(word, '\n') | bytesEqual(word, '\r');
+            if (stop != 0) {
+                return pos + (Long.numberOfTrailingZeros(stop) >>> 3);
+            }
+            pos += 8;
+        }
+        while (pos < bound && at(pos) != '\n' && at(pos) != '\r') {
+            pos++;
+        }
+        return pos;
+    }
+
+    // 块注释正文，pos 指向 /* 之后；返回 */ 之后的位置，到 bound 还没结束返回 -1
+    private int commentBody(int pos, int bound) {
+        int wordEnd = Math.min(bound, srcSize) - 8;
+        while (pos < bound) {
+            if (pos <= wordEnd) {
+                // 整组跳过没有 * 和 \r 的字节
+                long word = src.getLong(pos);
+                long newlines = bytesEqual(word, '\n');
+                long stop = bytesEqual(word, '*') | bytesEqual(word, '\r');
+                if (stop == 0) {
+                    line += Long.bitCount(newlines);
+                    pos += 8;
+                    continue;
+                }
+                int n = Long.numberOfTrailingZeros(stop) >>> 3;
+                line += countBefore(newlines, n);
+                pos += n;
+            }
+            int c = at(pos);
+            if (c == '*' && pos + 1 < bound && at(pos + 1) == '/') {
+                return pos + 2;
+            }
+            if (c == '\n' || c == '\r' && !crlf(pos)) {
+                line++;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    // 字符串常量正文，pos 指向内容开头（content 是往回数反斜杠的下界）；返回结束引号之后的位置，
+    // 到 bound 还没结束返回 -1。全是 ASCII 且没有 \r 时 plainString 为 true，可以直接按字节切
+    private int stringBody(int pos, int content, int bound) {
+        plainString = true;
+        int wordEnd = Math.min(bound, srcSize) - 8;
+        while (pos < bound) {
+            if (pos <= wordEnd) {
+                // 整组跳过没有引号、\r 和非 ASCII 字节的部分
+                long word = src.getLong(pos);
+                long newlines = bytesEqual(word, '\n');
+                long stop = bytesEqual(word, '"') | bytesEqual(word, '\r') | (word & HIGH);
+                if (stop == 0) {
+                    line += Long.bitCount(newlines);
+                    pos += 8;
+                    continue;
+                }
+                int n = Long.numberOfTrailingZeros(stop) >>> 3;
+                line += countBefore(newlines, n);
+                pos += n;
+            }
+            int c = at(pos);
+            if (c == '"') {
+                // 前面连续反斜杠的个数为偶数时才是结束引号
+                int backslashCount = 0;
+                for (int temp = pos - 1; temp >= content && at(temp) == '\\'; temp--) {
+                    backslashCount++;
+                }
+                pos++;
+                if (backslashCount % 2 == 0) {
+                    return pos;
+                }
+            } else {
+                if (c == '\n') {
+                    line++;
+                } else if (c == '\r') {
+                    plainString = false;
+                    if (!crlf(pos)) {
+                        line++;
+                    }
+                } else if (c >= 0x80) {
+                    plainString = false;
+                }
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    // 字符常量，pos 指向起始单引号之后；返回扫描结束的位置
+    private int charConstant(TokenBuffer tokens, int pos, int tokenLine) {
+        int start = pos - 1;
+        StringBuilder charBuilder = new StringBuilder();
+        charBuilder.append('\'');
+        boolean closed = false;
+        String rest = ""; // 解码非 ASCII 字节时多出来的字符，常量结束后按 ERROR 处理
+        if (pos < srcLimit) {
+            pos = logicalChar(pos);
+            charBuilder.append(decoded.charAt(0));
+            rest = decoded.substring(1);
+            if (decoded.charAt(0) == '\\') { // 转义字符
+                if (pos < srcLimit) {
+                    pos = logicalChar(pos);
+                    charBuilder.append(decoded.charAt(0));
+                    rest = decoded.substring(1);
+                } else {
+                    addError(tokenLine);
+                }
+            }
+            if (rest.isEmpty() && pos < srcLimit && at(pos) == '\'') {
+                charBuilder.append('\'');
+                pos++;
+                closed = true;
+            }
+        }
+        if (!closed) {
+            addError(tokenLine);
+        }
+        if (closed && ascii7(start, pos)) {
+            tokens.add(TokenType.CHRCON, start, pos - start, tokenLine);
+        } else {
+            tokens.add(TokenType.CHRCON, start, charBuilder.toString(), tokenLine);
+        }
+        errorChars(tokens, start, rest, tokenLine);
+        return pos;
+    }
+
+    private String decoded; // logicalChar 读到的字符（非 ASCII 时是整段解码出的一个或多个字符）
+
+    // 按 tokenize(String) 看到的字符读：\r\n、\r 读成 \n，文件末尾是虚拟的 \n，
+    // 非 ASCII 时解码整段连续的非 ASCII 字节。字符放在 decoded，返回读完后的位置
+    private int logicalChar(int pos) {
+        int c = at(pos);
+        if (c == '\r') {
+            decoded = "\n";
+            return crlf(pos) ? pos + 2 : pos + 1;
+        }
+        if (c < 0x80) {
+            decoded = String.valueOf((char) c);
+            return pos + 1;
+        }
+        int end = pos;
+        while (end < srcSize && at(end) >= 0x80) {
+            end++;
+        }
+        decoded = decode(pos, end);
+        return end;
+    }
+
+    // 一段解码出的非法字符各算一个 ERROR，start 都记成这一段（或所在字符常量）的开头
+    private void errorChars(TokenBuffer tokens, int start, String chars, int line) {
+        for (int i = 0; i < chars.length(); i++) {
+            tokens.add(TokenType.ERROR, start, String.valueOf(chars.charAt(i)), line);
+            addError(line);
+        }
+    }
+
+    void addError(int line) {
+        if (!errorLines.contains(line)) {
+            errors.add(new Error(line, 'a'));
+            errorLines.add(line);
+        }
+    }
+
+    // 文件末尾之后（虚拟的 \n）读作 \n
+    private int at(int pos) {
+        return pos < srcSize ? src.get(pos) & 0xff : '\n';
+    }
+
+    // [from, to) 都是源码里的 ASCII 字节且没有 \r，lexeme 就是这段字节本身
+    private boolean ascii7(int from, int to) {
+        if (to > srcSize) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            int c = src.get(i);
+            if (c < 0 || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean crlf(int pos) {
+        return pos + 1 < srcSize && src.get(pos + 1) == '\n';
+    }
+
+    private byte[] copy(int from, int to) {
+        int n = to - from;
+        if (scratch.length < n) {
+            scratch = new byte[Math.max(n, scratch.length * 2)];
+        }
+        src.get(from, scratch, 0, n);
+        return scratch;
+    }
+
+    private String ascii(int from, int to) {
+        return new String(copy(from, to), 0, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private String decode(int from, int to) {
+        return new String(copy(from, to), 0, to - from, StandardCharsets.UTF_8);
+    }
+
+    // 字符串常量内容：纯 ASCII 直接切，否则 UTF-8 解码并按 readLine 的规则统一换行
+    private String text(int from, int to, boolean plain) {
+        if (plain) {
+            return ascii(from, to);
+        }
+        return decode(from, to).replace("\r\n", "\n").replace('\r', '\n');
+    }
+
     // 判断空白字符
     private boolean isWhitespace(char c) {
         return c == ' ' || c == '\t' || c == '\r' || c == '\n';
@@ -0,0 +1,59 @@
+package frontend;
+
+// 字面量在生成 Token 时解码一次的结果，挂在 Token 上，之后代码生成直接取值，不再从 lexeme 重新解析：
+//   - INTCON：int 值。超出 int 范围的不解码（Token.literal 为 null），代码生成仍按原来的方式报错；
+//   - CHRCON：两个单引号之间第一个字符的编码，与代码生成原来的取法一致（转义不展开，'\n' 取到的是反斜杠）；
+//   - STRCON：按 unescape 转义一次并 intern 的字符串，也就是字符串池里存的内容。
+// 字符串池里的内容在输出时还要再转义一次（PRINTSTR 一直如此），这一步由 PCodeExecutor 按池下标缓存。
+public final class Literal {
+    public final TokenType type;
+    public final int value;    // INTCON 的值、CHRCON 的字符编码
+    public final String text;  // STRCON 转义后的内容
+
+    private Literal(TokenType type, int value, String text) {
+        this.type = type;
+        this.value = value;
+        this.text = text;
+    }
+
+    // 不是字面量或解码不了时返回 null
+    static Literal decode(TokenType type, String lexeme) {
+        if (lexeme == null) {
+            return null;
+        }
+        switch (type) {
+            case INTCON: {
+                if (lexeme.isEmpty()) {
+                    return null;
+                }
+                int value = 0;
+                for (int i = 0; i < lexeme.length(); i++) {
+                    int digit = lexeme.charAt(i) - '0';
+                    if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                        return null;
+                    }
+                    value = value * 10 + digit;
+                }
+                return new Literal(type, value, null);
+            }
+            case CHRCON:
+                if (lexeme.length() >= 3 && lexeme.startsWith("'") && lexeme.endsWith("'")) {
+                    return new Literal(type, lexeme.charAt(1), null);
+                }
+                return null;
+            case STRCON:
+                return new Literal(type, 0, unescape(lexeme).intern());
+            default:
+                return null;
+        }
+    }
+
+    // 字符串常量的转义规则（依次替换，\n、\t、\"、\\）
+    public static String unescape(String s) {
+        return s
+            .replace("\\n", "\n")
+            .replace("\\t", "\t")
+            .replace("\\\"", "\"")
+            .replace("\\\\", "\\");
+    }
+}
@@ -0,0 +1,118 @@
+package frontend;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// 检查解释循环的字节码长度没有超过 HotSpot 的 HugeMethodLimit（8000 字节）：
+// 超过后 JIT 不再编译这个方法，整个执行器退回纯解释，性能会掉一个数量级。
+// 直接读 class 文件里方法的 Code 属性长度，超过就以非零状态退出。
+// 用法：java frontend.MethodSizeCheck [类名 [方法名]]，默认检查 frontend.PCodeExecutor.interpret
+public class MethodSizeCheck {
+    static final int HUGE_METHOD_LIMIT = 8000;
+
+    public static void main(String[] args) throws IOException {
+        String className = args.length > 0 ? args[0] : "frontend.PCodeExecutor";
+        String methodName = args.length > 1 ? args[1] : "interpret";
+        String resource = "/" + className.replace('.', '/') + ".class";
+        int found = 0;
+        boolean passed = true;
+        try (InputStream stream = MethodSizeCheck.class.getResourceAsStream(resource)) {
+            if (stream == null) {
+                System.err.println("找不到 class 文件: " + resource);
+                System.exit(2);
+            }
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException("不是 class 文件: " + resource);
+            }
+            in.readUnsignedShort(); // minor_version
+            in.readUnsignedShort(); // major_version
+            String[] utf8 = readConstantPool(in);
+            in.readUnsignedShort(); // access_flags
+            in.readUnsignedShort(); // this_class
+            in.readUnsignedShort(); // super_class
+            in.skipNBytes(2L * in.readUnsignedShort()); // interfaces
+            int fieldCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                in.skipNBytes(6); // access_flags, name_index, descriptor_index
+                skipAttributes(in);
+            }
+            int methodCount = in.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                in.readUnsignedShort(); // access_flags
+                String name = utf8[in.readUnsignedShort()];
+                String descriptor = utf8[in.readUnsignedShort()];
+                int attributeCount = in.readUnsignedShort();
+                for (int j = 0; j < attributeCount; j++) {
+                    String attributeName = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (!attributeName.equals("Code") || !name.equals(methodName)) {
+                        in.skipNBytes(length);
+                        continue;
+                    }
+                    in.readUnsignedShort(); // max_stack
+                    in.readUnsignedShort(); // max_locals
+                    int codeLength = in.readInt();
+                    in.skipNBytes(length - 8);
+                    found++;
+                    if (codeLength > HUGE_METHOD_LIMIT) {
+                        System.out.println("❌ " + className + "." + name + descriptor + " 字节码 " + codeLength
+                                + " 字节，超过 HugeMethodLimit " + HUGE_METHOD_LIMIT + "，JIT 不会编译它");
+                        passed = false;
+                    } else {
+                        System.out.println("✅ " + className + "." + name + descriptor + " 字节码 " + codeLength
+                                + " 字节（上限 " + HUGE_METHOD_LIMIT + "）");
+                    }
+                }
+            }
+        }
+        if (found == 0) {
+            System.err.println("没有找到方法 " + className + "." + methodName);
+            System.exit(2);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // 只留下 CONSTANT_Utf8，其余常量按长度跳过；下标从 1 开始，long / double 占两个位置
+    private static String[] readConstantPool(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 3: case 4: // Integer, Float
+                case 9: case 10: case 11: case 12: // Fieldref, Methodref, InterfaceMethodref, NameAndType
+                case 17: case 18: // Dynamic, InvokeDynamic
+                    in.skipNBytes(4);
+                    break;
+                case 5: case 6: // Long, Double
+                    in.skipNBytes(8);
+                    i++;
+                    break;
+                case 7: case 8: case 16: case 19: case 20: // Class, String, MethodType, Module, Package
+                    in.skipNBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipNBytes(3);
+                    break;
+                default:
+                    throw new IOException("未知的常量池类型 " + tag + "，位置 " + i);
+            }
+        }
+        return utf8;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort(); // attribute_name_index
+            in.skipNBytes(in.readInt() & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -21,11 +21,14 @@ public class PCode {
         POP,                     // 弹出栈顶元素 (新增)
         OR,AND,NOT,              // 逻辑运算 (新增 OR, AND, NOT)
         INT,                     // 栈帧分配 (新增)
+        TRIP,                    // 计数循环迭代次数：弹出 i、b，压入 max(0, b - i)（按无符号 32 位理解）
+        TRIANG,                  // 弹出 n（无符号），压入 n(n-1)/2，按 int 回绕
     }
     private OpCode op;
     private int level;
     private int address;
     private int paramCount = -1; // 新增：用于 CALL 指令，记录参数个数, -1 for others
+    private int line = -1; // 生成该指令的源代码行号，-1 表示未知（供 profiler 使用）
 
     public PCode(OpCode op, int level, int address) {
         this(op, level, address, -1); // 调用新的构造函数，paramCount 默认为 -1
@@ -59,6 +62,14 @@ public class PCode {
         return paramCount;
     }
 
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
     @Override
     public String toString() {
         if (op == OpCode.CALL) {
@@ -10,17 +10,26 @@ public class PCodeExecutor {
 
     // private Stack<Integer> stack = new Stack<>();
     // 控制栈（专用于 CALL/RET 保存返回地址）
-    private Stack<StackFrame> callStack = new Stack<>();
+    private FrameStack callStack = new FrameStack();
     // 数据栈（用于 LOD, ADD 等运算）
-    private Stack<Integer> dataStack = new Stack<>();
+    private IntStack dataStack = new IntStack();
     private BufferedWriter writer;
+    private Writer output; // 外部指定的输出目标，为 null 时写入 data/pcoderesult.txt
     private int pc = 0; // 程序计数器
-    private Scanner scanner = new Scanner(System.in);
+    private Scanner scanner = null; // 第一次 READ 时才创建，默认读 System.in
     private List<String> stringPool = CodeGenerator.stringPool;
     boolean stepByStep = false; // 默认开启单步调试
+    // 逐条指令的调试输出；关闭后解释循环里不再有任何字符串拼接
+    boolean verbose = true;
+
+    // 字符串池每一项再转义一次后的输出内容和它的 UTF-8 字节数（含 % 的要按格式展开，记 -1），按下标第一次用到时算好
+    private String[] printable = new String[0];
+    private int[] printableBytes = new int[0];
 
     public void setStringPool(List<String> pool) {
         this.stringPool = pool;
+        this.printable = new String[0];
+        this.printableBytes = new int[0];
     }
 
     // 映射函数入口地址 → 变量数
@@ -36,6 +45,66 @@ public class PCodeExecutor {
     // 添加一个常量表示栈底标记或者初始调用者地址，避免返回到随机地址或 0
     private static final int END_OF_EXECUTION_MARKER = -1; 
 
+    // 分时调度相关：run(quantum) 的返回状态
+    public enum Status {
+        YIELDED, // 时间片用完，在安全点让出，可再次 run
+        NEEDS_INPUT, // 交互模式下 READ 没有可用输入，feedInput 后再次 run 即从该 READ 继续
+        HALTED,  // 程序正常结束
+        FAILED   // 执行出错
+    }
+
+    private boolean started = false;
+    private Status status = null;      // 结束后为 HALTED / FAILED
+    private long instructionCount = 0; // 已执行的指令总数（供调度器计账）
+    private boolean safepoint = false; // 上一条指令是向后跳转或 CALL，可在此让出
+
+    // 供采样 profiler 读取的 (调用深度 << 32 | pc)，调用深度是 callStack 的帧数（含栈底的结束标记）；
+    // 只在 CALL / RET / 向后跳转时写入，用一个 volatile long 保证 pc 和深度成对可见
+    private volatile long publishedFrame = 0;
+
+    // 本次运行写过的内存区间 [dirtyLow, dirtyHigh]，reset 时只清零这一段
+    private int dirtyLow = Integer.MAX_VALUE;
+    private int dirtyHigh = -1;
+
+    // 卡表：每 CARD_SIZE 个内存单元一张卡，写内存时置位，状态 dump 只扫描脏卡。
+    // shadow 保存上次 dump 时的内存内容，用来输出 "地址: 旧值 -> 新值" 的差异。
+    private static final int CARD_SHIFT = 4;
+    private static final int CARD_SIZE = 1 << CARD_SHIFT;
+    private long[] dirtyCards = new long[cardWords(memory.length)];
+    private int[] shadow = null; // 第一次 dump 时才分配
+    // 上次 dump 以来 callStack 的最低深度，dump 时只输出这之上的帧
+    private int callStackLow = 0;
+    private static final int DUMP_DATA_STACK_TOP = 8; // dump 时数据栈只显示栈顶这么多个元素
+
+    // 二进制执行轨迹，为 null 时不记录
+    private TraceRecorder trace = null;
+
+    // 运行时计数：解释循环只累加这些本地字段，时间片结束时合并进 metrics（为 null 时不合并）
+    private RuntimeMetrics metrics = null;
+    private final long[] opCounts = new long[RuntimeMetrics.OP_COUNT];
+    private long callCount = 0;
+    private int maxCallDepth = 0;
+    private long outputBytes = 0;
+    private long readCount = 0;
+
+    // 交互模式：READ 不阻塞等待 Scanner，而是从 pendingInput 取行，没有就挂起
+    private boolean interactive = false;
+    private final Deque<String> pendingInput = new ArrayDeque<>();
+    private boolean inputClosed = false;
+
+    // OSR：同一循环头的回跳次数达到阈值后，把循环区域编译成 CompiledLoop，
+    // 之后每次回跳都直接进入编译后的代码执行，直到跳出循环或遇到需要解释器处理的指令。
+    // 只在没有逐条指令钩子（verbose / 单步 / trace）时启用，调试输出不受影响；
+    // verbose 默认开着，Compiler 打开 OSR_MODE 时才会关掉它走到这里。
+    static final int OSR_THRESHOLD = 1000;
+    private boolean osrEnabled = true;
+    private int[] backEdgeCounts = null;         // 按循环头 pc 计数，第一次回跳时才分配
+    private CompiledLoop[] compiledLoops = null; // 按循环头 pc 缓存，代码不变，reset 后仍可复用
+    private int compiledLoopCount = 0;
+    private int cachedLoopCount = 0;             // 其中直接从 loopCache 读到的
+    private CompiledLoopCache loopCache = null;  // 为 null 时不持久化
+    private long quantumEnd = Long.MAX_VALUE;    // 当前时间片的结束点，编译后的循环在回跳处检查
+
     public PCodeExecutor(List<PCode> instructions) {
         this.instructions = instructions;
     }
@@ -44,432 +113,1122 @@ public class PCodeExecutor {
         this.pc = pc;
     }
 
-    private static class StackFrame {
-        int returnAddr;
-        int base;
-    
-        public StackFrame(int returnAddr, int base) {
-            this.returnAddr = returnAddr;
-            this.base = base;
+    // 指定输出目标（多个 VM 并发运行时不能共用 pcoderesult.txt）
+    public void setOutput(Writer output) {
+        this.output = output;
+    }
+
+    // 指定输入来源，默认是 System.in
+    public void setInput(InputStream input) {
+        this.scanner = new Scanner(input);
+    }
+
+    private Scanner scanner() {
+        if (scanner == null) {
+            scanner = new Scanner(System.in);
+        }
+        return scanner;
+    }
+
+    // 开启交互模式后，输入只能通过 feedInput 提供
+    public void setInteractive(boolean interactive) {
+        this.interactive = interactive;
+    }
+
+    public boolean isInteractive() {
+        return interactive;
+    }
+
+    // 追加一行输入（交互模式），可在 NEEDS_INPUT 之后或运行前调用
+    public synchronized void feedInput(String line) {
+        pendingInput.addLast(line);
+    }
+
+    // 声明不会再有输入，之后的 READ 按“没有更多输入”处理而不再挂起
+    public synchronized void closeInput() {
+        inputClosed = true;
+    }
+
+    private synchronized boolean inputPending() {
+        return !pendingInput.isEmpty();
+    }
+
+    private synchronized String pollInput() {
+        return pendingInput.pollFirst();
+    }
+
+    private synchronized boolean mustSuspendForInput() {
+        return interactive && pendingInput.isEmpty() && !inputClosed;
+    }
+
+    // READ 此刻能否继续（有待读的行，或输入已关闭）
+    public synchronized boolean isInputReady() {
+        return !mustSuspendForInput();
+    }
+
+    // 开启二进制轨迹记录；执行出错时自动 dump 到 recorder 的 failureDumpPath
+    public void setTraceRecorder(TraceRecorder trace) {
+        this.trace = trace;
+    }
+
+    public TraceRecorder getTraceRecorder() {
+        return trace;
+    }
+
+    // 把本执行器的计数汇总到 metrics（通常是 RuntimeMetrics.global()）
+    public void setMetrics(RuntimeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 把执行器恢复到刚构造时的状态，以便池化复用：
+    // 只清零本次运行写脏的内存区间，memory 数组、两个栈、代码镜像和已编译的循环都原样复用。
+    // 各种设置（verbose、单步、交互、轨迹、统计、OSR、字符串池）也回到构造时的默认值，
+    // 输入输出需重新 setInput / setOutput，否则回到默认的 System.in 和 pcoderesult.txt。
+    // 运行到一半就 reset 时，start() 打开的输出先刷出去，自己打开的 pcoderesult.txt 顺带关掉。
+    public void reset(int entryPc) {
+        if (writer != null && status == null) {
+            try {
+                if (output == null) {
+                    writer.close();
+                } else {
+                    writer.flush(); // 外部给的输出由调用方负责关闭
+                }
+            } catch (IOException e) {
+                // 忽略，反正要丢掉这个 writer
+            }
+        }
+        if (dirtyHigh >= dirtyLow) {
+            Arrays.fill(memory, dirtyLow, dirtyHigh + 1, 0);
+            if (shadow != null) {
+                Arrays.fill(shadow, dirtyLow, Math.min(dirtyHigh + 1, shadow.length), 0);
+            }
+        }
+        Arrays.fill(dirtyCards, 0L);
+        callStackLow = 0;
+        dirtyLow = Integer.MAX_VALUE;
+        dirtyHigh = -1;
+        callStack.clear();
+        dataStack.clear();
+        pc = entryPc;
+        bp = 0;
+        sp = 0;
+        started = false;
+        status = null;
+        instructionCount = 0;
+        clearLocalMetrics();
+        safepoint = false;
+        publishedFrame = 0;
+        synchronized (this) {
+            pendingInput.clear();
+            inputClosed = false;
+        }
+        writer = null;
+        output = null;
+        scanner = null;
+
+        verbose = true;
+        stepByStep = false;
+        interactive = false;
+        trace = null;
+        metrics = null;
+        osrEnabled = true;
+        loopCache = null;
+        quantumEnd = Long.MAX_VALUE;
+        hasLoggedCall = false;
+        hasReturnedOnce = false;
+        if (stringPool != CodeGenerator.stringPool) {
+            setStringPool(CodeGenerator.stringPool);
+        }
+    }
+
+    private static int cardWords(int memorySize) {
+        return ((memorySize + CARD_SIZE - 1) >>> CARD_SHIFT) / 64 + 1;
+    }
+
+    // 写内存统一走这里，顺带维护脏区间和卡表
+    private void writeMemory(int addr, int value) {
+        memory[addr] = value;
+        int card = addr >>> CARD_SHIFT;
+        dirtyCards[card >>> 6] |= 1L << card;
+        if (addr < dirtyLow) {
+            dirtyLow = addr;
+        }
+        if (addr > dirtyHigh) {
+            dirtyHigh = addr;
+        }
+    }
+
+    public long getPublishedFrame() {
+        return publishedFrame;
+    }
+
+    // 给其他线程（profiler）读 callStack 第 depth 帧（0 是栈底的结束标记）的返回地址，越界返回 -1；
+    // 读到的值可能是旧的，采样可以容忍
+    public int peekReturnAddr(int depth) {
+        int[] addrs = callStack.returnAddrs;
+        return depth >= 0 && depth < addrs.length ? addrs[depth] : -1;
+    }
+
+    private void publishFrame() {
+        publishedFrame = ((long) callStack.size() << 32) | (pc & 0xffffffffL);
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public void setOsrEnabled(boolean osrEnabled) {
+        this.osrEnabled = osrEnabled;
+    }
+
+    // 编译结果跨进程复用：循环头第一次回跳时查缓存，命中则跳过回跳计数直接进入编译后的代码
+    public void setLoopCache(CompiledLoopCache loopCache) {
+        this.loopCache = loopCache;
+    }
+
+    // 已编译的循环区域数（含从缓存读到的）
+    public int getCompiledLoopCount() {
+        return compiledLoopCount;
+    }
+
+    public int getCachedLoopCount() {
+        return cachedLoopCount;
+    }
+
+    public boolean isFinished() {
+        return status != null;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // 数据栈：int 数组实现，避免 Stack<Integer> 每次 push 装箱。
+    // 只在栈需要扩容时分配，预热后解释循环不再产生任何垃圾。
+    private static final class IntStack {
+        private int[] items = new int[64];
+        private int size = 0;
+
+        void push(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        int peek() {
+            return items[size - 1];
+        }
+
+        int get(int i) {
+            return items[i];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        // 与 java.util.Stack 的格式一致，调试输出不变
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(items[i]);
+            }
+            return sb.append("]").toString();
+        }
+    }
+
+    // 控制栈：返回地址和旧 bp 存在两个平行的 int 数组里，CALL 不再分配栈帧对象
+    private static final class FrameStack {
+        private int[] returnAddrs = new int[64];
+        private int[] bases = new int[64];
+        private int size = 0;
+
+        void push(int returnAddr, int base) {
+            if (size == returnAddrs.length) {
+                returnAddrs = Arrays.copyOf(returnAddrs, size * 2);
+                bases = Arrays.copyOf(bases, size * 2);
+            }
+            returnAddrs[size] = returnAddr;
+            bases[size] = base;
+            size++;
+        }
+
+        void pop() {
+            size--;
+        }
+
+        int topReturnAddr() {
+            return returnAddrs[size - 1];
+        }
+
+        int topBase() {
+            return bases[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        String frameString(int i) {
+            return "[ret=" + returnAddrs[i] + ", base=" + bases[i] + "]";
+        }
+
+        String topString() {
+            return frameString(size - 1);
         }
+
         @Override
         public String toString() {
-            return "[ret=" + returnAddr + ", base=" + base + "]";
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(frameString(i));
+            }
+            return sb.append("]").toString();
         }
     }
 
-    private static String parseEscapes(String s) {
-        return s
-            .replace("\\n", "\n")
-            .replace("\\t", "\t")
-            .replace("\\\"", "\"")
-            .replace("\\\\", "\\");
+    private String printable(int index) {
+        if (index >= printable.length) {
+            int size = Math.max(stringPool.size(), index + 1);
+            printable = Arrays.copyOf(printable, size);
+            printableBytes = Arrays.copyOf(printableBytes, size);
+        }
+        String s = printable[index];
+        if (s == null) {
+            s = Literal.unescape(stringPool.get(index));
+            printable[index] = s;
+            printableBytes[index] = s.indexOf('%') >= 0 ? -1 : RuntimeMetrics.utf8Length(s);
+        }
+        return s;
     }
 
     public void execute() {
-        System.out.println("[DEBUG] PCodeExecutor: 开始执行，共 " + instructions.size() + " 条指令");
+        // 独占线程一次性跑完：等价于时间片无限大
+        while (run(Long.MAX_VALUE) == Status.YIELDED) {
+            // 不会发生，时间片不会用完
+        }
+    }
+
+    // 初始化执行环境（只做一次）
+    private void start() throws IOException {
+        started = true;
+        if (verbose) {
+            System.out.println("[DEBUG] PCodeExecutor: 开始执行，共 " + instructions.size() + " 条指令");
+        }
         // 初始时在栈底放入结束标记，用于识别主程序返回
         // callStack.push(END_OF_EXECUTION_MARKER);
-        callStack.push(new StackFrame(-1, -1)); // 表示主函数结束点
-        System.out.println("[DEBUG] PCodeExecutor: 主函数结束点已入栈");
+        callStack.push(END_OF_EXECUTION_MARKER, -1); // 表示主函数结束点
         // System.out.println("[DEBUG] PCodeExecutor: 初始化，栈底标记: " + END_OF_EXECUTION_MARKER);
 
-        try {
-            writer = new BufferedWriter(new FileWriter("data/pcoderesult.txt"));
+        writer = new BufferedWriter(output != null ? output : new FileWriter("data/pcoderesult.txt"));
+        if (verbose) {
+            System.out.println("[DEBUG] PCodeExecutor: 主函数结束点已入栈");
             System.out.println("[DEBUG] PCodeExecutor: 开始执行，指令总数: " + instructions.size());
-
             System.out.println("[DEBUG] 初始PC = " + pc);
             System.out.println("[DEBUG] 指令总数 = " + instructions.size());
             System.out.println("[DEBUG] 第一条指令 = " + instructions.get(0));
+        }
+        publishFrame();
+    }
+
+    // 执行最多约 quantum 条指令后返回。
+    // 只在安全点（向后跳转、CALL）检查时间片，所以实际执行数会略多于 quantum；
+    // 所有状态都在字段里，返回 YIELDED 后再次调用 run 即从断点继续。
+    public Status run(long quantum) {
+        if (status != null) {
+            return status;
+        }
+        long quantumEnd = quantum == Long.MAX_VALUE ? Long.MAX_VALUE : instructionCount + quantum;
 
-            while (pc >= 0 && pc < instructions.size()) { // 确保 pc 在有效范围内
-                System.out.println("[TRACE] 当前 PC = " + pc + ", 当前指令: " + instructions.get(pc));
+        try {
+            if (!started) {
+                start();
+            }
+            Status suspended = interpret(quantumEnd);
+            if (suspended != null) {
+                flushMetrics();
+                return suspended;
+            }
+            finishRun();
+        } catch (Exception e) {
+            failRun(e);
+        }
+        flushMetrics();
+        return status;
+    }
 
-                PCode inst = instructions.get(pc);
+    // 每个时间片合并一次，解释循环里不碰共享计数器
+    private void flushMetrics() {
+        if (metrics == null) {
+            clearLocalMetrics();
+            return;
+        }
+        metrics.recordVm(opCounts, callCount, maxCallDepth, dirtyHigh + 1, outputBytes, readCount);
+        if (status != null) {
+            metrics.recordFinished(status);
+        }
+        clearLocalMetrics();
+    }
 
-                // 插入单步调试提示 👇
-                if (stepByStep) {
-                    System.out.println("[DEBUG] 当前PC=" + pc + ", 准备执行指令=" + inst);
-                    System.out.print("按回车继续下一步，输入q后回车退出... ");
-                    String input = scanner.nextLine();
-                    if ("q".equalsIgnoreCase(input.trim())) {
-                        System.out.println("[DEBUG] 用户请求终止执行，退出PCode执行器！");
-                        break;
-                    }
+    private void clearLocalMetrics() {
+        Arrays.fill(opCounts, 0L);
+        callCount = 0;
+        maxCallDepth = 0;
+        outputBytes = 0;
+        readCount = 0;
+    }
+
+    // 解释器主循环：只保留分派和常见指令的快速路径，调试输出、READ、PRINTSTR、
+    // CALL/RET 的帧管理和错误构造都放到循环外的方法里，保证这个方法足够小，
+    // 能被 HotSpot 正常 JIT 编译（HugeMethodLimit 为 8000 字节码）。
+    // 返回 null 表示程序已结束，否则返回让出的原因。
+    private Status interpret(long quantumEnd) throws IOException {
+        this.quantumEnd = quantumEnd;
+        while (pc >= 0 && pc < instructions.size()) { // 确保 pc 在有效范围内
+            if (safepoint) {
+                safepoint = false;
+                if (instructionCount >= quantumEnd) {
+                    return Status.YIELDED;
                 }
-                // 👆单步调试完毕！
+            }
+            instructionCount++;
+            PCode inst = instructions.get(pc);
+            if (trace != null) {
+                trace.record(pc, inst, !dataStack.isEmpty(), dataStack.isEmpty() ? 0 : dataStack.peek());
+            }
+            if ((verbose || stepByStep) && !beforeInstruction(inst)) {
+                break; // 单步调试中用户要求退出
+            }
 
-                PCode.OpCode op = inst.getOp();
-                System.out.println("[DEBUG] === PC: " + pc + ", 指令: " + inst + ", 栈顶: " + (dataStack.isEmpty() ? "空" : dataStack.peek()) + " ===");
+            PCode.OpCode op = inst.getOp();
+            opCounts[op.ordinal()]++;
+            int currentPC = pc; // 保存当前 PC，用于日志和 CALL
+            pc++; // 默认情况下，PC 指向下一条指令
+            int a, b, addr;
 
-                int currentPC = pc; // 保存当前 PC，用于日志和 CALL
-                pc++; // 默认情况下，PC 指向下一条指令
+            switch (op) {
+                case LIT:
+                    dataStack.push(inst.getAddress());
+                    if (verbose) logStack("LIT: 将常量 " + inst.getAddress() + " 压栈");
+                    break;
 
-                switch (op) {
-                    case LIT:
-                        int literal = inst.getAddress();
-                        dataStack.push(literal);
-                        System.out.println("[DEBUG] LIT: 将常量 " + literal + " 压栈. 栈: " + dataStack);
-                        break;
+                case LOD:
+                    addr = base(inst.getLevel()) + inst.getAddress();
+                    if (addr < 0 || addr >= memory.length) {
+                        throw badAddress(op, addr);
+                    }
+                    dataStack.push(memory[addr]);
+                    if (verbose) logStack("LOD: 从地址 " + addr + " 加载值 " + memory[addr] + " 压栈");
+                    break;
 
-                    case LOD:
-                        int loadAddr = base(inst.getLevel()) + inst.getAddress();
-                        if (loadAddr < 0 || loadAddr >= memory.length) {
-                            System.err.println("[ERROR] LOD: 无效内存地址 " + loadAddr);
-                            throw new RuntimeException("Invalid memory address for LOD: " + loadAddr);
-                        }
-                        int loadedValue = memory[loadAddr];
-                        dataStack.push(loadedValue);
-                        System.out.println("[DEBUG] LOD: 从地址 " + loadAddr + " 加载值 " + loadedValue + " 压栈. 栈: " + dataStack);
-                        break;
+                case STO:
+                    if (dataStack.isEmpty()) {
+                        throw underflow(op);
+                    }
+                    a = dataStack.pop();
+                    addr = base(inst.getLevel()) + inst.getAddress();
+                    if (addr < 0 || addr >= memory.length) {
+                        dataStack.push(a); // 恢复栈状态
+                        throw badAddress(op, addr);
+                    }
+                    writeMemory(addr, a);
+                    if (trace != null) {
+                        trace.memoryWrite(addr, a);
+                    }
+                    if (verbose) logStore(a, addr);
+                    break;
 
-                    case STO:
-                        if (dataStack.isEmpty()) {
-                            System.err.println("[ERROR] STO: 栈为空，无法存储!");
-                            throw new RuntimeException("Stack underflow on STO");
-                        }
-                        int valueToStore = dataStack.pop();
-                        int storeAddr = base(inst.getLevel()) + inst.getAddress();
-                         if (storeAddr < 0 || storeAddr >= memory.length) {
-                            System.err.println("[ERROR] STO: 无效内存地址 " + storeAddr);
-                            dataStack.push(valueToStore); // 恢复栈状态
-                             throw new RuntimeException("Invalid memory address for STO: " + storeAddr);
-                        }
-                        memory[storeAddr] = valueToStore;
-                        System.out.println("[DEBUG] STO: 将值 " + valueToStore + " 存储到地址 " + storeAddr + ". 栈: " + dataStack + ", 内存["+storeAddr+"]=" + memory[storeAddr]);
-                        break;
+                case ADD: case SUB: case MUL: case DIV: case MOD:
+                case EQL: case NEQ: case LSS: case LEQ: case GTR: case GEQ:
+                case OR: case AND: case TRIP:
+                    if (dataStack.size() < 2) {
+                        throw underflow(op);
+                    }
+                    b = dataStack.pop();
+                    a = dataStack.pop();
+                    dataStack.push(binary(op, a, b));
+                    if (verbose) logBinary(op, a, b);
+                    break;
 
-                    case ADD:
-                        if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on ADD");
-                        int addB = dataStack.pop(); int addA = dataStack.pop(); int addRes = addA + addB;
-                        dataStack.push(addRes);
-                        System.out.println("[DEBUG] ADD: " + addA + " + " + addB + " = " + addRes + ". 栈: " + dataStack);
-                        break;
+                case SWAP:
+                    if (dataStack.size() < 2) {
+                        throw underflow(op);
+                    }
+                    b = dataStack.pop();
+                    a = dataStack.pop();
+                    dataStack.push(b);
+                    dataStack.push(a);
+                    if (verbose) logStack("SWAP: 交换栈顶两元素");
+                    break;
 
-                    case SUB:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on SUB");
-                         int subB = dataStack.pop(); int subA = dataStack.pop(); int subRes = subA - subB;
-                         dataStack.push(subRes);
-                         System.out.println("[DEBUG] SUB: " + subA + " - " + subB + " = " + subRes + ". 栈: " + dataStack);
-                         break;
-
-                    case MUL:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on MUL");
-                         int mulB = dataStack.pop(); int mulA = dataStack.pop(); int mulRes = mulA * mulB;
-                         dataStack.push(mulRes);
-                         System.out.println("[DEBUG] MUL: " + mulA + " * " + mulB + " = " + mulRes + ". 栈: " + dataStack);
-                         break;
-
-                     case DIV:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on DIV");
-                         int divB = dataStack.pop(); int divA = dataStack.pop();
-                         if (divB == 0) throw new RuntimeException("Division by zero");
-                         int divRes = divA / divB;
-                         dataStack.push(divRes);
-                         System.out.println("[DEBUG] DIV: " + divA + " / " + divB + " = " + divRes + ". 栈: " + dataStack);
-                         break;
-
-                    case MOD:
-                        if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on MOD");
-                        int modB = dataStack.pop(); int modA = dataStack.pop();
-                        if (modB == 0) throw new RuntimeException("Modulo by zero");
-                        int modRes = modA % modB;
-                        dataStack.push(modRes);
-                        System.out.println("[DEBUG] MOD: " + modA + " % " + modB + " = " + modRes + ". 栈: " + dataStack);
-                        break;
+                // 无条件跳转（jump）
+                // 直接跳！不管栈顶的值！
+                // 	for循环跳回判断，if-then后跳到if结束
+                case JMP:
+                    if (verbose) System.out.println("[DEBUG] JMP: 无条件跳转到地址 " + inst.getAddress());
+                    jumpTo(inst.getAddress(), currentPC);
+                    break;
 
-                    case SWAP:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on SWAP");
-                         int swapB = dataStack.pop(); int swapA = dataStack.pop();
-                         dataStack.push(swapB); dataStack.push(swapA);
-                         System.out.println("[DEBUG] SWAP: 交换栈顶两元素. 栈: " + dataStack);
-                         break;
-
-                    case EQL:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on EQL");
-                         int eqlB = dataStack.pop(); int eqlA = dataStack.pop();
-                         dataStack.push(eqlA == eqlB ? 1 : 0);
-                         System.out.println("[DEBUG] EQL: " + eqlA + " == " + eqlB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-
-                    // 无条件跳转（jump）
-                    // 直接跳！不管栈顶的值！
-                    // 	for循环跳回判断，if-then后跳到if结束
-                    case JMP:
-                        int jmpAddr = inst.getAddress();
-                        System.out.println("[DEBUG] JMP: 无条件跳转到地址 " + jmpAddr);
-                        pc = jmpAddr;
-                        break;
+                // 条件跳转（Jump if Condition）
+                // 弹出栈顶元素，如果是0就跳，否则继续。
+                // if条件判断失败跳到else或者出口，for判断失败跳出循环
+                case JPC:
+                    if (dataStack.isEmpty()) {
+                        throw underflow(op);
+                    }
+                    a = dataStack.pop();
+                    if (verbose) logJpc(a, inst.getAddress());
+                    if (a == 0) {
+                        jumpTo(inst.getAddress(), currentPC);
+                    }
+                    break;
 
-                    // 条件跳转（Jump if Condition）
-                    // 弹出栈顶元素，如果是0就跳，否则继续。
-                    // if条件判断失败跳到else或者出口，for判断失败跳出循环
-                    case JPC:
-                         if (dataStack.isEmpty()) throw new RuntimeException("Stack underflow on JPC");
-                         int condition = dataStack.pop();
-                         int jpcAddr = inst.getAddress();
-                         System.out.println("[DEBUG] JPC: 条件值为 " + condition + ". 跳转地址 " + jpcAddr);
-                         if (condition == 0) {
-                             System.out.println("[DEBUG] JPC: 条件为 0, 跳转");
-                             pc = jpcAddr;
-                         } else {
-                              System.out.println("[DEBUG] JPC: 条件非 0, 不跳转");
-                         }
-                         break;
-
-                    case GTR:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on GTR");
-                         int gtrB = dataStack.pop(); 
-                         int gtrA = dataStack.pop();
-                         dataStack.push(gtrA > gtrB ? 1 : 0);
-                         System.out.println("[DEBUG] GTR: " + gtrA + " > " + gtrB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-                    
-                    case LSS:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on LSS");
-                         int lssB = dataStack.pop(); 
-                         int lssA = dataStack.pop();
-                         dataStack.push(lssA < lssB ? 1 : 0);
-                         System.out.println("[DEBUG] LSS: " + lssA + " < " + lssB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-                     
-                    case LEQ:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on LEQ");
-                         int leqB = dataStack.pop(); 
-                         int leqA = dataStack.pop();
-                         dataStack.push(leqA <= leqB ? 1 : 0);
-                         System.out.println("[DEBUG] LEQ: " + leqA + " <= " + leqB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-                     
-                    case GEQ:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on GEQ");
-                         int geqB = dataStack.pop(); 
-                         int geqA = dataStack.pop();
-                         dataStack.push(geqA >= geqB ? 1 : 0);
-                         System.out.println("[DEBUG] GEQ: " + geqA + " >= " + geqB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-                     
-                    case NEQ:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on NEQ");
-                         int neqB = dataStack.pop(); 
-                         int neqA = dataStack.pop();
-                         dataStack.push(neqA != neqB ? 1 : 0);
-                         System.out.println("[DEBUG] NEQ: " + neqA + " != " + neqB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-
-                    case OR:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on OR");
-                         int orB = dataStack.pop(); 
-                         int orA = dataStack.pop();
-                         dataStack.push((orA != 0 || orB != 0) ? 1 : 0);
-                         System.out.println("[DEBUG] OR: " + orA + " || " + orB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-                     
-                    case AND:
-                         if (dataStack.size() < 2) throw new RuntimeException("Stack underflow on AND");
-                         int andB = dataStack.pop(); 
-                         int andA = dataStack.pop();
-                         dataStack.push((andA != 0 && andB != 0) ? 1 : 0);
-                         System.out.println("[DEBUG] AND: " + andA + " && " + andB + " -> " + dataStack.peek() + ". 栈: " + dataStack);
-                         break;
-
-                    case PRINT:
-                        if (dataStack.isEmpty()) throw new RuntimeException("Stack underflow on PRINT");
-                        int valueToPrint = dataStack.pop();
-                        System.out.println("[OUTPUT] " + valueToPrint); // ✅ 打印到控制台
-                        writer.write(String.valueOf(valueToPrint)); // Write to file
-                        writer.flush(); // <-- Add flush to ensure content is written immediately
-                        System.out.println("[DEBUG] PRINTSTR: 输出字符串 \"" + String.valueOf(valueToPrint) + "\". 栈: " + dataStack);
-                        break;
-                    
-                    case PRINTSTR:
-                        String raw = stringPool.get(inst.getAddress());
-                        String parsed = parseEscapes(raw);  // 原始字符串 + 转义处理
-                    
-                        // 构建格式化后的最终字符串
-                        StringBuilder sb = new StringBuilder();
-                        int i = 0;
-                    
-                        while (i < parsed.length()) {
-                            char ch = parsed.charAt(i);
-                            if (ch == '%' && i + 1 < parsed.length()) {
-                                char next = parsed.charAt(i + 1);
-                                switch (next) {
-                                    case 'd':
-                                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %d 参数");
-                                        sb.append(dataStack.pop());
-                                        break;
-                                    case 'c':
-                                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %c 参数");
-                                        sb.append((char) (int) dataStack.pop());  // 注意类型转换
-                                        break;
-                                    case 's':
-                                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %s 参数");
-                                        int strIndex = dataStack.pop();
-                                        if (strIndex < 0 || strIndex >= stringPool.size())
-                                            throw new RuntimeException("printf: %s 字符串索引非法");
-                                        sb.append(parseEscapes(stringPool.get(strIndex)));
-                                        break;
-                                    default:
-                                        sb.append('%').append(next); // 非格式化指令，原样输出
-                                }
-                                i += 2;
-                            } else {
-                                sb.append(ch);
-                                i++;
-                            }
-                        }
-                    
-                        String finalOutput = sb.toString();
-                        System.out.println("[OUTPUT] " + finalOutput);
-                        writer.write(finalOutput);
-                        break;                    
-
-                    case READ:
-                        try {
-                            System.out.print("[INPUT] 请输入内容 (整数或字符): ");
-
-                            if (!scanner.hasNextLine()) {
-                                System.err.println("[ERROR] 没有更多输入了，使用默认值0！");
-                                dataStack.push(0);
-                            } else {
-                                String input = scanner.nextLine().trim();
-                                
-                                if (input.length() == 1 && !Character.isDigit(input.charAt(0))) {
-                                    // 单个字符，ASCII存进去
-                                    int ascii = (int) input.charAt(0);
-                                    dataStack.push(ascii);
-                                    System.out.println("[DEBUG] READ: 读取字符 '" + input.charAt(0) + "'，ASCII=" + ascii + " 压栈. 栈: " + dataStack);
-                                } else {
-                                    // 尝试按整数处理
-                                    int inputValue = Integer.parseInt(input);
-                                    dataStack.push(inputValue);
-                                    System.out.println("[DEBUG] READ: 读取整数 " + inputValue + " 压栈. 栈: " + dataStack);
-                                }
-                            }
-                        } catch (Exception e) {
-                            System.err.println("[ERROR] READ: 读取输入失败！" + e.getMessage());
-                            throw new RuntimeException("Failed to read input", e);
-                        }
-                        break;
-                    
+                case PRINT:
+                    doPrint();
+                    break;
 
-                    case RET:
-                        System.out.println("[DEBUG] 执行 RET 指令");
+                case PRINTSTR:
+                    doPrintStr(inst);
+                    break;
 
-                        // 如果栈为空，说明是主函数返回，直接终止程序
-                        if (callStack.isEmpty()) {
-                            System.out.println("[DEBUG] 栈为空，主函数返回，程序终止");
-                            // return;
-                            break;  // ✅ 完全跳出解释器执行循环！！
-                        }
+                case READ:
+                    if (mustSuspendForInput()) {
+                        // 回退到 READ 本身，恢复后重新执行；状态全在字段中，不依赖 Java 调用栈
+                        pc = currentPC;
+                        instructionCount--;
+                        opCounts[op.ordinal()]--; // 恢复后重新执行时会再计一次
+                        if (verbose) System.out.println("[DEBUG] READ: 暂无输入，挂起等待 PC=" + currentPC);
+                        return Status.NEEDS_INPUT;
+                    }
+                    doRead();
+                    break;
 
-                        System.out.println("[DEBUG] RET 执行前栈内容：" + callStack);
-                        System.out.println("[DEBUG] 数据栈内容: " + dataStack); // 这是执行 LOD、ADD 的主栈
-                        // int returnAddr = callStack.pop();
-                        StackFrame frame = callStack.pop();
-                        bp = frame.base;
-                        sp = frame.base; // 回收空间
-                        pc = frame.returnAddr;
-                        System.out.println("[DEBUG] RET 弹出函数返回地址: " + pc);
-                        printStackStatus();
-
-                        // if (!hasReturnedOnce) {
-                        //     hasReturnedOnce = true;
-                        //     System.out.println("💥 [DEBUG] 第一次 RET 执行完毕，强制终止程序用于调试！");
-                        //     return; // ✅ 立刻退出主循环，防止死循环
-                        // }
-
-                        // 如果栈不为空，弹出返回地址并继续执行
-                        // pc = returnAddr;
-                        continue;
-                    case PCode.OpCode.INT:
-                        int frameSize = inst.getAddress();
-                        sp = bp + frameSize; // Allocate frame space by setting SP
-                        System.out.println("[DEBUG] INT: Allocated frame size " + frameSize + ". New SP = " + sp);
+                case RET:
+                    // 如果栈为空，说明是主函数返回，直接终止程序
+                    if (callStack.isEmpty()) {
+                        if (verbose) System.out.println("[DEBUG] 执行 RET 指令\n[DEBUG] 栈为空，主函数返回，程序终止");
                         break;
+                    }
+                    doReturn();
+                    continue;
 
-                    case CALL:
-                        int levelDiffCall = inst.getLevel();
-                        int entryAddrCall = inst.getAddress();
-                        int paramCountCall = inst.getParamCount(); // 获取参数个数
-                        System.out.println("[DEBUG] CALL: levelDiff=" + levelDiffCall + ", entryAddr=" + entryAddrCall + ", params=" + paramCountCall);
-
-                        // 1. 计算静态链 (Static Link)
-                        int staticLink = base(levelDiffCall); // Use levelDiffCall declared above
-                        System.out.println("[DEBUG] CALL: Calculated Static Link = " + staticLink);
-
-                        // Push new stack frame onto callStack
-                        callStack.push(new StackFrame(currentPC + 1, bp)); // Save return address and old bp
-                        System.out.println("[DEBUG] CALL: Pushed StackFrame(ret=" + (currentPC + 1) + ", base=" + bp + ") onto callStack. Stack: " + callStack);
-
-                        // 2. 保存调用信息到新栈帧的开头 (内存中)
-                        // 新帧的基址将是当前的 sp
-                        int newBp = sp;
-                        // 动态扩容检查 (确保有空间存放 SL, DL, RA)
-                        if (newBp + 3 > memory.length) {
-                            int newSize = Math.max(memory.length * 2, newBp + 10);
-                            int[] newMem = new int[newSize];
-                            System.arraycopy(memory, 0, newMem, 0, memory.length);
-                            memory = newMem;
-                            System.out.println("[DEBUG] CALL: memory 扩容至 " + newSize);
-                        }
-                        memory[newBp + 0] = staticLink;       // 保存 Static Link (SL)
-                        memory[newBp + 1] = bp;               // 保存 Dynamic Link (DL) - a.k.a. old BP
-                        memory[newBp + 2] = pc;               // 保存 Return Address (RA) - PC already points to next instruction
-                        System.out.println("[DEBUG] CALL: Saving SL=" + staticLink + ", DL=" + bp + ", RA=" + pc + " at memory[" + newBp + "..." + (newBp + 2) + "]");
-
-                        // 3. 更新基址寄存器 (BP)
-                        bp = newBp;
-                        System.out.println("[DEBUG] CALL: Updated BP = " + bp);
-
-                        // 4. 跳转到函数入口
-                        pc = entryAddrCall;
-                        System.out.println("[DEBUG] CALL: Jumping to function entry PC = " + pc);
-                        
-                        // 注意：SP 的更新由函数入口的 INT 指令负责 (sp = bp + frameSize)
-                        // 参数传递：参数已由调用者压入 dataStack，被调用函数通过 LOD 0, offset (offset >= 3) 访问
-                        // 不需要在这里从 dataStack 弹出参数到 memory
-                        printStackStatus(); // 打印状态以便调试
-                        continue; // 跳过默认的 pc++
-
-                    case POP:
-                        if (dataStack.isEmpty()) {
-                            System.err.println("[ERROR] POP: 栈为空，无法弹出！");
-                            throw new RuntimeException("Stack underflow on POP");
+                case INT:
+                    sp = bp + inst.getAddress(); // Allocate frame space by setting SP
+                    if (verbose) System.out.println("[DEBUG] INT: Allocated frame size " + inst.getAddress() + ". New SP = " + sp);
+                    break;
+
+                case CALL:
+                    doCall(inst, currentPC);
+                    continue; // 跳过默认的 pc++
+
+                case TRIANG:
+                    if (dataStack.isEmpty()) {
+                        throw underflow(op);
+                    }
+                    a = dataStack.pop();
+                    dataStack.push(triangular(a));
+                    if (verbose) logStack("TRIANG: " + Integer.toUnsignedString(a) + " 的三角数");
+                    break;
+
+                case POP:
+                    if (dataStack.isEmpty()) {
+                        throw underflowOnPop();
+                    }
+                    a = dataStack.pop();
+                    if (verbose) logStack("POP: 弹出值 " + a);
+                    break;
+
+                default:
+                    throw unknownOp(op, currentPC);
+            }
+        }
+        return null;
+    }
+
+    private static final PCode.OpCode[] OP_CODES = PCode.OpCode.values();
+
+    private static int binary(PCode.OpCode op, int a, int b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV:
+                if (b == 0) throw new RuntimeException("Division by zero");
+                return a / b;
+            case MOD:
+                if (b == 0) throw new RuntimeException("Modulo by zero");
+                return a % b;
+            case EQL: return a == b ? 1 : 0;
+            case NEQ: return a != b ? 1 : 0;
+            case LSS: return a < b ? 1 : 0;
+            case LEQ: return a <= b ? 1 : 0;
+            case GTR: return a > b ? 1 : 0;
+            case GEQ: return a >= b ? 1 : 0;
+            case OR: return (a != 0 || b != 0) ? 1 : 0;
+            case AND: return (a != 0 && b != 0) ? 1 : 0;
+            case TRIP: return b > a ? b - a : 0; // 真实次数 < 2^32，差按 int 回绕后位模式不变
+            default: throw new IllegalArgumentException("不是二元运算: " + op);
+        }
+    }
+
+    // n(n-1)/2 mod 2^32，n 按无符号理解；先对偶数因子除 2，保证整除后再回绕
+    private static int triangular(int n) {
+        long u = n & 0xffffffffL;
+        return (int) ((u & 1) == 0 ? (u >>> 1) * (u - 1) : u * ((u - 1) >>> 1));
+    }
+
+    private void jumpTo(int target, int currentPC) throws IOException {
+        pc = target;
+        safepoint = target <= currentPC;
+        if (safepoint) {
+            publishFrame();
+            if (osrEnabled && !verbose && !stepByStep && trace == null) {
+                onBackEdge(target, currentPC);
+            }
+        }
+    }
+
+    // 回跳计数，到阈值编译循环区域 [header, backEdge]，已编译的直接进入执行
+    private void onBackEdge(int header, int backEdge) throws IOException {
+        if (compiledLoops == null) {
+            backEdgeCounts = new int[instructions.size()];
+            compiledLoops = new CompiledLoop[instructions.size()];
+        }
+        CompiledLoop loop = compiledLoops[header];
+        if (loop == null) {
+            int seen = ++backEdgeCounts[header];
+            if (seen == 1 && loopCache != null) {
+                loop = loopCache.get(instructions, header, backEdge);
+                if (loop != null) {
+                    cachedLoopCount++;
+                }
+            }
+            if (loop == null) {
+                if (seen < OSR_THRESHOLD) {
+                    return;
+                }
+                loop = CompiledLoop.compile(instructions, header, backEdge);
+                if (loopCache != null && loop != CompiledLoop.NOT_COMPILABLE) {
+                    loopCache.put(instructions, loop, backEdge);
+                }
+            }
+            compiledLoops[header] = loop;
+            if (loop != CompiledLoop.NOT_COMPILABLE) {
+                compiledLoopCount++;
+            }
+        }
+        // 时间片已用完时留给解释器在安全点让出，下个时间片回跳时再进入
+        if (loop != CompiledLoop.NOT_COMPILABLE && instructionCount < quantumEnd) {
+            runCompiledLoop(loop, header);
+        }
+    }
+
+    // 执行编译后的循环区域。进入时把活动帧（bp、数据栈）读进局部变量，
+    // 退出时把 pc、数据栈大小、指令计数写回字段，解释器从 pc 处继续，看不出中间跑过编译代码。
+    // 任何会让解释器报错的情况（栈下溢、地址越界、除零）都在执行该指令之前退出，
+    // 由解释器重新执行这条指令并给出完全相同的错误。
+    private void runCompiledLoop(CompiledLoop loop, int entryPc) throws IOException {
+        final int[] ops = loop.ops;
+        final int[] args = loop.args;
+        final int[] frameMask = loop.frameMask;
+        final int[] consts = loop.consts;
+        final byte[] sourceOps = loop.sourceOps;
+        final int header = loop.header;
+        final int frame = bp;
+        final long depth = (long) callStack.size() << 32; // 区域内没有 CALL / RET，调用深度不变
+        final int[] mem = memory; // 区域内没有 CALL，memory 不会扩容
+        final long[] counts = opCounts;
+        final long end = quantumEnd;
+        int[] st = dataStack.items;
+        int top = dataStack.size;
+        long count = instructionCount;
+        int i = entryPc - header;
+        int at, a, b, addr;
+
+        run:
+        while (i >= 0 && i < ops.length) {
+            at = i;
+            switch (ops[i]) {
+                case CompiledLoop.LIT:
+                    if (top == st.length) {
+                        st = Arrays.copyOf(st, top * 2);
+                    }
+                    st[top++] = args[i];
+                    i++;
+                    break;
+                case CompiledLoop.LOAD:
+                    addr = args[i] + (frame & frameMask[i]);
+                    if (addr < 0 || addr >= mem.length) break run;
+                    if (top == st.length) {
+                        st = Arrays.copyOf(st, top * 2);
+                    }
+                    st[top++] = mem[addr];
+                    i++;
+                    break;
+                case CompiledLoop.STORE:
+                    addr = args[i] + (frame & frameMask[i]);
+                    if (top < 1 || addr < 0 || addr >= mem.length) break run;
+                    writeMemory(addr, st[--top]);
+                    i++;
+                    break;
+                case CompiledLoop.LOAD_UP:
+                case CompiledLoop.STORE_UP:
+                    // 与 base() 相同地沿静态链回溯，链上越界交给解释器报错
+                    addr = frame;
+                    for (a = consts[i]; a > 0; a--) {
+                        if (addr < 0 || addr >= mem.length) break run;
+                        addr = mem[addr];
+                    }
+                    addr += args[i];
+                    if (addr < 0 || addr >= mem.length) break run;
+                    if (ops[i] == CompiledLoop.STORE_UP) {
+                        if (top < 1) break run;
+                        writeMemory(addr, st[--top]);
+                    } else {
+                        if (top == st.length) {
+                            st = Arrays.copyOf(st, top * 2);
                         }
-                        int poppedValue = dataStack.pop();
-                        System.out.println("[DEBUG] POP: 弹出值 " + poppedValue + ". 栈: " + dataStack);
-                        break;
-                    
+                        st[top++] = mem[addr];
+                    }
+                    i++;
+                    break;
+                case CompiledLoop.ADD:
+                    if (top < 2) break run;
+                    top--;
+                    st[top - 1] = st[top - 1] + st[top];
+                    i++;
+                    break;
+                case CompiledLoop.SUB:
+                    if (top < 2) break run;
+                    top--;
+                    st[top - 1] = st[top - 1] - st[top];
+                    i++;
+                    break;
+                case CompiledLoop.MUL:
+                    if (top < 2) break run;
+                    top--;
+                    st[top - 1] = st[top - 1] * st[top];
+                    i++;
+                    break;
+                case CompiledLoop.LSS:
+                    if (top < 2) break run;
+                    top--;
+                    st[top - 1] = st[top - 1] < st[top] ? 1 : 0;
+                    i++;
+                    break;
+                case CompiledLoop.DIVMOD:
+                case CompiledLoop.BINARY:
+                    // 除零交给解释器报错
+                    if (top < 2 || ops[i] == CompiledLoop.DIVMOD && st[top - 1] == 0) break run;
+                    top--;
+                    st[top - 1] = binary(OP_CODES[consts[i]], st[top - 1], st[top]);
+                    i++;
+                    break;
+                case CompiledLoop.SWAP:
+                    if (top < 2) break run;
+                    a = st[top - 1];
+                    st[top - 1] = st[top - 2];
+                    st[top - 2] = a;
+                    i++;
+                    break;
+                case CompiledLoop.POP:
+                    if (top < 1) break run;
+                    top--;
+                    i++;
+                    break;
+                case CompiledLoop.JMP:
+                    i = args[i];
+                    break;
+                case CompiledLoop.JPC:
+                    if (top < 1) break run;
+                    i = st[--top] == 0 ? args[i] : i + 1;
+                    break;
+                case CompiledLoop.TRIANG:
+                    if (top < 1) break run;
+                    st[top - 1] = triangular(st[top - 1]);
+                    i++;
+                    break;
+                case CompiledLoop.INT:
+                    sp = frame + args[i];
+                    i++;
+                    break;
+                case CompiledLoop.IO:
+                    if (sourceOps[i] == PCode.OpCode.READ.ordinal() && mustSuspendForInput()) {
+                        break run;
+                    }
+                    // 输出 / 输入走解释器的实现：先把数据栈写回，调用后再读回
+                    dataStack.items = st;
+                    dataStack.size = top;
+                    pc = header + i + 1;
+                    instructionCount = count + 1;
+                    PCode inst = loop.source[i];
+                    if (inst.getOp() == PCode.OpCode.PRINT) {
+                        doPrint();
+                    } else if (inst.getOp() == PCode.OpCode.PRINTSTR) {
+                        doPrintStr(inst);
+                    } else {
+                        doRead();
+                    }
+                    st = dataStack.items;
+                    top = dataStack.size;
+                    i++;
+                    break;
+                case CompiledLoop.INC:
+                    addr = args[i] + (frame & frameMask[i]);
+                    if (addr < 0 || addr >= mem.length) break run;
+                    writeMemory(addr, mem[addr] + consts[i]);
+                    i += 4;
+                    break;
+                case CompiledLoop.TEST_JPC:
+                    addr = args[i] + (frame & frameMask[i]);
+                    if (addr < 0 || addr >= mem.length) break run;
+                    i = binary(OP_CODES[loop.relOps[i]], mem[addr], consts[i]) == 0 ? loop.targets[i] : i + 4;
+                    break;
+                default: // EXIT
+                    break run;
+            }
+            // 计数按原指令：合成指令覆盖的每一条都要计入
+            if (loop.widths[at] == 1) {
+                counts[sourceOps[at]]++;
+                count++;
+            } else {
+                for (int k = at; k < at + loop.widths[at]; k++) {
+                    counts[sourceOps[k]]++;
+                }
+                count += loop.widths[at];
+            }
+            if (i <= at) {
+                // 回跳：与解释器一样在这里发布帧、检查时间片；跳到区域之前时也交还解释器
+                publishedFrame = depth | ((header + i) & 0xffffffffL);
+                if (count >= end || i < 0) {
+                    safepoint = true;
+                    break;
+                }
+            }
+        }
+        dataStack.items = st;
+        dataStack.size = top;
+        instructionCount = count;
+        pc = header + i;
+    }
+
+    // 逐条指令的调试输出和单步调试；返回 false 表示用户要求终止
+    private boolean beforeInstruction(PCode inst) {
+        if (verbose) {
+            System.out.println("[TRACE] 当前 PC = " + pc + ", 当前指令: " + inst);
+        }
+        // 插入单步调试提示 👇
+        if (stepByStep) {
+            System.out.println("[DEBUG] 当前PC=" + pc + ", 准备执行指令=" + inst);
+            System.out.print("按回车继续下一步，输入q后回车退出... ");
+            String input = scanner().nextLine();
+            if ("q".equalsIgnoreCase(input.trim())) {
+                System.out.println("[DEBUG] 用户请求终止执行，退出PCode执行器！");
+                return false;
+            }
+        }
+        // 👆单步调试完毕！
+        if (verbose) {
+            System.out.println("[DEBUG] === PC: " + pc + ", 指令: " + inst + ", 栈顶: " + (dataStack.isEmpty() ? "空" : dataStack.peek()) + " ===");
+        }
+        return true;
+    }
 
+    private void doPrint() throws IOException {
+        if (dataStack.isEmpty()) throw new RuntimeException("Stack underflow on PRINT");
+        int valueToPrint = dataStack.pop();
+        if (verbose) System.out.println("[OUTPUT] " + valueToPrint); // ✅ 打印到控制台
+        String text = String.valueOf(valueToPrint);
+        outputBytes += text.length(); // 数字都是 ASCII
+        writer.write(text); // Write to file
+        writer.flush(); // <-- Add flush to ensure content is written immediately
+        if (verbose) System.out.println("[DEBUG] PRINTSTR: 输出字符串 \"" + String.valueOf(valueToPrint) + "\". 栈: " + dataStack);
+    }
+
+    private void doPrintStr(PCode inst) throws IOException {
+        int address = inst.getAddress();
+        String parsed = printable(address);  // 原始字符串 + 转义处理
+        if (printableBytes[address] >= 0) {
+            // 没有格式说明符，原样输出
+            if (verbose) System.out.println("[OUTPUT] " + parsed);
+            outputBytes += printableBytes[address];
+            writer.write(parsed);
+            return;
+        }
+
+        // 构建格式化后的最终字符串
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+
+        while (i < parsed.length()) {
+            char ch = parsed.charAt(i);
+            if (ch == '%' && i + 1 < parsed.length()) {
+                char next = parsed.charAt(i + 1);
+                switch (next) {
+                    case 'd':
+                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %d 参数");
+                        sb.append(dataStack.pop());
+                        break;
+                    case 'c':
+                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %c 参数");
+                        sb.append((char) dataStack.pop());  // 注意类型转换
+                        break;
+                    case 's':
+                        if (dataStack.isEmpty()) throw new RuntimeException("printf: 缺少 %s 参数");
+                        int strIndex = dataStack.pop();
+                        if (strIndex < 0 || strIndex >= stringPool.size())
+                            throw new RuntimeException("printf: %s 字符串索引非法");
+                        sb.append(printable(strIndex));
+                        break;
                     default:
-                        System.err.println("[ERROR] 未知 OpCode: " + op + " at PC=" + currentPC);
-                        throw new RuntimeException("Unknown OpCode: " + op);
+                        sb.append('%').append(next); // 非格式化指令，原样输出
+                }
+                i += 2;
+            } else {
+                sb.append(ch);
+                i++;
+            }
+        }
+
+        String finalOutput = sb.toString();
+        if (verbose) System.out.println("[OUTPUT] " + finalOutput);
+        outputBytes += RuntimeMetrics.utf8Length(finalOutput);
+        writer.write(finalOutput);
+    }
+
+    private void doRead() {
+        readCount++;
+        try {
+            if (verbose) System.out.print("[INPUT] 请输入内容 (整数或字符): ");
+
+            if (interactive ? !inputPending() : !scanner().hasNextLine()) {
+                System.err.println("[ERROR] 没有更多输入了，使用默认值0！");
+                dataStack.push(0);
+            } else {
+                String input = (interactive ? pollInput() : scanner().nextLine()).trim();
+
+                if (input.length() == 1 && !Character.isDigit(input.charAt(0))) {
+                    // 单个字符，ASCII存进去
+                    int ascii = (int) input.charAt(0);
+                    dataStack.push(ascii);
+                    if (verbose) System.out.println("[DEBUG] READ: 读取字符 '" + input.charAt(0) + "'，ASCII=" + ascii + " 压栈. 栈: " + dataStack);
+                } else {
+                    // 尝试按整数处理
+                    int inputValue = Integer.parseInt(input);
+                    dataStack.push(inputValue);
+                    if (verbose) System.out.println("[DEBUG] READ: 读取整数 " + inputValue + " 压栈. 栈: " + dataStack);
                 }
             }
+        } catch (Exception e) {
+            System.err.println("[ERROR] READ: 读取输入失败！" + e.getMessage());
+            throw new RuntimeException("Failed to read input", e);
+        }
+    }
+
+    private void doReturn() {
+        if (verbose) {
+            System.out.println("[DEBUG] 执行 RET 指令");
+            System.out.println("[DEBUG] RET 执行前栈内容：" + callStack);
+            System.out.println("[DEBUG] 数据栈内容: " + dataStack); // 这是执行 LOD、ADD 的主栈
+        }
+        // int returnAddr = callStack.pop();
+        int returnAddr = callStack.topReturnAddr();
+        int base = callStack.topBase();
+        callStack.pop();
+        callStackLow = Math.min(callStackLow, callStack.size());
+        bp = base;
+        sp = base; // 回收空间
+        pc = returnAddr;
+        publishFrame();
+        if (verbose) {
+            System.out.println("[DEBUG] RET 弹出函数返回地址: " + pc);
+            printStackStatus();
+        }
+        // 如果栈不为空，弹出返回地址并继续执行
+    }
+
+    private void doCall(PCode inst, int currentPC) {
+        int levelDiffCall = inst.getLevel();
+        int entryAddrCall = inst.getAddress();
+        int paramCountCall = inst.getParamCount(); // 获取参数个数
+        if (verbose) System.out.println("[DEBUG] CALL: levelDiff=" + levelDiffCall + ", entryAddr=" + entryAddrCall + ", params=" + paramCountCall);
+
+        // 1. 计算静态链 (Static Link)
+        int staticLink = base(levelDiffCall); // Use levelDiffCall declared above
+        if (verbose) System.out.println("[DEBUG] CALL: Calculated Static Link = " + staticLink);
+
+        // Push new stack frame onto callStack
+        callStack.push(currentPC + 1, bp); // Save return address and old bp
+        callCount++;
+        maxCallDepth = Math.max(maxCallDepth, callStack.size() - 1); // 不算栈底的结束标记
+        if (verbose) System.out.println("[DEBUG] CALL: Pushed StackFrame(ret=" + (currentPC + 1) + ", base=" + bp + ") onto callStack. Stack: " + callStack);
 
+        // 2. 保存调用信息到新栈帧的开头 (内存中)
+        // 新帧的基址将是当前的 sp
+        int newBp = sp;
+        // 动态扩容检查 (确保有空间存放 SL, DL, RA)
+        if (newBp + 3 > memory.length) {
+            int newSize = Math.max(memory.length * 2, newBp + 10);
+            int[] newMem = new int[newSize];
+            System.arraycopy(memory, 0, newMem, 0, memory.length);
+            memory = newMem;
+            dirtyCards = Arrays.copyOf(dirtyCards, cardWords(newSize));
+            if (verbose) System.out.println("[DEBUG] CALL: memory 扩容至 " + newSize);
+        }
+        writeMemory(newBp + 0, staticLink);   // 保存 Static Link (SL)
+        writeMemory(newBp + 1, bp);           // 保存 Dynamic Link (DL) - a.k.a. old BP
+        writeMemory(newBp + 2, pc);           // 保存 Return Address (RA) - PC already points to next instruction
+        if (trace != null) {
+            trace.memoryWrite(newBp + 2, pc);
+        }
+        if (verbose) System.out.println("[DEBUG] CALL: Saving SL=" + staticLink + ", DL=" + bp + ", RA=" + pc + " at memory[" + newBp + "..." + (newBp + 2) + "]");
+
+        // 3. 更新基址寄存器 (BP)
+        bp = newBp;
+        if (verbose) System.out.println("[DEBUG] CALL: Updated BP = " + bp);
+
+        // 4. 跳转到函数入口
+        pc = entryAddrCall;
+        if (verbose) System.out.println("[DEBUG] CALL: Jumping to function entry PC = " + pc);
+        safepoint = true;
+        publishFrame();
+
+        // 注意：SP 的更新由函数入口的 INT 指令负责 (sp = bp + frameSize)
+        // 参数传递：参数已由调用者压入 dataStack，被调用函数通过 LOD 0, offset (offset >= 3) 访问
+        // 不需要在这里从 dataStack 弹出参数到 memory
+        if (verbose) printStackStatus(); // 打印状态以便调试
+    }
+
+    // 程序正常跑完（或单步调试中退出）
+    private void finishRun() throws IOException {
+        if (verbose) {
             if (pc >= instructions.size()) {
                  System.out.println("[DEBUG] PCodeExecutor: 执行超出指令列表末尾.");
             } else if (pc < 0 && !callStack.isEmpty()) { // 检查当前帧的 returnAddr 是否为 -1
-                 StackFrame top = callStack.peek();
-                 if (top.returnAddr == END_OF_EXECUTION_MARKER) {
+                 if (callStack.topReturnAddr() == END_OF_EXECUTION_MARKER) {
                     System.out.println("[DEBUG] PCodeExecutor: 主程序正常返回.");
                  }
             } else {
-                 System.out.println("[DEBUG] PCodeExecutor: 执行意外终止，PC = " + pc + ", 栈顶: " + (callStack.isEmpty()?"空":callStack.peek()));
-            }
-            writer.close();
-        } catch (Exception e) {
-            System.err.println("\n[FATAL ERROR] PCodeExecutor 执行出错: " + e.getMessage());
-            e.printStackTrace();
-            // 尝试关闭 writer
-            if (writer != null) {
-                try { writer.close(); } catch (IOException ioex) { /* ignore */ }
+                 System.out.println("[DEBUG] PCodeExecutor: 执行意外终止，PC = " + pc + ", 栈顶: " + (callStack.isEmpty()?"空":callStack.topString()));
             }
         }
+        writer.close();
+        status = Status.HALTED;
     }
 
+    private void failRun(Exception e) {
+        System.err.println("\n[FATAL ERROR] PCodeExecutor 执行出错: " + e.getMessage());
+        e.printStackTrace();
+        // 尝试关闭 writer
+        if (writer != null) {
+            try { writer.close(); } catch (IOException ioex) { /* ignore */ }
+        }
+        if (trace != null) {
+            trace.dumpOnFailure();
+        }
+        status = Status.FAILED;
+    }
+
+    // ---- 错误构造与调试输出：都在解释循环之外，避免撑大热点方法 ----
+
+    private RuntimeException underflow(PCode.OpCode op) {
+        if (op == PCode.OpCode.STO) {
+            System.err.println("[ERROR] STO: 栈为空，无法存储!");
+        }
+        return new RuntimeException("Stack underflow on " + op);
+    }
+
+    private RuntimeException underflowOnPop() {
+        System.err.println("[ERROR] POP: 栈为空，无法弹出！");
+        return new RuntimeException("Stack underflow on POP");
+    }
+
+    private RuntimeException badAddress(PCode.OpCode op, int addr) {
+        System.err.println("[ERROR] " + op + ": 无效内存地址 " + addr);
+        return new RuntimeException("Invalid memory address for " + op + ": " + addr);
+    }
+
+    private RuntimeException unknownOp(PCode.OpCode op, int currentPC) {
+        System.err.println("[ERROR] 未知 OpCode: " + op + " at PC=" + currentPC);
+        return new RuntimeException("Unknown OpCode: " + op);
+    }
+
+    private void logStack(String message) {
+        System.out.println("[DEBUG] " + message + ". 栈: " + dataStack);
+    }
+
+    private void logStore(int value, int addr) {
+        System.out.println(storeLine(value, addr, memory[addr]));
+    }
+
+    // STO 的调试输出，TraceDecoder 还原轨迹时用同一个格式，两边的 STO 行可以逐行 diff；
+    // 轨迹里没有整个数据栈，所以这一行不带栈内容（下一条指令的 "=== PC" 行有栈顶）
+    static String storeLine(int value, int addr, int stored) {
+        return "[DEBUG] STO: 将值 " + value + " 存储到地址 " + addr + ", 内存[" + addr + "]=" + stored;
+    }
+
+    private void logBinary(PCode.OpCode op, int a, int b) {
+        String symbol;
+        boolean arithmetic = true;
+        switch (op) {
+            case ADD: symbol = "+"; break;
+            case SUB: symbol = "-"; break;
+            case MUL: symbol = "*"; break;
+            case DIV: symbol = "/"; break;
+            case MOD: symbol = "%"; break;
+            case EQL: symbol = "=="; arithmetic = false; break;
+            case NEQ: symbol = "!="; arithmetic = false; break;
+            case LSS: symbol = "<"; arithmetic = false; break;
+            case LEQ: symbol = "<="; arithmetic = false; break;
+            case GTR: symbol = ">"; arithmetic = false; break;
+            case GEQ: symbol = ">="; arithmetic = false; break;
+            case OR: symbol = "||"; arithmetic = false; break;
+            case TRIP: symbol = ".."; break; // 迭代次数：[a, b) 里的整数个数
+            default: symbol = "&&"; arithmetic = false; break;
+        }
+        System.out.println("[DEBUG] " + op + ": " + a + " " + symbol + " " + b + (arithmetic ? " = " : " -> ") + dataStack.peek() + ". 栈: " + dataStack);
+    }
+
+    private void logJpc(int condition, int target) {
+        System.out.println("[DEBUG] JPC: 条件值为 " + condition + ". 跳转地址 " + target);
+        if (condition == 0) {
+            System.out.println("[DEBUG] JPC: 条件为 0, 跳转");
+        } else {
+            System.out.println("[DEBUG] JPC: 条件非 0, 不跳转");
+        }
+    }
 
     private int base(int levelDiff) {
         if (levelDiff == -1) {
@@ -484,17 +1243,61 @@ public class PCodeExecutor {
     }
 
     // ✅ 统一调试输出函数
+    // 增量输出：调用栈只列出上次 dump 以来新压入的帧，数据栈只列出栈顶若干个，
+    // 内存只列出变化的单元，深递归时每次 dump 不再随栈深 / 内存大小线性增长
     private void printStackStatus() {
         System.out.println("📦 [STACK INFO]");
-        System.out.println(" - callStack: " + callStack);     // 显示函数调用栈帧
-        System.out.println(" - dataStack: " + dataStack);     // 显示表达式栈
+        System.out.println(" - callStack: depth=" + callStack.size() + ", 新帧 " + dumpCallStackDiff()); // 显示函数调用栈帧
+        System.out.println(" - dataStack: size=" + dataStack.size() + ", top " + dumpDataStackTop());      // 显示表达式栈
         System.out.println(" - bp = " + bp + ", sp = " + sp); // 当前函数帧边界
-        System.out.print(" - memory: [");
-        for (int i = 0; i < memory.length; i++) {
-            if (memory[i] != 0) {
-                System.out.print(i + "=" + memory[i] + ", ");
+        System.out.println(" - memory diff: " + dumpMemoryDiff());
+    }
+
+    private String dumpCallStackDiff() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = Math.min(callStackLow, callStack.size()); i < callStack.size(); i++) {
+            sb.append(callStack.frameString(i));
+        }
+        callStackLow = callStack.size();
+        return sb.append("]").toString();
+    }
+
+    private String dumpDataStackTop() {
+        int from = Math.max(0, dataStack.size() - DUMP_DATA_STACK_TOP);
+        StringBuilder sb = new StringBuilder(from > 0 ? "[..., " : "[");
+        for (int i = from; i < dataStack.size(); i++) {
+            if (i > from) {
+                sb.append(", ");
+            }
+            sb.append(dataStack.get(i));
+        }
+        return sb.append("]").toString();
+    }
+
+    // 增量内存快照：只扫描上次 dump 以来写过的卡，输出 "[地址: 旧值 -> 新值, ...]"，
+    // 并把 shadow 更新为当前内容、清空卡表。第一次 dump 相对全零内存，即列出所有非零单元。
+    // 递归程序每次 CALL/RET 都会 dump，扫描量从 O(memory) 降到 O(本帧写过的卡)。
+    public String dumpMemoryDiff() {
+        if (shadow == null || shadow.length < memory.length) {
+            shadow = shadow == null ? new int[memory.length] : Arrays.copyOf(shadow, memory.length);
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int w = 0; w < dirtyCards.length; w++) {
+            long bits = dirtyCards[w];
+            while (bits != 0) {
+                int card = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int from = card << CARD_SHIFT;
+                int to = Math.min(from + CARD_SIZE, memory.length);
+                for (int i = from; i < to; i++) {
+                    if (memory[i] != shadow[i]) {
+                        sb.append(i).append(": ").append(shadow[i]).append(" -> ").append(memory[i]).append(", ");
+                        shadow[i] = memory[i];
+                    }
+                }
             }
+            dirtyCards[w] = 0L;
         }
-        System.out.println("]");
+        return sb.append("]").toString();
     }
 }
@@ -0,0 +1,194 @@
+package frontend;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// 分块并行的词法分析。源码按换行切成若干块（每块结束在 \n 之后），每块在 ForkJoinPool 上
+// 用各自的 Lexer 扫描，行号从 0 开始记；合并时按块的顺序拼接 Token、给行号加上该块开头的实际行号，
+// 再按顺序重放每块记下的词法错误，errors / errorLines 与顺序扫描完全一致。
+//
+// 块的开头不一定是正常状态：上一块可能开了一个跨行的块注释或字符串常量。开始于某块的 Token
+// 总是由这一块扫完（可以读过块尾），所以下一块的实际入口是"从某个位置起、处于注释或字符串剩余部分"。
+// 扫描时先做一遍便宜的预判：
+//   - 块里第一个 */ 出现在第一个 /* 之前，可能以注释剩余部分开头；
+//   - 块里双引号个数为奇数，可能以字符串剩余部分开头；
+// 可能的话额外按这种入口投机扫一遍（先跳过剩余部分再正常扫描）。合并时按上一块实际的结束状态
+// 选用对应结果，跳过的终点必须正好是上一块扫到的位置；没有可用结果（猜错、或越界的是字符常量）
+// 就从实际位置顺序重扫这一块。整块都落在注释或字符串里时这一块直接跳过。
+//
+// 调试输出需要按源码顺序逐词打印，verbose 开着时退回顺序扫描；只有一个工作线程（单核机器上的
+// 公共池）或源码不到一块时同样直接顺序扫描，分块只会多出合并的开销。
+class ParallelLexer {
+    static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    private final Lexer owner;
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+    private int resyncCount = 0;
+
+    ParallelLexer(Lexer owner) {
+        this(owner, ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    ParallelLexer(Lexer owner, ForkJoinPool pool, int chunkBytes) {
+        this.owner = owner;
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    // 合并时投机结果不可用、需要顺序重扫的块数
+    int getResyncCount() {
+        return resyncCount;
+    }
+
+    TokenBuffer tokenize(ByteBuffer source) {
+        ByteBuffer src = source.slice();
+        int size = src.remaining();
+        if (owner.verbose || size <= chunkBytes || pool.getParallelism() < 2) {
+            return owner.tokenize(source);
+        }
+        int limit = Lexer.limitOf(src);
+
+        List<Chunk> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < limit) {
+            int to = from + chunkBytes;
+            while (to < size && src.get(to - 1) != '\n') {
+                to++;
+            }
+            if (to >= size) {
+                to = limit;
+            }
+            chunks.add(new Chunk(src, from, to));
+            from = to;
+        }
+
+        try {
+            for (Future<Chunk> done : pool.invokeAll(chunks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("并行词法分析被中断", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("并行词法分析失败", e.getCause());
+        }
+
+        TokenBuffer merged = new TokenBuffer(src);
+        int pos = 0;      // 已经扫到的位置
+        int line = 1;     // pos 处的行号
+        int span = Lexer.SPAN_NONE;
+        for (Chunk chunk : chunks) {
+            if (pos >= chunk.to) {
+                continue;
+            }
+            Run run;
+            int base;
+            if (pos == chunk.from) {
+                run = chunk.runs[Lexer.ENTER_NORMAL];
+                base = line;
+            } else {
+                int enter = span == Lexer.SPAN_COMMENT ? Lexer.ENTER_COMMENT
+                        : span == Lexer.SPAN_STRING ? Lexer.ENTER_STRING : -1;
+                run = enter < 0 ? null : chunk.runs[enter];
+                if (run != null && run.skipEnd == pos) {
+                    base = line - run.skipLines;
+                } else {
+                    resyncCount++;
+                    run = run(src, pos, chunk.to, Lexer.ENTER_NORMAL);
+                    base = line;
+                }
+            }
+            merged.append(run.tokens, base);
+            for (Error error : run.errors) {
+                owner.addError(base + error.lineNumber);
+            }
+            pos = run.end;
+            line = base + run.endLine;
+            span = run.lastSpan;
+        }
+        merged.trim();
+        return merged;
+    }
+
+    // 一块在某种入口状态下的扫描结果，行号从 0 开始
+    private static final class Run {
+        TokenBuffer tokens;
+        List<Error> errors;
+        int end;
+        int endLine;
+        int lastSpan;
+        int skipEnd;
+        int skipLines;
+    }
+
+    private static Run run(ByteBuffer src, int from, int to, int enter) {
+        Lexer lexer = new Lexer();
+        lexer.verbose = false;
+        ByteBuffer view = src.duplicate();
+        lexer.setSource(view);
+        TokenBuffer tokens = new TokenBuffer(view);
+        int end = lexer.scan(tokens, from, to, enter, 0);
+        if (end < 0) {
+            return null; // 注释或字符串的剩余部分一直延续到块尾之后
+        }
+        Run run = new Run();
+        run.tokens = tokens;
+        run.errors = lexer.errors;
+        run.end = end;
+        run.endLine = lexer.line;
+        run.lastSpan = lexer.lastSpan;
+        run.skipEnd = lexer.skipEnd;
+        run.skipLines = lexer.skipLines;
+        return run;
+    }
+
+    private static final class Chunk implements Callable<Chunk> {
+        final ByteBuffer src;
+        final int from;
+        final int to;
+        final Run[] runs = new Run[3]; // 按入口状态
+
+        Chunk(ByteBuffer src, int from, int to) {
+            this.src = src;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Chunk call() {
+            runs[Lexer.ENTER_NORMAL] = run(src, from, to, Lexer.ENTER_NORMAL);
+            if (from == 0) {
+                return this;
+            }
+            // 预判：第一个 */ 在第一个 /* 之前，或双引号个数为奇数
+            ByteBuffer view = src.duplicate();
+            int end = Math.min(to, view.limit());
+            boolean commentOpened = false;
+            boolean commentClosedFirst = false;
+            int quotes = 0;
+            for (int i = from; i < end; i++) {
+                byte c = view.get(i);
+                if (c == '"') {
+                    quotes++;
+                } else if (c == '*' && i + 1 < end && view.get(i + 1) == '/' && !commentOpened) {
+                    commentClosedFirst = true;
+                } else if (c == '/' && i + 1 < end && view.get(i + 1) == '*') {
+                    commentOpened = true;
+                }
+            }
+            if (commentClosedFirst) {
+                runs[Lexer.ENTER_COMMENT] = run(src, from, to, Lexer.ENTER_COMMENT);
+            }
+            if (quotes % 2 == 1) {
+                runs[Lexer.ENTER_STRING] = run(src, from, to, Lexer.ENTER_STRING);
+            }
+            return this;
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package frontend;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Parser {
     private CodeGenerator codeGenerator;
-    private List<Token> tokens; // 词法单元列表
-    private int index = 0; // 当前解析位置
-    private Token currentToken; // 当前词法单元
-    private Token previousToken; // 上一个词法单元
+    private static final int NONE = TokenSource.NONE;
+    private TokenSource tokens; // 词法单元来源，按编号读类型 / 值 / 行号，不为每个词法单元建对象
+    private int currentToken = NONE; // 当前词法单元的编号
+    private int previousToken = NONE; // 上一个词法单元的编号
     public List<Error> errors; // 错误列表
     private boolean outputEnabled = true; // 是否输出词法单元和语法成分
     private Set<Integer> errorLines;
@@ -24,21 +33,46 @@ public class Parser {
     private int lastBlockEndLineNumber = -1;
     private boolean hasSyntaxErrorInCurrentFunc = false; // 新增：当前函数体内是否存在语法错误
     private ASTNode root = new ASTNode("Program");
+    private PrintStream out = System.out; // 调试输出，并行分析函数体时每个函数先写到自己的缓冲里
+    private TokenBuffer buffer; // 词法单元全部扫完时的 TokenBuffer，流式读取时为 null
+    private ForkJoinPool pool; // 不为 null 时并行分析函数体
 
     // 移除 globalOffset 和 localOffset，这些应由 CodeGenerator 管理
     // private int globalOffset = 0; // ✅ 全局变量地址偏移
     // private int localOffset = 0;  // ✅ 函数内变量地址偏移
 
     public Parser(List<Token> tokens, List<Error> errors, Set<Integer> errorLines,CodeGenerator codeGenerator) {
+        this(new TokenBufferSource(TokenBuffer.of(tokens)), errors, errorLines, codeGenerator);
+    }
+
+    // 从 TokenSource 边读边分析（如 Lexer.tokenizeStreaming），不需要先有完整的 Token 列表
+    public Parser(TokenSource tokens, List<Error> errors, Set<Integer> errorLines,CodeGenerator codeGenerator) {
         this.tokens = tokens;
         this.errors = errors;
         this.errorLines = errorLines; // 使用共享的 errorLines 集合
         this.codeGenerator = codeGenerator;
         this.currentScope = new Scope(null, scopeCounter); // 初始化全局作用域
-        if (!tokens.isEmpty()) {
-            currentToken = tokens.get(index);
-        }
+        currentToken = tokens.peek(0);
         this.outputEnabled = false; // 关闭输出
+        if (tokens instanceof TokenBufferSource) {
+            this.buffer = ((TokenBufferSource) tokens).buffer();
+        }
+    }
+
+    // 并行分析一个函数定义用的 Parser：读 range 那一段，在全局作用域的快照 globals 上分析，
+    // 错误、符号和调试输出都先记在自己这里，由 owner 按源码顺序合并
+    private Parser(Parser owner, FuncDefScanner.Range range, Scope globals, int scopeCounter, String currentBType, PrintStream out) {
+        this.tokens = new TokenBufferSource(owner.buffer, range.from, range.to);
+        this.errors = new ArrayList<>();
+        this.errorLines = new HashSet<>(); // 只在函数内去重，合并时再和已有的错误行去重
+        this.codeGenerator = owner.codeGenerator;
+        this.currentScope = globals;
+        this.scopeCounter = scopeCounter;
+        this.currentBType = currentBType;
+        this.root = owner.root; // FuncDef 的调试输出要读 root 的子节点数，这期间 root 不会变
+        this.out = out;
+        this.outputEnabled = false;
+        this.currentToken = tokens.peek(0);
     }
 
     private void enterScope() {
@@ -55,29 +89,25 @@ public class Parser {
     // 获取下一个词法单元
     private void nextToken() {
         previousToken = currentToken;
-        index++;
-        while (index < tokens.size()) {
-            currentToken = tokens.get(index);
-            if (currentToken.type != TokenType.ERROR) {
-                break;
-            } else {
-                // 已经在词法分析器中记录了错误，这里直接跳过
-                index++;
-            }
-        }
-        if (index >= tokens.size()) {
-            currentToken = null;
-        }
+        tokens.next();
+        currentToken = tokens.peek(0);
+        while (currentToken != NONE && tokens.type(currentToken) == TokenType.ERROR) {
+            // 已经在词法分析器中记录了错误，这里直接跳过
+            tokens.next();
+            currentToken = tokens.peek(0);
+        }
+        // 报错要用上一个词法单元的行号，它之前的不再需要
+        tokens.discardBefore(previousToken != NONE ? previousToken : currentToken);
     }
 
     // 匹配指定的词法单元类型
     private boolean match(TokenType type) {
-        while (currentToken != null && currentToken.type == TokenType.ERROR) {
+        while (currentToken != NONE && tokens.type(currentToken) == TokenType.ERROR) {
             nextToken();
         }
-        if (currentToken != null && currentToken.type == type) {
+        if (currentToken != NONE && tokens.type(currentToken) == type) {
             if (outputEnabled) {
-                System.out.println(currentToken.toString());
+                out.println(tokens.describe(currentToken));
             }
             previousToken = currentToken; // 在这里更新 previousToken
             nextToken();
@@ -88,6 +118,33 @@ public class Parser {
     }
 
 
+    // 查判定点 decision 的预测表：从当前词法单元开始（跳过 ERROR）依次往后看，最多看 PredictTables.K 个，
+    // 返回选中的候选编号，或 PredictTables.NO_ALT / PredictTables.BACKTRACK；不移动位置
+    private int predict(int decision) {
+        int state = PredictTables.START;
+        int depth = 0;
+        do {
+            state = PredictTables.next(decision, state, terminal(lookahead(depth++)));
+        } while (!PredictTables.isDecided(state));
+        return PredictTables.alternative(state);
+    }
+
+    // 当前位置之后第 depth 个不是 ERROR 的词法单元（depth = 0 就是 currentToken），读完返回 NONE
+    private int lookahead(int depth) {
+        int token = currentToken;
+        int k = 0;
+        for (int i = 0; i < depth && token != NONE; i++) {
+            do {
+                token = tokens.peek(++k);
+            } while (token != NONE && tokens.type(token) == TokenType.ERROR);
+        }
+        return token;
+    }
+
+    private int terminal(int token) {
+        return token != NONE ? tokens.type(token).ordinal() : PredictTables.EOF;
+    }
+
     // 移除不带行号参数的 reportError 方法
 
     // 报告错误，使用指定的行号
@@ -104,8 +161,8 @@ public class Parser {
 
     // 报告错误，使用当前或前一个词法单元的行号
     private void reportError(char errorType) {
-        int errorLineNumber = previousToken != null ? previousToken.lineNumber :
-                (currentToken != null ? currentToken.lineNumber : 1);
+        int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) :
+                (currentToken != NONE ? tokens.line(currentToken) : 1);
         if (!errorLines.contains(errorLineNumber)) {
             errors.add(new Error(errorLineNumber, errorType));
             errorLines.add(errorLineNumber);
@@ -113,18 +170,28 @@ public class Parser {
     }
 
 
+    // 与 parse 相同，但 {FuncDef} 部分在 ForkJoinPool 公共池上按函数并行分析；流式读取时仍顺序分析
+    public ASTNode parseParallel() {
+        return parseParallel(ForkJoinPool.commonPool());
+    }
+
+    ASTNode parseParallel(ForkJoinPool pool) {
+        this.pool = pool;
+        return parse();
+    }
+
     // 解析程序入口
     public ASTNode parse() {
         CompUnit();
         // 收集全局作用域的符号
         symbolList.addAll(currentScope.getSymbols());
-        System.out.println("🚧 Program 子节点数量: " + root.getChildren().size());
+        out.println("🚧 Program 子节点数量: " + root.getChildren().size());
         return root;
     }
 
     // CompUnit → {Decl} {FuncDef} MainFuncDef
     private void CompUnit() {
-        while (isDecl()) {
+        while (predict(PredictTables.DECLS) == PredictTables.DECLS_DECL) {
             ASTNode node = Decl(); // 会自动 add 到 root 上（VarDecl/ConstDecl 会挂到 root）
             if (node != null) {
                 root.addChild(node); // ✅ 现在由你统一挂载
@@ -133,7 +200,10 @@ public class Parser {
     
         // 🧠 添加一个新的 list 来暂存 FuncDef
         List<ASTNode> funcDefNodes = new ArrayList<>();
-        while (isFuncDef()) {
+        if (pool != null && buffer != null && pool.getParallelism() >= 2) {
+            parseFuncDefsInParallel(funcDefNodes); // 并行分析能确定结果的一段，剩下的照常往下
+        }
+        while (predict(PredictTables.FUNC_DEFS) == PredictTables.FUNC_DEFS_FUNC) {
             ASTNode node = FuncDef(); // ⛳️ 你要让 FuncDef() 返回 ASTNode
             funcDefNodes.add(node);   // 📥 暂存所有函数定义
         }
@@ -148,21 +218,188 @@ public class Parser {
         }
     
         if (outputEnabled) {
-            System.out.println("<CompUnit>");
+            out.println("<CompUnit>");
         }
     }
     
 
-    // 判断是否是声明
-    private boolean isDecl() {
-        return isConstDecl() || isVarDecl();
+    // 两阶段分析 {FuncDef}：
+    //   1. FuncDefScanner 预扫描出接下来连续的规整函数定义，按顺序登记签名，每个函数拿到的全局作用域快照
+    //      只有全局变量和它前面的函数，和顺序分析到它时一样（同名照样报 b）；
+    //   2. 每个函数在自己的 Parser 上并行分析，开始时的 scopeCounter / currentBType 按预扫描推算。
+    // 再按源码顺序合并：函数开始时的实际状态与推算的一致、分析正好读完这个函数、没有往后多看，结果才与顺序分析相同，
+    // 这时合并错误（按行号去重，同 reportError）、符号、函数名和调试输出；第一个对不上的函数和它后面的都丢掉，
+    // 从那个函数开始回到顺序分析。
+    private void parseFuncDefsInParallel(List<ASTNode> funcDefNodes) {
+        if (currentToken == NONE) {
+            return;
+        }
+        List<FuncDefScanner.Range> ranges = FuncDefScanner.scan(buffer, currentToken);
+        if (ranges.size() < 2) {
+            return;
+        }
+        // 合并时还要往全局作用域里登记函数，工作线程读的是这时的一份副本
+        Map<String, Symbol> globalSymbols = new HashMap<>();
+        for (Symbol symbol : currentScope.getSymbols()) {
+            globalSymbols.put(symbol.name, symbol);
+        }
+        Map<String, Integer> funcIndex = new HashMap<>(); // 函数名 → 第一个登记成功的函数
+        List<Symbol> signatures = new ArrayList<>();
+        for (FuncDefScanner.Range range : ranges) {
+            String name = range.signature.name;
+            if (!globalSymbols.containsKey(name) && !funcIndex.containsKey(name)) {
+                funcIndex.put(name, signatures.size());
+            }
+            signatures.add(range.signature);
+        }
+        // 按顺序提交，也按顺序等待和合并：先合并的函数的缓冲可以先放掉
+        List<Future<FuncDefTask>> tasks = new ArrayList<>();
+        int counter = scopeCounter;
+        String bType = currentBType;
+        for (FuncDefScanner.Range range : ranges) {
+            GlobalSnapshot globals = new GlobalSnapshot(currentScope.getScopeLevel(), globalSymbols, funcIndex, signatures, tasks.size());
+            tasks.add(pool.submit(new FuncDefTask(this, range, globals, counter, bType)));
+            counter += range.scopes;
+            if (range.lastBType != null) {
+                bType = range.lastBType;
+            }
+        }
+
+        int end = NONE;
+        int merged = 0;
+        for (; merged < tasks.size(); merged++) {
+            FuncDefTask task = join(tasks.get(merged));
+            if (!task.usable(this)) {
+                break;
+            }
+            tasks.set(merged, null);
+            Parser worker = task.parser;
+            out.write(task.output.toByteArray(), 0, task.output.size());
+            for (Error error : worker.errors) {
+                if (errorLines.add(error.lineNumber)) {
+                    errors.add(error);
+                }
+            }
+            symbolList.addAll(worker.symbolList);
+            Symbol funcSymbol = task.globals.declared();
+            if (funcSymbol != null) {
+                currentScope.declare(funcSymbol);
+            }
+            scopeCounter = worker.scopeCounter;
+            currentBType = worker.currentBType;
+            currentFuncType = worker.currentFuncType;
+            hasSyntaxErrorInCurrentFunc = worker.hasSyntaxErrorInCurrentFunc;
+            funcDefNodes.add(task.node);
+            end = task.range.to;
+        }
+        for (int i = merged; i < tasks.size(); i++) {
+            tasks.get(i).cancel(false);
+        }
+        if (end != NONE) {
+            // 回到最后一个合并的函数的 '}'，再像 match 那样前进一个
+            tokens.reset(end - 1);
+            currentToken = tokens.peek(0);
+            nextToken();
+        }
+    }
+
+    private static FuncDefTask join(Future<FuncDefTask> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("并行语法分析被中断", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("并行语法分析失败", e.getCause());
+        }
+    }
+
+    // 并行分析的一个函数定义
+    private static final class FuncDefTask implements Callable<FuncDefTask> {
+        final FuncDefScanner.Range range;
+        final GlobalSnapshot globals;
+        final int scopeCounter;     // 推算的开始状态
+        final String currentBType;
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Parser parser;
+        ASTNode node;
+        boolean failed = false;
+
+        FuncDefTask(Parser owner, FuncDefScanner.Range range, GlobalSnapshot globals, int scopeCounter, String currentBType) {
+            this.range = range;
+            this.globals = globals;
+            this.scopeCounter = scopeCounter;
+            this.currentBType = currentBType;
+            this.parser = new Parser(owner, range, globals, scopeCounter, currentBType,
+                    new PrintStream(output, false, owner.out.charset()));
+        }
+
+        @Override
+        public FuncDefTask call() {
+            try {
+                node = parser.FuncDef();
+            } catch (RuntimeException | StackOverflowError e) {
+                // 工作线程的栈比主线程小；出错的函数交给顺序分析，真有问题时会在那里同样抛出
+                failed = true;
+            }
+            return this;
+        }
+
+        // 顺序分析到这个函数时的状态与推算的一致，并且分析正好读完这个函数，结果才能直接用
+        boolean usable(Parser owner) {
+            TokenBufferSource source = (TokenBufferSource) parser.tokens;
+            return !failed && !source.readPastEnd() && source.mark() == range.to
+                    && scopeCounter == owner.scopeCounter && currentBType.equals(owner.currentBType);
+        }
+    }
+
+    // 并行分析第 index 个函数时的全局作用域：全局变量加上它前面登记成功的函数（用预扫描的签名），
+    // 和顺序分析到这个函数时一样；不复制符号表，函数自己的名字登记在这一层
+    private static final class GlobalSnapshot extends Scope {
+        private final Map<String, Symbol> globals;
+        private final Map<String, Integer> funcIndex;
+        private final List<Symbol> signatures;
+        private final int index;
+
+        GlobalSnapshot(int scopeLevel, Map<String, Symbol> globals, Map<String, Integer> funcIndex, List<Symbol> signatures, int index) {
+            super(null, scopeLevel);
+            this.globals = globals;
+            this.funcIndex = funcIndex;
+            this.signatures = signatures;
+            this.index = index;
+        }
+
+        @Override
+        public Symbol lookup(String name) {
+            Symbol symbol = globals.get(name);
+            if (symbol != null) {
+                return symbol;
+            }
+            Integer func = funcIndex.get(name);
+            if (func != null && func < index) {
+                return signatures.get(func);
+            }
+            return super.lookup(name);
+        }
+
+        @Override
+        public boolean declare(Symbol symbol) {
+            return lookup(symbol.name) == null && super.declare(symbol);
+        }
+
+        // 分析时登记到这一层的函数符号，合并时登记到真正的全局作用域；重名没登记上为 null
+        Symbol declared() {
+            Collection<Symbol> symbols = getSymbols();
+            return symbols.isEmpty() ? null : symbols.iterator().next();
+        }
     }
 
     // Decl → ConstDecl | VarDecl
     private ASTNode Decl() {
-        if (isConstDecl()) {
+        int alternative = predict(PredictTables.DECL);
+        if (alternative == PredictTables.DECL_CONST) {
             return ConstDecl();
-        } else if (isVarDecl()) {
+        } else if (alternative == PredictTables.DECL_VAR) {
             return VarDecl();
         } else {
             // 不可能到这里，报告错误
@@ -171,11 +408,6 @@ public class Parser {
         }
     }
 
-    // 判断是否是常量声明
-    private boolean isConstDecl() {
-        return currentToken != null && currentToken.type == TokenType.CONSTTK;
-    }
-
     // ConstDecl → 'const' BType ConstDef { ',' ConstDef } ';' // i
     private ASTNode ConstDecl() {
         ASTNode constDeclNode = new ASTNode("ConstDecl");
@@ -199,50 +431,17 @@ public class Parser {
         }
 
         if (!match(TokenType.SEMICN)) {
-            int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+            int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
             reportError('i', errorLineNumber);
         }
         // 输出 <ConstDecl>
         if (outputEnabled) {
-            System.out.println("<ConstDecl>");
+            out.println("<ConstDecl>");
         }
-        System.out.println("🚧 ConstDecl 子节点数量: " + constDeclNode.getChildren().size());
+        out.println("🚧 ConstDecl 子节点数量: " + constDeclNode.getChildren().size());
         return constDeclNode;
     }
 
-    // 判断是否是变量声明
-    private boolean isVarDecl() {
-        if (currentToken != null && (currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK)) {
-            // 需要区分 VarDecl 和 FuncDef
-            int tempIndex = index;
-            Token tempToken = currentToken;
-
-            nextToken(); // 移动到 Ident
-            if (currentToken != null && currentToken.type == TokenType.IDENFR) {
-                nextToken();
-                if (currentToken != null && currentToken.type == TokenType.LPARENT) {
-                    // 是函数定义
-                    // 恢复状态
-                    index = tempIndex;
-                    currentToken = tempToken;
-                    return false;
-                } else {
-                    // 是变量声明
-                    // 恢复状态
-                    index = tempIndex;
-                    currentToken = tempToken;
-                    return true;
-                }
-            } else {
-                // 恢复状态
-                index = tempIndex;
-                currentToken = tempToken;
-                return false;
-            }
-        }
-        return false;
-    }
-
     // VarDecl → BType VarDef { ',' VarDef } ';' // i
     private ASTNode VarDecl() {
         ASTNode varDeclNode = new ASTNode("VarDecl"); // 🌟 构造 VarDecl 节点
@@ -257,12 +456,12 @@ public class Parser {
         }
     
         if (!match(TokenType.SEMICN)) {
-            int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+            int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
             reportError('i', errorLineNumber);
         }
 
         if (outputEnabled) {
-            System.out.println("<VarDecl>");
+            out.println("<VarDecl>");
         }
         return varDeclNode;
     }
@@ -270,9 +469,9 @@ public class Parser {
 
     // BType → 'int' | 'char'
     private void BType() {
-        if (currentToken != null && (currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK)) {
-            currentBType = currentToken.value; // 更新 currentBType
-            match(currentToken.type);
+        if (currentToken != NONE && (tokens.type(currentToken) == TokenType.INTTK || tokens.type(currentToken) == TokenType.CHARTK)) {
+            currentBType = tokens.lexeme(currentToken); // 更新 currentBType
+            match(tokens.type(currentToken));
         } else {
             // 不报告错误，返回以便上层处理
         }
@@ -289,7 +488,7 @@ public class Parser {
         }
     
         if (outputEnabled) {
-            System.out.println("<ConstExp>");
+            out.println("<ConstExp>");
         }
     
         return constExpNode;
@@ -298,7 +497,7 @@ public class Parser {
     // VarDef → Ident [ '[' ConstExp ']' ] | Ident [ '[' ConstExp ']' ] '=' InitVal // k
     private ASTNode VarDef() {
         ASTNode varDefNode = new ASTNode("VarDef"); // 🌟新增，构造 VarDef 节点
-        Token identToken = currentToken;
+        Token identToken = tokens.token(currentToken);
     
         if (!match(TokenType.IDENFR)) {
             reportError('k');
@@ -334,11 +533,11 @@ public class Parser {
         if (!currentScope.declare(symbol)) {
             reportError('b', identToken.lineNumber);
         }
-        System.out.println("VarDef: " + identToken.value + " declared in scope " + currentScope.getScopeLevel());
+        out.println("VarDef: " + identToken.value + " declared in scope " + currentScope.getScopeLevel());
 
     
         if (outputEnabled) {
-            System.out.println("<VarDef>");
+            out.println("<VarDef>");
         }
 
         return varDefNode; // ✅ 返回这个节点
@@ -350,7 +549,7 @@ public class Parser {
     private ASTNode ConstDef() {
         ASTNode constDefNode = new ASTNode("ConstDef");
 
-        Token identToken = currentToken;
+        Token identToken = tokens.token(currentToken);
         if (!match(TokenType.IDENFR)) {
             reportError('k');
             return constDefNode;
@@ -421,10 +620,10 @@ public class Parser {
         if (!currentScope.declare(symbol)) {
             reportError('b', identToken.lineNumber);
         }
-        System.out.println("ConstDef: " + identToken.value + " declared in scope " + currentScope.getScopeLevel());
+        out.println("ConstDef: " + identToken.value + " declared in scope " + currentScope.getScopeLevel());
         
         if (outputEnabled) {
-            System.out.println("<ConstDef>");
+            out.println("<ConstDef>");
         }
 
         return constDefNode;
@@ -463,8 +662,8 @@ public class Parser {
                 initValNode.addChild(new ASTNode("RBRACE"));
             }
         }
-        else if (currentToken != null && currentToken.type == TokenType.STRCON) {
-            Token strToken = currentToken;
+        else if (currentToken != NONE && tokens.type(currentToken) == TokenType.STRCON) {
+            Token strToken = tokens.token(currentToken);
             match(TokenType.STRCON);
             ASTNode strNode = new ASTNode(strToken);
             initValNode.addChild(strNode);
@@ -477,7 +676,7 @@ public class Parser {
         }
     
         if (outputEnabled) {
-            System.out.println("<ConstInitVal>");
+            out.println("<ConstInitVal>");
         }
     
         return initValNode;
@@ -496,76 +695,40 @@ public class Parser {
                     reportError('k');
                 }
             }
-        } else if (currentToken != null && currentToken.type == TokenType.STRCON) {
+        } else if (currentToken != NONE && tokens.type(currentToken) == TokenType.STRCON) {
             match(TokenType.STRCON);
         } else {
             Exp();
         }
         // 输出 <InitVal>
         if (outputEnabled) {
-            System.out.println("<InitVal>");
-        }
-    }
-
-    // 判断是否是函数定义
-    private boolean isFuncDef() {
-        if (currentToken != null && (currentToken.type == TokenType.VOIDTK || currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK)) {
-            int tempIndex = index;
-            Token tempToken = currentToken;
-
-            nextToken(); // 移动到 Ident
-            if (currentToken != null && currentToken.type == TokenType.IDENFR) {
-                nextToken();
-                if (currentToken != null && currentToken.type == TokenType.LPARENT) {
-                    // 是函数定义
-                    // 恢复状态
-                    index = tempIndex;
-                    currentToken = tempToken;
-                    return true;
-                } else {
-                    // 恢复状态
-                    index = tempIndex;
-                    currentToken = tempToken;
-                    return false;
-                }
-            } else {
-                // 恢复状态
-                index = tempIndex;
-                currentToken = tempToken;
-                return false;
-            }
+            out.println("<InitVal>");
         }
-        return false;
-    }
-
-    // 判断是否是函数形参列表的开始
-    private boolean isFuncFParamsStart() {
-        return currentToken != null && (currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK);
     }
 
     // FuncDef → FuncType Ident '(' [Fu ncFParams] ')' Block // j
     private ASTNode FuncDef() {
         hasSyntaxErrorInCurrentFunc = false;
-        System.out.println("[DEBUG][FuncDef] 开始解析一个函数定义...");
+        out.println("[DEBUG][FuncDef] 开始解析一个函数定义...");
         // 🔄 重置当前函数是否有语法错误的标志位，每次进入新的函数定义都得初始化
     
-        TokenType funcType = currentToken.type;
+        TokenType funcType = tokens.type(currentToken);
         String funcTypeName = getFuncTypeName(funcType);
         currentFuncType = funcTypeName;
-        System.out.println("[DEBUG][FuncDef] 函数返回类型解析为: " + funcTypeName);
+        out.println("[DEBUG][FuncDef] 函数返回类型解析为: " + funcTypeName);
         // 🔍 获取函数返回类型（int/void/char），并存储为当前函数的返回类型（供 return 语句检查使用）
     
         FuncType(); // 吃掉 int/void/char
-        System.out.println("[DEBUG][FuncDef] 返回类型Token已吃掉, 当前Token: " + (currentToken != null ? currentToken.value : "null"));
+        out.println("[DEBUG][FuncDef] 返回类型Token已吃掉, 当前Token: " + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
         // 🧹 吃掉函数类型的 Token，移到下一个 Token
     
         if (!match(TokenType.IDENFR)) {
-            System.out.println("[DEBUG][FuncDef] 缺少函数名，直接返回null");
+            out.println("[DEBUG][FuncDef] 缺少函数名，直接返回null");
             return null;
         }
         // ❌ 如果没有函数名，直接返回。虽然这里没报错，但返回后语义分析必然报错
-        Token funcNameToken = previousToken;
-        System.out.println("[DEBUG][FuncDef] 解析函数名: " + funcNameToken.value);
+        Token funcNameToken = tokens.token(previousToken);
+        out.println("[DEBUG][FuncDef] 解析函数名: " + funcNameToken.value);
         // 📝 获取函数名标识符（match 成功之后 currentToken 会变，所以要用 previousToken）
     
         ASTNode funcNode = new ASTNode("FuncDef");
@@ -582,71 +745,71 @@ public class Parser {
         // 🧭 构造符号对象，用于存入符号表，包含函数名、类型、所在作用域层级
         if (!currentScope.declare(funcSymbol)) {
             reportError('b', funcNameToken.lineNumber);
-            System.out.println("[DEBUG][FuncDef] 函数名重定义错误： " + funcNameToken.value);
+            out.println("[DEBUG][FuncDef] 函数名重定义错误： " + funcNameToken.value);
         } else {
-            System.out.println("[DEBUG][FuncDef] 成功注册函数符号到当前作用域: " + funcNameToken.value);
+            out.println("[DEBUG][FuncDef] 成功注册函数符号到当前作用域: " + funcNameToken.value);
         }    
         // 🚨 如果该作用域内已经定义了同名函数，报告重定义错误 'b'
     
         if (!match(TokenType.LPARENT)) {
             reportError('j', funcNameToken.lineNumber); // 🧩 函数名后面必须跟左括号 ( 否则就是语法错误 'j'
-            System.out.println("[DEBUG][FuncDef] 缺少 ( ，返回函数节点");
+            out.println("[DEBUG][FuncDef] 缺少 ( ，返回函数节点");
             return funcNode; // 即使出错也返回节点，保持 AST 完整性 
         }
     
         ASTNode paramListNode = new ASTNode("FuncFParams"); // 即使空也加进去
-        System.out.println("[DEBUG][FuncDef] 创建形参列表节点 FuncFParams");
+        out.println("[DEBUG][FuncDef] 创建形参列表节点 FuncFParams");
         
         // 🧶 不管有没有参数，都先建一个参数列表节点，方便统一结构处理
         enterScope(); // 🚪 进入函数体作用域，参数变量应该注册在函数内部作用域中
         int localOffset = 0; // ✅ 每个函数体 offset 从 0 开始
-        System.out.println("[DEBUG][FuncDef] 进入函数体作用域，localOffset 重置为 0");
-        System.out.println("[DEBUG][FuncDef] 进入新的函数作用域，scope id = " + currentScope.getScopeLevel());
+        out.println("[DEBUG][FuncDef] 进入函数体作用域，localOffset 重置为 0");
+        out.println("[DEBUG][FuncDef] 进入新的函数作用域，scope id = " + currentScope.getScopeLevel());
     
         if (match(TokenType.RPARENT)) {
             // 空参数
             // ✅ 空参数函数，直接吃掉右括号，啥都不做
-            System.out.println("[DEBUG][FuncDef] 该函数是空参数函数");
-        } else if (isFuncFParamsStart()) {
+            out.println("[DEBUG][FuncDef] 该函数是空参数函数");
+        } else if (predict(PredictTables.FUNC_PARAMS) == PredictTables.FUNC_PARAMS_PARAMS) {
             FuncFParams(funcSymbol, paramListNode); // 你原本是处理符号，不构造AST
             // ⚠️ 这里也可以再构造 paramListNode 并填参数节点
             // 🧠 解析参数列表，并添加到符号表 funcSymbol.paramTypes 中
             if (!match(TokenType.RPARENT)) {
                 reportError('j', funcNameToken.lineNumber);
-                System.out.println("[DEBUG][FuncDef] 形参列表后缺少右括号");
+                out.println("[DEBUG][FuncDef] 形参列表后缺少右括号");
             } else { // 🚨 参数列表后缺少右括号，报错类型 'j'
-                System.out.println("[DEBUG][FuncDef] 形参列表解析完毕并正确闭合 )");
+                out.println("[DEBUG][FuncDef] 形参列表解析完毕并正确闭合 )");
             }
         } else {
             reportError('j', funcNameToken.lineNumber); // ❌ 函数名后既不是 ) 也不是参数开头，那说明是错的
-            System.out.println("[DEBUG][FuncDef] 既没有右括号也没有形参列表开头，非法语法");
+            out.println("[DEBUG][FuncDef] 既没有右括号也没有形参列表开头，非法语法");
         }
     
         funcNode.addChild(paramListNode); // 把参数节点挂上 // ✅ 即使参数为空，也加入 AST，保持结构一致性
-        System.out.println("[DEBUG][FuncDef] 将 FuncFParams 节点挂到函数节点");
+        out.println("[DEBUG][FuncDef] 将 FuncFParams 节点挂到函数节点");
 
         ASTNode blockNode = Block(true); // 🧱 解析函数体（Block），true 表示这是函数块，用于 return 检查等
         funcNode.addChild(blockNode); // ✅ 将整个函数体加入 AST
-        System.out.println("[DEBUG][FuncDef] 函数体Block解析完成并挂载");
+        out.println("[DEBUG][FuncDef] 函数体Block解析完成并挂载");
 
-        System.out.println("🧱 构造 FuncDef 节点：" + funcNameToken.value +
+        out.println("🧱 构造 FuncDef 节点：" + funcNameToken.value +
                    "，对象ID: " + System.identityHashCode(funcNode));
         // root.addChild(funcNode); // ✅ 挂到AST根上 // 🌳 **核心！** 把当前函数挂到 AST 根节点上（Program），否则中间代码生成访问不到！
         if (root.getChildren().contains(funcNode)) {
-            System.out.println("🚨 [重复添加] 该函数 ASTNode 已经在 root 中了！funcName: " + funcNameToken.value);
+            out.println("🚨 [重复添加] 该函数 ASTNode 已经在 root 中了！funcName: " + funcNameToken.value);
         }else{
-            System.out.println("🌳 将函数 " + funcNameToken.value +
+            out.println("🌳 将函数 " + funcNameToken.value +
                    " 挂载到 root AST，当前 root 子节点数: " + root.getChildren().size());
         }
         
         exitScope(); // 🚪 退出函数作用域，函数体中的局部变量生命周期结束
-        System.out.println("[DEBUG][FuncDef] 退出函数作用域，回到上一级Scope");
+        out.println("[DEBUG][FuncDef] 退出函数作用域，回到上一级Scope");
     
         if (outputEnabled) {
-            System.out.println("<FuncDef>"); // 📤 输出语法成分标签，适用于调试和输出语法分析过程
+            out.println("<FuncDef>"); // 📤 输出语法成分标签，适用于调试和输出语法分析过程
         }
 
-        System.out.println("[DEBUG][FuncDef] 完成函数定义节点的构建，返回FuncNode");
+        out.println("[DEBUG][FuncDef] 完成函数定义节点的构建，返回FuncNode");
         return funcNode; // ✅ 改成返回构建好的 ASTNode
     }
     
@@ -668,10 +831,10 @@ public class Parser {
 
     // FuncType → 'void' | 'int' | 'char'
     private void FuncType() {
-        if (currentToken != null && (currentToken.type == TokenType.VOIDTK || currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK)) {
-            match(currentToken.type);
+        if (currentToken != NONE && (tokens.type(currentToken) == TokenType.VOIDTK || tokens.type(currentToken) == TokenType.INTTK || tokens.type(currentToken) == TokenType.CHARTK)) {
+            match(tokens.type(currentToken));
             if (outputEnabled) {
-                System.out.println("<FuncType>");
+                out.println("<FuncType>");
             }
         } else {
             reportError('k');
@@ -680,62 +843,62 @@ public class Parser {
 
     // FuncFParams → FuncFParam { ',' FuncFParam }
     private void FuncFParams(Symbol funcSymbol, ASTNode paramListNode) {
-        System.out.println("[DEBUG][FuncFParams] 开始解析形参列表");
+        out.println("[DEBUG][FuncFParams] 开始解析形参列表");
 
         ASTNode firstParam = FuncFParam(funcSymbol);
         paramListNode.addChild(firstParam);
-        System.out.println("[DEBUG][FuncFParams] 解析了第一个形参");
+        out.println("[DEBUG][FuncFParams] 解析了第一个形参");
 
         while (match(TokenType.COMMA)) {
-            System.out.println("[DEBUG][FuncFParams] 发现逗号 , 继续解析下一个形参");
+            out.println("[DEBUG][FuncFParams] 发现逗号 , 继续解析下一个形参");
             ASTNode nextParam = FuncFParam(funcSymbol);
             paramListNode.addChild(nextParam);
-            System.out.println("[DEBUG][FuncFParams] 解析了一个形参");
+            out.println("[DEBUG][FuncFParams] 解析了一个形参");
         }
         // 输出 <FuncFParams>
         if (outputEnabled) {
-            System.out.println("[DEBUG][FuncFParams] 完成整个形参列表解析，输出 <FuncFParams>");
-            System.out.println("<FuncFParams>");
+            out.println("[DEBUG][FuncFParams] 完成整个形参列表解析，输出 <FuncFParams>");
+            out.println("<FuncFParams>");
         }
     }
 
     // FuncFParam → BType Ident ['[' ']'] // k
     private ASTNode FuncFParam(Symbol funcSymbol) {
-        System.out.println("[DEBUG][FuncFParam] 开始解析单个形参");
+        out.println("[DEBUG][FuncFParam] 开始解析单个形参");
 
         ASTNode paramNode = new ASTNode("FuncFParam"); // 🌟新建一个FuncFParam节点
 
-        if (currentToken != null && (currentToken.type == TokenType.INTTK || currentToken.type == TokenType.CHARTK)) {
-            String bType = currentToken.value;
-            System.out.println("[DEBUG][FuncFParam] 形参基础类型识别为: " + bType);
+        if (currentToken != NONE && (tokens.type(currentToken) == TokenType.INTTK || tokens.type(currentToken) == TokenType.CHARTK)) {
+            String bType = tokens.lexeme(currentToken);
+            out.println("[DEBUG][FuncFParam] 形参基础类型识别为: " + bType);
 
             BType();
             
-            Token identToken = currentToken;
+            Token identToken = tokens.token(currentToken);
             if (!match(TokenType.IDENFR)) {
                 // 错误处理
-                System.out.println("[DEBUG][FuncFParam] 缺少形参标识符 IDENFR，提前返回");
+                out.println("[DEBUG][FuncFParam] 缺少形参标识符 IDENFR，提前返回");
                 return paramNode;
             }
-            System.out.println("[DEBUG][FuncFParam] 识别形参名称: " + identToken.value);
+            out.println("[DEBUG][FuncFParam] 识别形参名称: " + identToken.value);
 
             String typeName = "";
             if (match(TokenType.LBRACK)) {
-                System.out.println("[DEBUG][FuncFParam] 识别到 '[' ，形参为数组类型");
+                out.println("[DEBUG][FuncFParam] 识别到 '[' ，形参为数组类型");
                 if (!match(TokenType.RBRACK)) {
                     reportError('k');
-                    System.out.println("[DEBUG][FuncFParam] 缺少 ']'，报错");
+                    out.println("[DEBUG][FuncFParam] 缺少 ']'，报错");
                 }
                 typeName = bType.equals("int") ? "IntArray" : "CharArray";
             } else {
                 typeName = bType.equals("int") ? "Int" : "Char";
             }
 
-            System.out.println("[DEBUG][FuncFParam] 形参完整类型为: " + typeName);
+            out.println("[DEBUG][FuncFParam] 形参完整类型为: " + typeName);
 
             // 将参数类型添加到函数符号的 paramTypes 中
             funcSymbol.paramTypes.add(typeName);
-            System.out.println("[DEBUG][FuncFParam] 已将形参类型加入函数符号 paramTypes 列表");
+            out.println("[DEBUG][FuncFParam] 已将形参类型加入函数符号 paramTypes 列表");
 
             // 检查符号重定义
             if (!currentScope.declare(new Symbol(identToken.value, typeName, currentScope.getScopeLevel()))) {
@@ -744,15 +907,15 @@ public class Parser {
 
              // 🌟🌟把识别到的ident挂到paramNode上
             paramNode.addChild(new ASTNode(identToken));
-            System.out.println("[DEBUG][FuncFParam] 将形参 " + identToken.value + " 挂载到FuncFParam节点");
+            out.println("[DEBUG][FuncFParam] 将形参 " + identToken.value + " 挂载到FuncFParam节点");
             
             if (outputEnabled) {
-                System.out.println("[DEBUG][FuncFParam] 加入形参: 名字=" + identToken.value + ", 类型=" + typeName);
-                System.out.println("<FuncFParam>");
+                out.println("[DEBUG][FuncFParam] 加入形参: 名字=" + identToken.value + ", 类型=" + typeName);
+                out.println("<FuncFParam>");
             }
         } else {
             // 错误处理
-            System.out.println("[DEBUG][FuncFParam] 当前token不是形参起始符号 (int/char)，跳过处理");
+            out.println("[DEBUG][FuncFParam] 当前token不是形参起始符号 (int/char)，跳过处理");
         }
 
         return paramNode; // 🔥🔥返回新建的FuncFParam节点
@@ -764,17 +927,17 @@ public class Parser {
         hasSyntaxErrorInCurrentFunc = false; // 🔄 重置当前函数语法错误标志
         if (match(TokenType.INTTK) && match(TokenType.MAINTK)) {
             currentFuncType = "IntFunc"; // 🧠 主函数返回类型固定为 int
-            Token funcNameToken = previousToken;
+            Token funcNameToken = tokens.token(previousToken);
             if (match(TokenType.LPARENT)) {
                 if (!match(TokenType.RPARENT)) {
                     reportError('j', funcNameToken.lineNumber);
                 }
                 enterScope(); // 🚪 主函数体作为一个新的作用域
                 int localOffset = 0; // ✅ 每个函数体 offset 从 0 开始
-                System.out.println("[DEBUG][MainFuncDef] 进入主函数作用域，localOffset 重置为 0");
+                out.println("[DEBUG][MainFuncDef] 进入主函数作用域，localOffset 重置为 0");
 
                 ASTNode mainNode = new ASTNode("MainFuncDef");
-                mainNode.setSource("Parser.MainFuncDef() @ line " + currentToken.lineNumber);
+                mainNode.setSource("Parser.MainFuncDef() @ line " + tokens.line(currentToken));
 
                 ASTNode blockNode = Block(true);  // 🧱 传 true 表示是函数块
                 mainNode.addChild(blockNode);     // ✅ 挂上 Block 子节点
@@ -783,14 +946,14 @@ public class Parser {
                 exitScope(); // 🧼 退出作用域
 
                 if (outputEnabled) {
-                    System.out.println("<MainFuncDef>");
+                    out.println("<MainFuncDef>");
                 }
                 return mainNode; // ✅ 返回构建好的主函数 AST 节点
             } else {
                 reportError('j', funcNameToken.lineNumber); // 🚨 缺失左括号
             }
         } else {
-            reportError('j', currentToken != null ? currentToken.lineNumber : 1); // 🚨 缺失 main 函数头部
+            reportError('j', currentToken != NONE ? tokens.line(currentToken) : 1); // 🚨 缺失 main 函数头部
         }
         return null; // ❌ 若发生语法错误，返回 null
     }  
@@ -810,18 +973,23 @@ public class Parser {
             }
             exitScope();  // ✅ 退出作用域！
 
+            if (check(TokenType.INTTK) || check(TokenType.CHARTK)) {
+                // 缺 '}'，后面是下一个定义：错误记在定义的名字那一行（原来判断是不是声明时会先读进来，报错用的就是它）
+                int name = lookahead(1);
+                previousToken = name != NONE && tokens.type(name) == TokenType.IDENFR ? name : currentToken;
+            }
             if (!match(TokenType.RBRACE)) {
                 reportError('j');
             }
             if (outputEnabled) {
-                System.out.println("<Block>");
+                out.println("<Block>");
             }
         }
         return blockNode;
     }
 
     private ASTNode BlockItem() {
-        if (isDecl()) {
+        if (predict(PredictTables.BLOCK_ITEMS) == PredictTables.BLOCK_ITEMS_DECL) {
             ASTNode declNode = Decl();
             return declNode;  // 声明不需要生成中间代码
         } else if (isStmt()) {
@@ -835,52 +1003,58 @@ public class Parser {
     private ASTNode Stmt() {
         ASTNode stmtNode = new ASTNode("Stmt");
         
-        if (currentToken == null) {
+        if (currentToken == NONE) {
             return stmtNode;  // 如果没有更多的 token，直接返回空的语句节点
         }
 
-        System.out.println("[DEBUG][Stmt] 当前Token: " + currentToken.type + "，值: " + currentToken.value + "，行: " + currentToken.lineNumber);
+        out.println("[DEBUG][Stmt] 当前Token: " + tokens.type(currentToken) + "，值: " + tokens.lexeme(currentToken) + "，行: " + tokens.line(currentToken));
 
-        switch (currentToken.type) {
+        switch (tokens.type(currentToken)) {
             case IDENFR: {
-                // 可能是赋值语句或表达式语句
-                int tempIndex = index; // 保存当前 index 和 currentToken，是为了回退到这里
-                Token tempToken = currentToken;
-                boolean originalOutputEnabled = outputEnabled;
-                outputEnabled = false; // outputEnabled 暂时关掉，防止污染调试输出
-
-                // LVal 是左值（Left Value）的意思，比如x = x + 1; x 就是左值（LVal），是被赋值的变量；
-                // x + 1 是右值（RVal），是被赋的内容；整个 x = x + 1 是赋值语句 AssignStmt
-
-                ASTNode lvalNode = LVal(); // ✅ 只执行一次 LVal，获取左值（此刻左值被吃掉了）
-                System.out.println("[DEBUG][Stmt] 当前 token = " + currentToken);
-
-                if (match(TokenType.ASSIGN)) { // 判断等号，并且吃掉
-                    // ✅ 成功匹配到等号，说明这是一个赋值语句
-
-                    // 所以我们回退状态，让变量再重新构建一次 AST 节点👇
-                    // 把 index 和 currentToken回到最初的IDENFR位置
+                // 可能是赋值语句或表达式语句：Ident '=' 是赋值，Ident 后面不是 '=' 也不是 '[' 是表达式，查表就能定
+                int alternative = predict(PredictTables.STMT);
+                if (alternative == PredictTables.BACKTRACK) {
+                    // Ident '[' ... 要看到 ']' 后面：先按左值试着分析一遍，再回退
+                    int tempIndex = tokens.mark(); // 保存当前位置和 currentToken，是为了回退到这里
+                    int tempToken = currentToken;
+                    boolean originalOutputEnabled = outputEnabled;
+                    outputEnabled = false; // outputEnabled 暂时关掉，防止污染调试输出
+
+                    // LVal 是左值（Left Value）的意思，比如x = x + 1; x 就是左值（LVal），是被赋值的变量；
+                    // x + 1 是右值（RVal），是被赋的内容；整个 x = x + 1 是赋值语句 AssignStmt
+                    LVal();
+                    out.println("[DEBUG][Stmt] 当前 token = " + tokens.describe(currentToken));
+                    alternative = match(TokenType.ASSIGN) ? PredictTables.STMT_ASSIGN : PredictTables.STMT_EXP;
+
+                    // 把位置和 currentToken回到最初的IDENFR位置
                     outputEnabled = originalOutputEnabled;
-                    index = tempIndex;
+                    tokens.reset(tempIndex);
                     currentToken = tempToken;
-                    
+                } else {
+                    // 查表已经定了，不用试着分析；调试输出照旧打出试着分析 Ident 时的两行
+                    out.println("[DEBUG][LVal] 当前标识符 = " + tokens.lexeme(currentToken));
+                    out.println("[DEBUG][Stmt] 当前 token = " + tokens.describe(lookahead(1)));
+                }
+
+                if (alternative == PredictTables.STMT_ASSIGN) {
+                    // ✅ 这是一个赋值语句
                     ASTNode assignNode = new ASTNode("AssignStmt"); // 构建assignNode节点
-                    System.out.println("[DEBUG][Stmt] 准备匹配赋值语句");
-                    System.out.println("[DEBUG][Stmt] 当前 token = " + currentToken);
+                    out.println("[DEBUG][Stmt] 准备匹配赋值语句");
+                    out.println("[DEBUG][Stmt] 当前 token = " + tokens.describe(currentToken));
                     
-                    lvalNode = LVal(); // 🔥重新解析LVal！！！此时currentToken会移动
+                    ASTNode lvalNode = LVal(); // 🔥解析LVal，此时currentToken会移动
                     assignNode.addChild(lvalNode); // 在assignNode节点挂上之前保存的左值
                     if (!match(TokenType.ASSIGN)) {
-                        System.out.println("【DEBUG】【Stmt】匹配=失败，当前Token=" + (currentToken != null ? currentToken.value : "null"));
+                        out.println("【DEBUG】【Stmt】匹配=失败，当前Token=" + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
                         reportError('h'); // 赋值语句缺等号
                     } else {
-                        System.out.println("【DEBUG】【Stmt】匹配=成功，currentToken=" + (currentToken != null ? currentToken.value : "null"));
+                        out.println("【DEBUG】【Stmt】匹配=成功，currentToken=" + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
                     }
                     
-                    if (currentToken != null && currentToken.type == TokenType.GETINTTK || currentToken.type == TokenType.GETCHARTK) { // 特殊输入赋值
+                    if (currentToken != NONE && tokens.type(currentToken) == TokenType.GETINTTK || tokens.type(currentToken) == TokenType.GETCHARTK) { // 特殊输入赋值
                         // ✅ 是 getint() OR getchar() 输入语句
                         // match(TokenType.GETINTTK); 
-                        TokenType inputType = currentToken.type; // 保存一下是哪个
+                        TokenType inputType = tokens.type(currentToken); // 保存一下是哪个
                         match(inputType); // 吃掉！
                         if (!match(TokenType.LPARENT)) {
                             reportError('j');
@@ -901,10 +1075,10 @@ public class Parser {
                         }
                         // stmtNode.addChild(assignNode);    // ✅ 把整个赋值语句挂到 stmt 上
                     } else {
-                        System.out.println("【DEBUG】【Stmt】准备进入Exp()解析右边表达式，currentToken=" + (currentToken != null ? currentToken.value : "null"));
+                        out.println("【DEBUG】【Stmt】准备进入Exp()解析右边表达式，currentToken=" + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
                         // ✅ 普通赋值语句，如 a = b + 1;
                         ASTNode expNode = Exp(); // 调用 Exp() 解析右边表达式
-                        System.out.println("【DEBUG】【Stmt】Exp()解析完成，currentToken=" + (currentToken != null ? currentToken.value : "null"));
+                        out.println("【DEBUG】【Stmt】Exp()解析完成，currentToken=" + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
 
                         assignNode.addChild(expNode);
                         // stmtNode.addChild(assignNode);// 整个赋值语句加入语法树
@@ -913,24 +1087,20 @@ public class Parser {
                     stmtNode.addChild(assignNode);    // 把完整的赋值语句，挂到最外层的 Stmt节点下
                 } else {
                     // 表达式语句
-                    // ❌ 如果没有匹配到等号，那说明不是赋值语句
+                    // ❌ 后面没有等号，那说明不是赋值语句
                     // 👉 这时候整个语句只能是个表达式语句（如 sum(a, b);） 
-                    // 回滚↓，重新当作 "普通表达式语句" 处理
-                    outputEnabled = originalOutputEnabled;
-                    index = tempIndex;
-                    currentToken = tempToken;
                     ASTNode expNode = Exp(); // 整个就是个表达式
                     stmtNode.addChild(expNode); // 表达式语句加进语法树
                     
                 }
                 // ✅ 最后匹配分号，否则报 i 错（语句未结束）
                 // 如果当前的 token 不是分号（;），就说明当前语句没有正确收尾
-                System.out.println("exp 后 currentToken = " + (currentToken != null ? currentToken.value : "null"));
+                out.println("exp 后 currentToken = " + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
                 if (!match(TokenType.SEMICN)) { // 吃掉分号！
                     // 拿到当前错误的行号：
                     // 如果 previousToken 有，就用它的行号；
                     // 否则默认行号是 1（防止 null）
-                    int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+                    int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
                     // 报告语法错误，类型是 'i'，表示“缺少分号”
                     reportError('i', errorLineNumber);
                 }
@@ -945,7 +1115,7 @@ public class Parser {
                 }
                 stmtNode.addChild(returnNode);
                 if (!match(TokenType.SEMICN)) {
-                    int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+                    int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
                     reportError('i', errorLineNumber);
                 }
                 break;
@@ -957,8 +1127,8 @@ public class Parser {
                 if (!match(TokenType.LPARENT)) {
                     reportError('j');
                 }
-                if (currentToken != null && currentToken.type == TokenType.STRCON) {
-                    ASTNode strNode = new ASTNode(currentToken);
+                if (currentToken != NONE && tokens.type(currentToken) == TokenType.STRCON) {
+                    ASTNode strNode = new ASTNode(tokens.token(currentToken));
                     printfNode.addChild(strNode);
                     match(TokenType.STRCON);
                 }
@@ -1007,7 +1177,7 @@ public class Parser {
                 break;
             }
             case IFTK: {
-                System.out.println("【DEBUG】【Parser】开始解析 if 语句");
+                out.println("【DEBUG】【Parser】开始解析 if 语句");
                 match(TokenType.IFTK);
                 ASTNode ifNode = new ASTNode("IfStmt");
             
@@ -1015,59 +1185,59 @@ public class Parser {
                     reportError('j');
                 }
 
-                System.out.println("【DEBUG】【Parser】解析 if 条件开始（Cond）");
+                out.println("【DEBUG】【Parser】解析 if 条件开始（Cond）");
                 ASTNode condNode = Cond();  // ✅ 这里要保存返回的condNode
                 ifNode.addChild(condNode);   // ✅ 这里把条件表达式挂上去！
-                System.out.println("【DEBUG】【Parser】if 条件Cond节点挂载完成");
+                out.println("【DEBUG】【Parser】if 条件Cond节点挂载完成");
 
                 if (!match(TokenType.RPARENT)) {
                     reportError('j');
                 }
             
-                System.out.println("【DEBUG】【Parser】解析 if 主分支（thenStmt）");
+                out.println("【DEBUG】【Parser】解析 if 主分支（thenStmt）");
                 ASTNode thenStmt = Stmt();  // 处理 if 的主分支
                 ifNode.addChild(thenStmt);
-                System.out.println("【DEBUG】【Parser】if 主分支挂载完成");
+                out.println("【DEBUG】【Parser】if 主分支挂载完成");
             
                 // 处理 else 分支
-                if (currentToken != null && currentToken.type == TokenType.ELSETK) {
-                    System.out.println("【DEBUG】【Parser】检测到 else 分支，开始解析");
+                if (currentToken != NONE && tokens.type(currentToken) == TokenType.ELSETK) {
+                    out.println("【DEBUG】【Parser】检测到 else 分支，开始解析");
                     match(TokenType.ELSETK);
                     ASTNode elseStmt = Stmt();  // 这里同样支持 { } 或直接语句
                     ifNode.addChild(elseStmt);
-                    System.out.println("【DEBUG】【Parser】else 分支挂载完成");
+                    out.println("【DEBUG】【Parser】else 分支挂载完成");
                 }else{
-                    System.out.println("【DEBUG】【Parser】未检测到 else 分支");
+                    out.println("【DEBUG】【Parser】未检测到 else 分支");
                 }
             
                 stmtNode.addChild(ifNode);
-                System.out.println("【DEBUG】【Parser】if 语句整体挂载到 stmtNode 完成");
+                out.println("【DEBUG】【Parser】if 语句整体挂载到 stmtNode 完成");
 
                 break;
             }
             case FORTK: {
-                System.out.println("[DEBUG][Stmt] 匹配到 for 语句");
+                out.println("[DEBUG][Stmt] 匹配到 for 语句");
 
                 match(TokenType.FORTK);
                 ASTNode forNode = new ASTNode("ForStmt");
                 
-                System.out.println("[DEBUG][For] 期待 LPARENT: 当前Token = " + currentToken);
+                out.println("[DEBUG][For] 期待 LPARENT: 当前Token = " + tokens.describe(currentToken));
                 if (!match(TokenType.LPARENT)) {
                     reportError('j');
                 }
-                System.out.println("[DEBUG][For] LPARENT 匹配成功");
+                out.println("[DEBUG][For] LPARENT 匹配成功");
             
                 // ✅ 支持赋值作为 init
                 if (!check(TokenType.SEMICN)) {
                     // 如果当前不是 ';' ，说明有 init 表达式
-                    System.out.println("[DEBUG][For] 正在解析初始化部分");
+                    out.println("[DEBUG][For] 正在解析初始化部分");
                     ASTNode init = parseAssignExpOnly(); //parseAssignExpOnly()负责处理有赋值的exp，返回ASTNode，不处理分号
                     if (init == null || init.getChildren().isEmpty()) {
                         forNode.addChild(new ASTNode("Null")); // 补一个Null节点
-                        System.out.println("[DEBUG][For] 初始化为空");
+                        out.println("[DEBUG][For] 初始化为空");
                     } else {
                         forNode.addChild(init);
-                        System.out.println("[DEBUG][For] 初始化部分生成成功: " + init.getChildren().get(0).getType());
+                        out.println("[DEBUG][For] 初始化部分生成成功: " + init.getChildren().get(0).getType());
                     }
 
                     if (!match(TokenType.SEMICN)) {
@@ -1075,51 +1245,51 @@ public class Parser {
                     }
                 } else {
                     forNode.addChild(new ASTNode("Null")); // 补一个Null节点
-                    System.out.println("[DEBUG][For] 初始化部分为空，跳过");
+                    out.println("[DEBUG][For] 初始化部分为空，跳过");
                     nextToken(); // 吃掉 ;
                 }
             
                 // ✅ cond 还是用 Cond()
                 if (!check(TokenType.SEMICN)) {
-                    System.out.println("[DEBUG][For] 正在解析条件部分");
+                    out.println("[DEBUG][For] 正在解析条件部分");
                     ASTNode condNode = Cond(); // 解析条件并返回 AST
                     forNode.addChild(condNode != null ? condNode : new ASTNode("Null"));
-                    System.out.println("[DEBUG][For] 条件部分生成成功");
+                    out.println("[DEBUG][For] 条件部分生成成功");
 
                     if (!match(TokenType.SEMICN)) {
                         reportError('j'); // 缺分号
                     }
                 } else {
-                    System.out.println("[DEBUG][For] 条件部分为空，跳过");
+                    out.println("[DEBUG][For] 条件部分为空，跳过");
                     nextToken(); // 吃掉 ;
                     forNode.addChild(new ASTNode("Null"));
                 }
             
                 // ✅ 支持赋值作为 step
-                System.out.println("[DEBUG][For] 期待 RPARENT: 当前Token = " + currentToken);
+                out.println("[DEBUG][For] 期待 RPARENT: 当前Token = " + tokens.describe(currentToken));
 
                 if (check(TokenType.RPARENT)) { // token是右括号
                     nextToken(); // 跳过；表示空步进
                     forNode.addChild(new ASTNode("Null")); // 步进为空也挂一个Null节点
-                    System.out.println("[DEBUG][For] 步进为空，直接吃掉右括号");
+                    out.println("[DEBUG][For] 步进为空，直接吃掉右括号");
                 } else {
                     // token不是右括号，说明有step内容，继续往下走
-                        System.out.println("[DEBUG][For] 正在解析步进部分");
+                        out.println("[DEBUG][For] 正在解析步进部分");
     
                         ASTNode step = parseAssignExpOnly(); // 用 Stmt() 处理 "i=i+1;"
                         forNode.addChild(step);
 
-                        System.out.println("[DEBUG][For] 步进部分生成成功: " + step.getChildren().get(0).getType());
+                        out.println("[DEBUG][For] 步进部分生成成功: " + step.getChildren().get(0).getType());
 
-                        System.out.println("[DEBUG][For] 期待 RPARENT: 当前Token = " + currentToken);
+                        out.println("[DEBUG][For] 期待 RPARENT: 当前Token = " + tokens.describe(currentToken));
 
                         if (!match(TokenType.RPARENT)) { // 吃掉右括号
                             reportError('j');
                         }
-                        System.out.println("[DEBUG][For] RPARENT 匹配成功");
+                        out.println("[DEBUG][For] RPARENT 匹配成功");
                 }
                
-                System.out.println("[DEBUG][For] 正在解析 for 循环体语句...");
+                out.println("[DEBUG][For] 正在解析 for 循环体语句...");
                 ASTNode bodyStmt = Stmt(); // 重新开始新的子语句解析
 
                 if (bodyStmt.getType().equals("Block")) { // Block 是一段 { ... } 花括号包裹的代码块
@@ -1130,19 +1300,19 @@ public class Parser {
                         if (!child.getChildren().isEmpty()) {
                             childInfo += " -> 首个子节点类型: " + child.getChildren().get(0).getType();
                         }
-                        System.out.println(childInfo); // 打印每个子语句的第一个 token 内容
+                        out.println(childInfo); // 打印每个子语句的第一个 token 内容
                         forNode.addChild(child); // 把解析出来的这段循环体代码挂到 forNode 这个 for 循环节点下面
-                        System.out.println("[DEBUG][For] 子语句添加成功");
+                        out.println("[DEBUG][For] 子语句添加成功");
                     }
                 } else {
                     // 单条语句直接挂上去
                     forNode.addChild(bodyStmt);
-                    System.out.println("[DEBUG][For] 单条语句添加成功");
+                    out.println("[DEBUG][For] 单条语句添加成功");
                 }
-                System.out.println("[DEBUG][For] 循环体解析完成");
+                out.println("[DEBUG][For] 循环体解析完成");
 
                 stmtNode.addChild(forNode);
-                System.out.println("[DEBUG][For] ForStmt AST 构建完成，共有 " + forNode.getChildren().size() + " 个子节点");
+                out.println("[DEBUG][For] ForStmt AST 构建完成，共有 " + forNode.getChildren().size() + " 个子节点");
                 break;
             }
 
@@ -1162,7 +1332,7 @@ public class Parser {
                     ASTNode expNode = Exp();
                     stmtNode.addChild(expNode);
                     if (!match(TokenType.SEMICN)) {
-                        int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+                        int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
                         reportError('i', errorLineNumber);
                     }
                 } else {
@@ -1174,19 +1344,19 @@ public class Parser {
         }
         
         if (outputEnabled) {
-            System.out.println("<Stmt>");
+            out.println("<Stmt>");
         }
         return stmtNode;
     }
 
     private boolean check(TokenType type) {
-        return currentToken != null && currentToken.type == type;
+        return currentToken != NONE && tokens.type(currentToken) == type;
     }
 
     private ASTNode LVal() {
         ASTNode lvalNode = new ASTNode("LVal");
-        Token identToken = currentToken;
-        System.out.println("[DEBUG][LVal] 当前标识符 = " + currentToken.value);
+        Token identToken = tokens.token(currentToken);
+        out.println("[DEBUG][LVal] 当前标识符 = " + tokens.lexeme(currentToken));
 
         if (match(TokenType.IDENFR)) {
             lvalNode.addChild(new ASTNode(identToken));
@@ -1209,7 +1379,7 @@ public class Parser {
     // UnaryExp() 看有没有单目运算，如果没有就当PrimaryExp直接读出来！
 
     private ASTNode Exp() {
-        System.out.println("[DEBUG][Exp] 表达式起始 token = " + currentToken.value);
+        out.println("[DEBUG][Exp] 表达式起始 token = " + tokens.lexeme(currentToken));
         ASTNode expNode = new ASTNode("Exp"); // 🧱 创建一个 AST 节点，表示 Exp 非终结符（表达式）
         ASTNode addExpNode = AddExp(); // 🌿 调用 AddExp 方法，获取 AddExp 节点（AddExp 是 Exp 的推导式之一）
         expNode.addChild(addExpNode); // 🌳 将 AddExp 节点挂载为 Exp 节点的子节点，建立语法树的父子结构
@@ -1220,15 +1390,15 @@ public class Parser {
     // 📖 解析加法减法表达式，处理左右结合性。
     // 🌱 AddExp负责处理比乘除低一层的运算（加减）。
     private ASTNode AddExp() {
-        System.out.println("【DEBUG】进入 AddExp - 当前token=" + (currentToken != null ? currentToken.value : "null"));
+        out.println("【DEBUG】进入 AddExp - 当前token=" + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
         ASTNode leftNode = MulExp();
-        while (currentToken != null && (currentToken.type == TokenType.PLUS || currentToken.type == TokenType.MINU)) {
-            Token opToken = currentToken;
-            match(currentToken.type);
+        while (currentToken != NONE && (tokens.type(currentToken) == TokenType.PLUS || tokens.type(currentToken) == TokenType.MINU)) {
+            TokenType opType = tokens.type(currentToken);
+            match(tokens.type(currentToken));
             ASTNode rightNode = MulExp();
             
             ASTNode opNode;
-            if (opToken.type == TokenType.PLUS) {
+            if (opType == TokenType.PLUS) {
                 opNode = new ASTNode("AddExpr");
             } else {
                 opNode = new ASTNode("SubExpr");
@@ -1241,76 +1411,64 @@ public class Parser {
     }
 
     private ASTNode MulExp() {
-        System.out.println("[DEBUG][MulExp] 开始解析乘除模表达式");
+        out.println("[DEBUG][MulExp] 开始解析乘除模表达式");
 
         ASTNode leftNode = UnaryExp();
-        System.out.println("[DEBUG][MulExp] 初始左表达式节点类型为: " + leftNode.getType());
+        out.println("[DEBUG][MulExp] 初始左表达式节点类型为: " + leftNode.getType());
 
-        while (currentToken != null && (currentToken.type == TokenType.MULT ||
-        currentToken.type == TokenType.DIV ||
-        currentToken.type == TokenType.MOD
+        while (currentToken != NONE && (tokens.type(currentToken) == TokenType.MULT ||
+        tokens.type(currentToken) == TokenType.DIV ||
+        tokens.type(currentToken) == TokenType.MOD
         )) {
 
-            System.out.println("[DEBUG][MulExp] 当前操作符Token类型: " + currentToken.type);
+            out.println("[DEBUG][MulExp] 当前操作符Token类型: " + tokens.type(currentToken));
 
-            Token opToken = currentToken;
-            match(currentToken.type);
+            TokenType opType = tokens.type(currentToken);
+            match(tokens.type(currentToken));
 
             ASTNode rightNode = UnaryExp();
-            System.out.println("[DEBUG][MulExp] 解析右表达式完成，类型为: " + rightNode.getType());
+            out.println("[DEBUG][MulExp] 解析右表达式完成，类型为: " + rightNode.getType());
             
             ASTNode opNode;
-            if (opToken.type == TokenType.MULT) {
-                System.out.println("[DEBUG][MulExp] 识别为乘法 '*'");
+            if (opType == TokenType.MULT) {
+                out.println("[DEBUG][MulExp] 识别为乘法 '*'");
                 opNode = new ASTNode("MulExpr");
-            } else if(opToken.type == TokenType.DIV){
-                System.out.println("[DEBUG][MulExp] 识别为除法 '/'");
+            } else if(opType == TokenType.DIV){
+                out.println("[DEBUG][MulExp] 识别为除法 '/'");
                 opNode = new ASTNode("DivExpr");
             } else {
-                System.out.println("[DEBUG][MulExp] 识别为取模 '%'");
+                out.println("[DEBUG][MulExp] 识别为取模 '%'");
                 opNode = new ASTNode("ModExpr");
             }
 
             opNode.addChild(leftNode);
             opNode.addChild(rightNode);
 
-            System.out.println("[DEBUG][MulExp] 构建AST节点类型为: " + opNode.getType() + 
+            out.println("[DEBUG][MulExp] 构建AST节点类型为: " + opNode.getType() + 
                            "，并挂载左右子节点: left=" + leftNode.getType() + 
                            ", right=" + rightNode.getType());
 
             leftNode = opNode;
         }
 
-        System.out.println("[DEBUG][MulExp] 乘除模表达式构造完成，返回AST节点类型: " + leftNode.getType());
+        out.println("[DEBUG][MulExp] 乘除模表达式构造完成，返回AST节点类型: " + leftNode.getType());
         return leftNode;
     }
 
-    private boolean nextIsLPARENT() {
-        int temp = index + 1;
-        while (temp < tokens.size()) {
-            Token token = tokens.get(temp);
-            if (token.type == TokenType.ERROR) {
-                temp++;
-            } else {
-                return token.type == TokenType.LPARENT;
-            }
-        }
-        return false;
-    }
-
     // UnaryExp → Ident '(' [Exp { ',' Exp }] ')' | '(' Exp ')' | '+' UnaryExp | '-' UnaryExp | '!' UnaryExp | PrimaryExp
     // UnaryExp就是一元表达式,如：变量名 a,数字 123,函数调用 f(x, y),括号表达式 (x + y),单目操作：+x -x !x
     // 分析并构造一元表达式的 AST 节点
     private ASTNode UnaryExp() { // 函数调用
         ASTNode unaryNode = new ASTNode("UnaryExp");
-        System.out.println("【DEBUG】进入 UnaryExp - 当前token=" + currentToken.value);
-        System.out.println("【DEBUG】nextIsLPARENT() 返回值: " + nextIsLPARENT());  
+        out.println("【DEBUG】进入 UnaryExp - 当前token=" + tokens.lexeme(currentToken));
+        int alternative = predict(PredictTables.UNARY);
+        out.println("【DEBUG】nextIsLPARENT() 返回值: " + (terminal(lookahead(1)) == TokenType.LPARENT.ordinal()));
     
         // 1. 判断是否为函数调用：Ident '(' ... ')', Ident是函数名字，'('是函数调用开始
-        if (currentToken != null && currentToken.type == TokenType.IDENFR && nextIsLPARENT()) {
+        if (alternative == PredictTables.UNARY_CALL) {
             // 函数调用 Ident(...)
-            Token ident = currentToken; // 保存函数名标识符
-            System.out.println("【DEBUG】准备匹配 LPARENT，当前 token = " + (currentToken != null ? currentToken.value : "null"));
+            Token ident = tokens.token(currentToken); // 保存函数名标识符
+            out.println("【DEBUG】准备匹配 LPARENT，当前 token = " + (currentToken != NONE ? tokens.lexeme(currentToken) : "null"));
             match(TokenType.IDENFR); // 匹配 Ident
             if (match(TokenType.LPARENT)) { // 匹配 '(' 开始参数列表
                 ASTNode funcCall = new ASTNode("CallExpr"); // 构建函数调用节点
@@ -1332,24 +1490,24 @@ public class Parser {
             
                 unaryNode.addChild(funcCall); // 将整个函数调用结构添加为一元表达式子节点
             }
-        } else if (currentToken != null && currentToken.type == TokenType.LPARENT) {
+        } else if (currentToken != NONE && tokens.type(currentToken) == TokenType.LPARENT) {
             // 括号表达式：(Exp)
             match(TokenType.LPARENT);
             ASTNode expNode = Exp();
             match(TokenType.RPARENT);
             unaryNode.addChild(expNode);
-        } else if (currentToken != null &&
-                   (currentToken.type == TokenType.PLUS || currentToken.type == TokenType.MINU || currentToken.type == TokenType.NOT)) {
+        } else if (currentToken != NONE &&
+                   (tokens.type(currentToken) == TokenType.PLUS || tokens.type(currentToken) == TokenType.MINU || tokens.type(currentToken) == TokenType.NOT)) {
             // 单目运算符
-            Token op = currentToken;
+            Token op = tokens.token(currentToken);
             match(op.type);
             ASTNode child = UnaryExp(); // 递归处理子表达式
             ASTNode opNode = new ASTNode(op); // 构建操作符节点
             opNode.addChild(child); // 添加子表达式作为操作符节点的子节点
             unaryNode.addChild(opNode);
-        } else if (currentToken != null && currentToken.type == TokenType.IDENFR) {
+        } else if (currentToken != NONE && tokens.type(currentToken) == TokenType.IDENFR) {
             // 普通变量名作为表达式
-            ASTNode identNode = new ASTNode(currentToken);
+            ASTNode identNode = new ASTNode(tokens.token(currentToken));
             match(TokenType.IDENFR);
             unaryNode.addChild(identNode);  // 将变量视为一个表达式（也可能被处理为函数）
         }else {
@@ -1362,7 +1520,7 @@ public class Parser {
     
 
     private ASTNode PrimaryExp() {
-        System.out.println("【DEBUG】进入 PrimaryExp - 当前token=" + currentToken.value);
+        out.println("【DEBUG】进入 PrimaryExp - 当前token=" + tokens.lexeme(currentToken));
         ASTNode primaryNode = new ASTNode("PrimaryExp");
         if (match(TokenType.LPARENT)) {
             ASTNode expNode = Exp();
@@ -1370,18 +1528,18 @@ public class Parser {
             if (!match(TokenType.RPARENT)) {
                 reportError('j');
             }
-        } else if (isLValStart()) {
+        } else if (predict(PredictTables.PRIMARY) == PredictTables.PRIMARY_LVAL) {
             ASTNode lval = LVal();
             primaryNode.addChild(lval);
-        } else if (currentToken != null && currentToken.type == TokenType.INTCON) {
+        } else if (currentToken != NONE && tokens.type(currentToken) == TokenType.INTCON) {
             ASTNode number = new ASTNode("Number");
-            ASTNode literal = new ASTNode(currentToken); // INTCON 本身
+            ASTNode literal = new ASTNode(tokens.token(currentToken)); // INTCON 本身
             number.addChild(literal);
             primaryNode.addChild(number);
             match(TokenType.INTCON);
-        } else if (currentToken != null && currentToken.type == TokenType.CHRCON) {
+        } else if (currentToken != NONE && tokens.type(currentToken) == TokenType.CHRCON) {
             ASTNode number = new ASTNode("Number");
-            ASTNode literal = new ASTNode(currentToken);
+            ASTNode literal = new ASTNode(tokens.token(currentToken));
             number.addChild(literal);
             primaryNode.addChild(number);
             match(TokenType.CHRCON); // 吃掉字符常量
@@ -1392,10 +1550,10 @@ public class Parser {
     
 
     private boolean isStmt() {
-        if (currentToken == null) {
+        if (currentToken == NONE) {
             return false;
         }
-        TokenType type = currentToken.type;
+        TokenType type = tokens.type(currentToken);
         return type == TokenType.IDENFR || type == TokenType.SEMICN || type == TokenType.LBRACE ||
                 type == TokenType.IFTK || type == TokenType.FORTK || type == TokenType.BREAKTK ||
                 type == TokenType.CONTINUETK || type == TokenType.RETURNTK || type == TokenType.PRINTFTK ||
@@ -1405,7 +1563,7 @@ public class Parser {
     }
 
     private void ForStmt() {
-        Token identToken = currentToken;
+        Token identToken = tokens.token(currentToken);
         // 解析左值
         ASTNode lvalNode = LVal();  // 修改返回类型
 
@@ -1421,14 +1579,10 @@ public class Parser {
         Exp();
 
         if (outputEnabled) {
-            System.out.println("<ForStmt>");
+            out.println("<ForStmt>");
         }
     }
     
-    private boolean isForStmtStart() {
-        return isLValStart();
-    }
-
     private boolean paramTypesMatch(String formal, String actual) {
         // 如果类型完全相同，则匹配
         if (formal.equals(actual)) {
@@ -1462,10 +1616,10 @@ public class Parser {
 
     // 判断是否是表达式的开始符号
     private boolean isExpStart() {
-        if (currentToken == null) {
+        if (currentToken == NONE) {
             return false;
         }
-        TokenType type = currentToken.type;
+        TokenType type = tokens.type(currentToken);
         return type == TokenType.IDENFR || type == TokenType.INTCON || type == TokenType.LPARENT ||
                 type == TokenType.PLUS || type == TokenType.MINU || type == TokenType.NOT ||
                 type == TokenType.CHRCON;
@@ -1473,25 +1627,25 @@ public class Parser {
 
     // Cond → LOrExp
     private ASTNode Cond() {
-        System.out.println("=== Cond() 进入 === 当前Token是：" + currentToken);
+        out.println("=== Cond() 进入 === 当前Token是：" + tokens.describe(currentToken));
 
         ASTNode node = LOrExp();  // ✅ 解析条件表达式
         if (outputEnabled) {
-            System.out.println("x:<Cond>");
+            out.println("x:<Cond>");
         }
         return node;  // ✅ 别忘了返回！
     }
 
     // LOrExp → LAndExp | LOrExp '||' LAndExp
     private ASTNode LOrExp() {
-        System.out.println("=== LOrExp() 进入 === 当前Token是：" + currentToken);
+        out.println("=== LOrExp() 进入 === 当前Token是：" + tokens.describe(currentToken));
 
         ASTNode left = LAndExp();  // 第一个子表达式
         if (outputEnabled) {
-            System.out.println("x:<LOrExp>");
+            out.println("x:<LOrExp>");
         }
     
-        while (currentToken != null && currentToken.getType() == TokenType.OR) {
+        while (currentToken != NONE && tokens.type(currentToken) == TokenType.OR) {
             match(TokenType.OR);
             ASTNode right = LAndExp();  // 后面的表达式
             ASTNode newNode = new ASTNode("LOrExp");
@@ -1499,7 +1653,7 @@ public class Parser {
             newNode.addChild(right);   // 右边
             left = newNode;            // 继续向上构造
             if (outputEnabled) {
-                System.out.println("x:<LOrExp>");
+                out.println("x:<LOrExp>");
             }
         }
     
@@ -1509,11 +1663,11 @@ public class Parser {
 
     // LAndExp → EqExp | LAndExp '&&' EqExp
     private ASTNode LAndExp() {
-        System.out.println("=== LAndExp() 进入 === 当前Token是：" + currentToken);
+        out.println("=== LAndExp() 进入 === 当前Token是：" + tokens.describe(currentToken));
 
         ASTNode left = EqExp();  // 第一个
     
-        while (currentToken != null && currentToken.getType() == TokenType.AND) {
+        while (currentToken != NONE && tokens.type(currentToken) == TokenType.AND) {
             match(TokenType.AND);
             ASTNode right = EqExp();  // 右边一个
             ASTNode newNode = new ASTNode("LAndExp");
@@ -1523,7 +1677,7 @@ public class Parser {
         }
     
         if (outputEnabled) {
-            System.out.println("x:<LAndExp>");
+            out.println("x:<LAndExp>");
         }
     
         return left;
@@ -1531,13 +1685,13 @@ public class Parser {
 
     // EqExp → RelExp | EqExp ('==' | '!=') RelExp
     private ASTNode EqExp() {
-        System.out.println("=== EqExp() 进入 === 当前Token是：" + currentToken);
+        out.println("=== EqExp() 进入 === 当前Token是：" + tokens.describe(currentToken));
 
         ASTNode left = RelExp();
     
-        while (currentToken != null && 
-               (currentToken.getType() == TokenType.EQL || currentToken.getType() == TokenType.NEQ)) {
-            TokenType op = currentToken.getType();
+        while (currentToken != NONE && 
+               (tokens.type(currentToken) == TokenType.EQL || tokens.type(currentToken) == TokenType.NEQ)) {
+            TokenType op = tokens.type(currentToken);
             match(op);
             ASTNode right = RelExp();
             ASTNode newNode = new ASTNode("EqExp_" + op);  // 可命名为 EqExp_EQL
@@ -1547,7 +1701,7 @@ public class Parser {
         }
     
         if (outputEnabled) {
-            System.out.println("x:<EqExp>");
+            out.println("x:<EqExp>");
         }
     
         return left;
@@ -1555,36 +1709,36 @@ public class Parser {
 
     // RelExp → AddExp | RelExp ('<' | '>' | '<=' | '>=' | '==' | '!=') AddExp
     private ASTNode RelExp() {
-        System.out.println("=== RelExp() 进入 === 当前Token是：" + currentToken);
+        out.println("=== RelExp() 进入 === 当前Token是：" + tokens.describe(currentToken));
 
         ASTNode left = AddExp();
-        System.out.println("[DEBUG][Parser] RelExp 左边AddExp解析完成，当前Token是：" + currentToken);
+        out.println("[DEBUG][Parser] RelExp 左边AddExp解析完成，当前Token是：" + tokens.describe(currentToken));
     
-        while (currentToken != null &&
-               (currentToken.getType() == TokenType.LSS ||  // <
-                currentToken.getType() == TokenType.GRE ||  // >
-                currentToken.getType() == TokenType.LEQ ||  // <=
-                currentToken.getType() == TokenType.GEQ ||  // >=
-                currentToken.getType() == TokenType.EQL ||  // ==
-                currentToken.getType() == TokenType.NEQ     // !=
+        while (currentToken != NONE &&
+               (tokens.type(currentToken) == TokenType.LSS ||  // <
+                tokens.type(currentToken) == TokenType.GRE ||  // >
+                tokens.type(currentToken) == TokenType.LEQ ||  // <=
+                tokens.type(currentToken) == TokenType.GEQ ||  // >=
+                tokens.type(currentToken) == TokenType.EQL ||  // ==
+                tokens.type(currentToken) == TokenType.NEQ     // !=
             )) {
-            System.out.println("[DEBUG][Parser] RelExp 检测到比较运算符，当前Token是：" + currentToken);
-            TokenType op = currentToken.getType();
+            out.println("[DEBUG][Parser] RelExp 检测到比较运算符，当前Token是：" + tokens.describe(currentToken));
+            TokenType op = tokens.type(currentToken);
             match(op); // 吃掉比较符号
-            System.out.println("[DEBUG][Parser] RelExp 匹配并吃掉比较符号 " + op + " 后，当前Token是：" + currentToken);
+            out.println("[DEBUG][Parser] RelExp 匹配并吃掉比较符号 " + op + " 后，当前Token是：" + tokens.describe(currentToken));
 
             ASTNode right = AddExp(); // 右边也要解析AddExp
-            System.out.println("[DEBUG][Parser] RelExp 右边AddExp解析完成，当前Token是：" + currentToken);
+            out.println("[DEBUG][Parser] RelExp 右边AddExp解析完成，当前Token是：" + tokens.describe(currentToken));
 
             ASTNode newNode = new ASTNode("RelExp_" + op);
             newNode.addChild(left);
             newNode.addChild(right);
             left = newNode; // 更新left指针指向新的RelExp节点
-            System.out.println("[DEBUG][Parser] RelExp 创建新节点 RelExp_" + op + " 完成");
+            out.println("[DEBUG][Parser] RelExp 创建新节点 RelExp_" + op + " 完成");
         }
     
         if (outputEnabled) {
-            System.out.println("x:<RelExp>");
+            out.println("x:<RelExp>");
         }
     
         return left; // 返回最终解析出来的RelExp
@@ -1600,7 +1754,7 @@ public class Parser {
         // 匹配等号
         if (!match(TokenType.ASSIGN)) {
             // 报错，比如"for的init或step期望出现=号"
-            int errorLineNumber = previousToken != null ? previousToken.lineNumber : 1;
+            int errorLineNumber = previousToken != NONE ? tokens.line(previousToken) : 1;
             reportError('h', errorLineNumber); // h是赋值错误常用error code
         }
 
@@ -1615,11 +1769,7 @@ public class Parser {
     }
 
 
-    private boolean isLValStart() {
-        return currentToken != null && currentToken.type == TokenType.IDENFR;
-    }
-
     private boolean isBlockItem() {
-        return isDecl() || isStmt();
+        return predict(PredictTables.BLOCK_ITEMS) == PredictTables.BLOCK_ITEMS_DECL || isStmt();
     }
 }
@@ -0,0 +1,109 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// 小程序反复运行时，每次新建执行器和从 ExecutorPool 借出复用的吞吐对比（次/秒）。
+// 两边都关掉逐条调试输出，输入输出都在内存里，量的只是执行器本身的开销。
+// 用法：java frontend.PoolBenchmark [源文件 [每轮运行次数]]，不给源文件时用内置的小程序
+public class PoolBenchmark {
+    static final int ROUNDS = 5; // 第一轮算预热，不计入结果
+    static final int DEFAULT_RUNS = 100_000;
+
+    private static final String TINY_PROGRAM = String.join("\n",
+            "int add(int a, int b) {",
+            "    return a + b;",
+            "}",
+            "int main() {",
+            "    int i;",
+            "    int s = 0;",
+            "    for (i = 0; i < 10; i = i + 1) {",
+            "        s = add(s, i);",
+            "    }",
+            "    printf(\"%d\\n\", s);",
+            "    return 0;",
+            "}",
+            "");
+
+    public static void main(String[] args) throws IOException {
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        Path source;
+        if (args.length > 0) {
+            source = Path.of(args[0]);
+        } else {
+            source = Files.createTempFile("pool-bench", ".c");
+            source.toFile().deleteOnExit();
+            Files.write(source, TINY_PROGRAM.getBytes(StandardCharsets.UTF_8));
+        }
+
+        PrintStream stdout = System.out;
+        List<PCode> code;
+        int entry;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            Lexer lexer = new Lexer();
+            List<Token> tokens = lexer.tokenize(source.toString());
+            CodeGenerator codeGenerator = new CodeGenerator();
+            Parser parser = new Parser(tokens, lexer.errors, lexer.errorLines, codeGenerator);
+            code = codeGenerator.generate(parser.parse());
+            entry = codeGenerator.funcEntryMap.get("main");
+        } finally {
+            System.setOut(stdout);
+        }
+
+        byte[] input = new byte[0];
+        ExecutorPool pool = new ExecutorPool(code, entry);
+        double freshTotal = 0;
+        double pooledTotal = 0;
+        String freshOutput = null;
+        String pooledOutput = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                PCodeExecutor executor = new PCodeExecutor(code);
+                executor.setPC(entry);
+                freshOutput = runOnce(executor, input);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                PCodeExecutor executor = pool.acquire();
+                try {
+                    pooledOutput = runOnce(executor, input);
+                } finally {
+                    pool.release(executor);
+                }
+            }
+            long t2 = System.nanoTime();
+
+            double fresh = runs / ((t1 - t0) / 1e9);
+            double pooled = runs / ((t2 - t1) / 1e9);
+            System.out.printf("第 %d 轮：新建 %.0f 次/秒，池化 %.0f 次/秒%s%n", round + 1, fresh, pooled, round == 0 ? "（预热）" : "");
+            if (round > 0) {
+                freshTotal += fresh;
+                pooledTotal += pooled;
+            }
+        }
+        if (!freshOutput.equals(pooledOutput)) {
+            System.out.println("❌ 两种方式的输出不同: " + freshOutput.trim() + " / " + pooledOutput.trim());
+            System.exit(1);
+        }
+        System.out.printf("平均：新建 %.0f 次/秒，池化 %.0f 次/秒（%.2fx），池中共新建执行器 %d 个%n",
+                freshTotal / (ROUNDS - 1), pooledTotal / (ROUNDS - 1), pooledTotal / freshTotal, pool.getCreatedCount());
+    }
+
+    private static String runOnce(PCodeExecutor executor, byte[] input) {
+        StringWriter output = new StringWriter();
+        executor.setVerbose(false);
+        executor.setInput(new ByteArrayInputStream(input));
+        executor.setOutput(output);
+        executor.execute();
+        return output.toString();
+    }
+}
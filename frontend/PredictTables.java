@@ -0,0 +1,414 @@
+package frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// 语法分析各判定点的预测表，类初始化时由下面的文法生成：
+//   - GRAMMAR 是 文法.pdf 里的 SysY 文法改写成的 BNF（{} 和 [] 展开成辅助非终结符），终结符直接用 TokenType 的名字；
+//   - 每个判定点的候选 i 的预测集合是 FIRST_K(右部) · FOLLOW_K(左部)（EOF 也算一个终结符）；
+//   - 每个判定点按预测集合建一个前瞻 DFA：看一个词法单元就能分开的直接给出候选，分不开的再看下一个，最多看 K 个。
+// 源程序有语法错误时的结果与原来手写的判断一致：
+//   - 前 K - 1 个就对不上返回 NO_ALT，第 K 个才对不上返回判定点的默认候选（比如 int a 后面缺分号仍按变量声明分析，由 VarDecl 报错）；
+//   - 循环的判定点另有同步集合：看到外层的开头（比如 Block 缺 '}' 时后面的函数定义）选最后一个 ε 候选结束循环，由外层报错；
+//   - 有的判定点规定最少看几个：FuncType Ident 后面要看到 '(' 才算函数定义。
+// 文法在 Stmt → LVal '=' ... | Exp ';' 处不是 LL(K)：Ident '[' ... 要看到 ']' 后面才知道，这一格返回 BACKTRACK，由 Parser 回溯。
+final class PredictTables {
+    static final int K = 3;
+    static final int NO_ALT = -1;    // 不是这个判定点的任何候选
+    static final int BACKTRACK = -2; // 看完 K 个仍分不开，由调用方回溯判断
+
+    static final int EOF = TokenType.values().length; // 读完时的前瞻
+    static final int TERMINALS = EOF + 1;
+    static final int START = 0;
+
+    private static final String[] GRAMMAR = {
+            "CompUnit → Decls FuncDefs MainFuncDef",
+            "Decls → Decl Decls | ε",
+            "FuncDefs → FuncDef FuncDefs | ε",
+            "Decl → ConstDecl | VarDecl",
+            "ConstDecl → CONSTTK BType ConstDef ConstDefs SEMICN",
+            "ConstDefs → COMMA ConstDef ConstDefs | ε",
+            "BType → INTTK | CHARTK",
+            "ConstDef → IDENFR ArrayDim ASSIGN ConstInitVal",
+            "ArrayDim → LBRACK ConstExp RBRACK | ε",
+            "ConstInitVal → ConstExp | LBRACE ConstExpList RBRACE | STRCON",
+            "ConstExpList → ConstExp ConstExps | ε",
+            "ConstExps → COMMA ConstExp ConstExps | ε",
+            "VarDecl → BType VarDef VarDefs SEMICN",
+            "VarDefs → COMMA VarDef VarDefs | ε",
+            "VarDef → IDENFR ArrayDim VarInit",
+            "VarInit → ASSIGN InitVal | ε",
+            "InitVal → Exp | LBRACE ExpList RBRACE | STRCON",
+            "ExpList → Exp Exps | ε",
+            "Exps → COMMA Exp Exps | ε",
+            "FuncDef → FuncType IDENFR LPARENT FuncFParamsOpt RPARENT Block",
+            "MainFuncDef → INTTK MAINTK LPARENT RPARENT Block",
+            "FuncType → VOIDTK | INTTK | CHARTK",
+            "FuncFParamsOpt → FuncFParams | ε",
+            "FuncFParams → FuncFParam FuncFParamRest",
+            "FuncFParamRest → COMMA FuncFParam FuncFParamRest | ε",
+            "FuncFParam → BType IDENFR ParamDim",
+            "ParamDim → LBRACK RBRACK | ε",
+            "Block → LBRACE BlockItems RBRACE",
+            "BlockItems → Decl BlockItems | Stmt BlockItems | ε",
+            "Stmt → LVal ASSIGN AssignRhs SEMICN | ExpOpt SEMICN | Block"
+                    + " | IFTK LPARENT Cond RPARENT Stmt ElseOpt"
+                    + " | FORTK LPARENT ForStmtOpt SEMICN CondOpt SEMICN ForStmtOpt RPARENT Stmt"
+                    + " | BREAKTK SEMICN | CONTINUETK SEMICN | RETURNTK ExpOpt SEMICN"
+                    + " | PRINTFTK LPARENT STRCON Exps RPARENT SEMICN",
+            "AssignRhs → Exp | GETINTTK LPARENT RPARENT | GETCHARTK LPARENT RPARENT",
+            "ElseOpt → ELSETK Stmt | ε",
+            "ExpOpt → Exp | ε",
+            "CondOpt → Cond | ε",
+            "ForStmtOpt → ForStmt | ε",
+            "ForStmt → LVal ASSIGN Exp",
+            "Exp → AddExp",
+            "Cond → LOrExp",
+            "LVal → IDENFR Index",
+            "Index → LBRACK Exp RBRACK | ε",
+            "PrimaryExp → LPARENT Exp RPARENT | LVal | INTCON | CHRCON",
+            "UnaryExp → PrimaryExp | IDENFR LPARENT FuncRParamsOpt RPARENT | UnaryOp UnaryExp",
+            "FuncRParamsOpt → Exp Exps | ε",
+            "UnaryOp → PLUS | MINU | NOT",
+            "MulExp → UnaryExp MulRest",
+            "MulRest → MULT UnaryExp MulRest | DIV UnaryExp MulRest | MOD UnaryExp MulRest | ε",
+            "AddExp → MulExp AddRest",
+            "AddRest → PLUS MulExp AddRest | MINU MulExp AddRest | ε",
+            "RelExp → AddExp RelRest",
+            "RelRest → LSS AddExp RelRest | GRE AddExp RelRest | LEQ AddExp RelRest | GEQ AddExp RelRest | ε",
+            "EqExp → RelExp EqRest",
+            "EqRest → EQL RelExp EqRest | NEQ RelExp EqRest | ε",
+            "LAndExp → EqExp LAndRest",
+            "LAndRest → AND EqExp LAndRest | ε",
+            "LOrExp → LAndExp LOrRest",
+            "LOrRest → OR LAndExp LOrRest | ε",
+            "ConstExp → AddExp",
+    };
+
+    // 判定点的非终结符、同步集合、最少看几个词法单元、默认候选；候选编号就是产生式在上面的顺序
+    private static final String[] DECISIONS = {
+            "Decls", "FuncDefs", "Decl", "BlockItems", "FuncFParamsOpt", "Stmt", "UnaryExp", "PrimaryExp"
+    };
+    private static final String[] SYNCS = {
+            null,
+            "Decl",                  // 函数定义之后又出现的全局声明
+            null,
+            "FuncDefs MainFuncDef",  // Block 缺 '}'
+            null,
+            null,
+            null,
+            null,
+    };
+    private static final int[] MIN_DEPTHS = {1, 3, 1, 1, 1, 1, 1, 1};
+    private static final int[] DEFAULTS = {
+            0,         // int a 后面不是 '('：变量声明
+            NO_ALT,
+            NO_ALT,
+            0,         // 同上
+            NO_ALT,
+            BACKTRACK, // Ident '[' 后面对不上：试分析一遍左值
+            NO_ALT,
+            NO_ALT,
+    };
+    static final int DECLS = 0;
+    static final int FUNC_DEFS = 1;
+    static final int DECL = 2;
+    static final int BLOCK_ITEMS = 3;
+    static final int FUNC_PARAMS = 4;
+    static final int STMT = 5;
+    static final int UNARY = 6;
+    static final int PRIMARY = 7;
+
+    // 各判定点的候选编号
+    static final int DECLS_DECL = 0;
+    static final int FUNC_DEFS_FUNC = 0;
+    static final int DECL_CONST = 0;
+    static final int DECL_VAR = 1;
+    static final int BLOCK_ITEMS_DECL = 0;
+    static final int FUNC_PARAMS_PARAMS = 0;
+    static final int STMT_ASSIGN = 0;
+    static final int STMT_EXP = 1;
+    static final int UNARY_CALL = 1;
+    static final int PRIMARY_LVAL = 1;
+
+    // 前瞻 DFA：TABLE[decision][state * TERMINALS + terminal]，>= 0 是下一个状态，< 0 是 decided(结果)
+    private static final int[][] TABLE = new int[DECISIONS.length][];
+
+    static {
+        Grammar grammar = new Grammar(GRAMMAR);
+        for (int d = 0; d < DECISIONS.length; d++) {
+            TABLE[d] = grammar.buildDecision(DECISIONS[d], SYNCS[d], MIN_DEPTHS[d], DEFAULTS[d]);
+        }
+    }
+
+    private PredictTables() {
+    }
+
+    // 在状态 state 看到 terminal 之后的状态；isDecided 时用 alternative 取结果
+    static int next(int decision, int state, int terminal) {
+        return TABLE[decision][state * TERMINALS + terminal];
+    }
+
+    static boolean isDecided(int state) {
+        return state < 0;
+    }
+
+    // 选中的候选编号，或 NO_ALT / BACKTRACK
+    static int alternative(int state) {
+        return -3 - state;
+    }
+
+    private static int decided(int result) {
+        return -3 - result;
+    }
+
+    // 文法只在生成表时用到。前瞻 DFA 的每个状态是一组"配置"：读过这段前缀之后，各候选可能停在文法的哪些位置。
+    // 求下一个词法单元的集合就是 FIRST / FOLLOW：位置上是非终结符就展开它的产生式（FIRST），
+    // 产生式走完就回到调用它的位置，不知道从哪里调用的（判定点本身）就回到文法里所有引用它的位置（FOLLOW）。
+    // 只展开还分不开的前缀，不用对整个文法求 FIRST_K / FOLLOW_K（那样类初始化要一秒多）。
+    private static final class Grammar {
+        private static final int MAX_STACK = 64; // 文法没有左递归，不读词法单元时调用栈不会无限加深
+
+        private final Map<String, Integer> nonterminals = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        // productions.get(A) 是 A 的各个右部；符号 >= 0 是终结符，< 0 是非终结符 ~index
+        private final List<List<int[]>> productions = new ArrayList<>();
+        // uses.get(A)：右部里出现 A 的位置（A 后面那一格），FOLLOW 从这里接着走
+        private final List<List<Position>> uses = new ArrayList<>();
+
+        Grammar(String[] rules) {
+            for (String rule : rules) {
+                String lhs = rule.substring(0, rule.indexOf('→')).trim();
+                nonterminals.put(lhs, names.size());
+                names.add(lhs);
+                productions.add(new ArrayList<>());
+                uses.add(new ArrayList<>());
+            }
+            for (int a = 0; a < rules.length; a++) {
+                String rhs = rules[a].substring(rules[a].indexOf('→') + 1);
+                for (String alternative : rhs.split("\\|")) {
+                    int[] symbols = symbols(alternative, rules[a]);
+                    productions.get(a).add(symbols);
+                    for (int i = 0; i < symbols.length; i++) {
+                        if (symbols[i] < 0) {
+                            uses.get(~symbols[i]).add(new Position(a, symbols, i + 1));
+                        }
+                    }
+                }
+            }
+        }
+
+        private int[] symbols(String text, String rule) {
+            String[] words = text.trim().split("\\s+");
+            if (words.length == 1 && words[0].equals("ε")) {
+                return new int[0];
+            }
+            int[] symbols = new int[words.length];
+            for (int i = 0; i < words.length; i++) {
+                Integer nonterminal = nonterminals.get(words[i]);
+                if (nonterminal != null) {
+                    symbols[i] = ~nonterminal;
+                    continue;
+                }
+                try {
+                    symbols[i] = TokenType.valueOf(words[i]).ordinal();
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("文法里的符号 " + words[i] + " 既不是非终结符也不是 TokenType：" + rule);
+                }
+            }
+            return symbols;
+        }
+
+        int[] buildDecision(String name, String sync, int minDepth, int defaultAlternative) {
+            Integer a = nonterminals.get(name);
+            if (a == null) {
+                throw new IllegalStateException("判定点 " + name + " 不在文法里");
+            }
+            List<int[]> alternatives = productions.get(a);
+            Set<Config> start = new HashSet<>();
+            for (int alt = 0; alt < alternatives.size(); alt++) {
+                start.add(new Config(alt, new Position(a, alternatives.get(alt), 0), null));
+            }
+            if (sync != null) {
+                // 同步集合按一条走完就到 EOF 的右部处理，并入最后一个候选
+                start.add(new Config(alternatives.size() - 1, new Position(Position.SYNC, symbols(sync, sync), 0), null));
+            }
+            List<Set<Config>> states = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            states.add(closure(start));
+            depths.add(0);
+            int[] table = new int[0];
+            for (int s = 0; s < states.size(); s++) {
+                int depth = depths.get(s);
+                table = Arrays.copyOf(table, (s + 1) * TERMINALS);
+                List<Set<Config>> moved = move(states.get(s));
+                for (int t = 0; t < TERMINALS; t++) {
+                    Set<Config> next = moved.get(t);
+                    int mask = 0;
+                    for (Config config : next) {
+                        mask |= 1 << config.alt;
+                    }
+                    boolean unique = Integer.bitCount(mask) == 1;
+                    int entry;
+                    if (mask == 0) {
+                        entry = decided(depth + 1 < K ? NO_ALT : defaultAlternative);
+                    } else if (unique && (depth + 1 >= minDepth || t == EOF)) {
+                        entry = decided(Integer.numberOfTrailingZeros(mask));
+                    } else if (depth + 1 < K && t != EOF) {
+                        entry = states.size();
+                        states.add(next);
+                        depths.add(depth + 1);
+                    } else if (defaultAlternative == BACKTRACK) {
+                        entry = decided(BACKTRACK);
+                    } else {
+                        throw new IllegalStateException("判定点 " + name + " 看 " + K + " 个词法单元仍有冲突");
+                    }
+                    table[s * TERMINALS + t] = entry;
+                }
+            }
+            return table;
+        }
+
+        // 按下一个终结符分组，各自读过它之后再求闭包
+        private List<Set<Config>> move(Set<Config> configs) {
+            List<Set<Config>> shifted = new ArrayList<>();
+            for (int t = 0; t < TERMINALS; t++) {
+                shifted.add(new HashSet<>());
+            }
+            for (Config config : configs) {
+                Position at = config.at;
+                int terminal = at.atEnd() ? EOF : at.rhs[at.index];
+                Position after = at.atEnd() ? at : new Position(at.lhs, at.rhs, at.index + 1);
+                shifted.get(terminal).add(new Config(config.alt, after, config.stack));
+            }
+            List<Set<Config>> result = new ArrayList<>();
+            for (int t = 0; t < TERMINALS; t++) {
+                result.add(t == EOF ? shifted.get(t) : closure(shifted.get(t)));
+            }
+            return result;
+        }
+
+        // 一直展开到每个配置的下一个符号都是终结符；走到开始符号（或同步集合）末尾的配置留着，表示下一个是 EOF
+        private Set<Config> closure(Set<Config> configs) {
+            Set<Config> result = new HashSet<>();
+            Set<Config> seen = new HashSet<>(configs);
+            List<Config> work = new ArrayList<>(configs);
+            while (!work.isEmpty()) {
+                Config config = work.remove(work.size() - 1);
+                Position at = config.at;
+                List<Config> expanded = new ArrayList<>();
+                if (!at.atEnd() && at.rhs[at.index] >= 0) {
+                    result.add(config);
+                } else if (!at.atEnd()) {
+                    int b = ~at.rhs[at.index];
+                    Stack stack = new Stack(new Position(at.lhs, at.rhs, at.index + 1), config.stack);
+                    if (stack.depth > MAX_STACK) {
+                        throw new IllegalStateException("文法在 " + names.get(b) + " 处有左递归");
+                    }
+                    for (int[] rhs : productions.get(b)) {
+                        expanded.add(new Config(config.alt, new Position(b, rhs, 0), stack));
+                    }
+                } else if (config.stack != null) {
+                    expanded.add(new Config(config.alt, config.stack.top, config.stack.rest));
+                } else if (at.lhs == 0 || at.lhs == Position.SYNC) {
+                    result.add(config);
+                } else {
+                    for (Position use : uses.get(at.lhs)) {
+                        expanded.add(new Config(config.alt, use, null));
+                    }
+                }
+                for (Config next : expanded) {
+                    if (seen.add(next)) {
+                        work.add(next);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    // 右部 rhs 的第 index 格（左部是 lhs）；rhs 是共享的数组，按引用比较
+    private static final class Position {
+        static final int SYNC = -1;
+
+        final int lhs;
+        final int[] rhs;
+        final int index;
+
+        Position(int lhs, int[] rhs, int index) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.index = index;
+        }
+
+        boolean atEnd() {
+            return index == rhs.length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Position p && p.rhs == rhs && p.index == index && p.lhs == lhs;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(rhs) * 31 + index;
+        }
+    }
+
+    // 返回位置组成的调用栈，null 是空栈
+    private static final class Stack {
+        final Position top;
+        final Stack rest;
+        final int depth;
+        private final int hash;
+
+        Stack(Position top, Stack rest) {
+            this.top = top;
+            this.rest = rest;
+            this.depth = rest == null ? 1 : rest.depth + 1;
+            this.hash = top.hashCode() * 31 + (rest == null ? 0 : rest.hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof Stack s && s.hash == hash && s.top.equals(top) && Objects.equals(s.rest, rest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Config {
+        final int alt;
+        final Position at;
+        final Stack stack;
+
+        Config(int alt, Position at, Stack stack) {
+            this.alt = alt;
+            this.at = at;
+            this.stack = stack;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Config c && c.alt == alt && c.at.equals(at) && Objects.equals(c.stack, stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return (alt * 31 + at.hashCode()) * 31 + (stack == null ? 0 : stack.hashCode());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package frontend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+// 程序运行结果缓存：以 (最终 PCode + 字符串池 + 入口) 的哈希和输入内容的哈希为键，
+// 保存输出字节和结束状态。评测时同一份代码、同一份 input.txt 会被反复运行，命中后不必再执行。
+// 代码里没有 READ 指令的程序与输入无关，键里不包含输入哈希，任何输入都能命中。
+public class ResultCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int FORMAT_VERSION = 1;
+
+    private final DiskLruStore store;
+
+    public ResultCache(String dir) throws IOException {
+        this(dir, DEFAULT_MAX_BYTES);
+    }
+
+    public ResultCache(String dir, long maxBytes) throws IOException {
+        this.store = new DiskLruStore(dir, maxBytes);
+    }
+
+    public static class Result {
+        public final PCodeExecutor.Status status;
+        public final byte[] output;
+
+        public Result(PCodeExecutor.Status status, byte[] output) {
+            this.status = status;
+            this.output = output;
+        }
+    }
+
+    // 计算缓存键。programHash 可以对同一程序复用，见 programHash()
+    public static String key(String programHash, boolean readsInput, byte[] input) {
+        if (!readsInput) {
+            return programHash + "-noinput";
+        }
+        return programHash + "-" + sha256(input);
+    }
+
+    public static String programHash(List<PCode> code, List<String> stringPool, int entryPc) {
+        MessageDigest md = newDigest();
+        md.update(("v" + FORMAT_VERSION + "\nentry " + entryPc + "\n").getBytes(StandardCharsets.UTF_8));
+        for (PCode inst : code) {
+            md.update((inst.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        md.update("strings\n".getBytes(StandardCharsets.UTF_8));
+        for (String s : stringPool) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            md.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+            md.update(bytes);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    // 程序是否可能读输入（静态检查有无 READ 指令）
+    public static boolean readsInput(List<PCode> code) {
+        for (PCode inst : code) {
+            if (inst.getOp() == PCode.OpCode.READ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Result get(String key) {
+        byte[] data = store.get(key);
+        if (data == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                store.remove(key);
+                return null;
+            }
+            PCodeExecutor.Status status = PCodeExecutor.Status.valueOf(in.readUTF());
+            byte[] output = new byte[in.readInt()];
+            in.readFully(output);
+            return new Result(status, output);
+        } catch (IOException | IllegalArgumentException e) {
+            store.remove(key); // 损坏的条目直接丢掉
+            return null;
+        }
+    }
+
+    // 只缓存确定的结束状态（HALTED / FAILED）
+    public void put(String key, Result result) throws IOException {
+        if (result.status != PCodeExecutor.Status.HALTED && result.status != PCodeExecutor.Status.FAILED) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(result.output.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(result.status.name());
+            out.writeInt(result.output.length);
+            out.write(result.output);
+        }
+        store.put(key, bytes.toByteArray());
+    }
+
+    private static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
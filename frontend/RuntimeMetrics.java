@@ -0,0 +1,295 @@
+package frontend;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// 虚拟机和编译器的运行时计数，通过 JMX（RuntimeMetricsMXBean）和 OpenMetrics 文本两种方式暴露。
+//
+// 执行器不直接碰这里的计数器：每条指令只累加执行器自己的 long 数组，
+// 每个时间片结束时才用 recordVm 合并进来。合并用 LongAdder / LongAccumulator，
+// 多个 VM 并发合并时落在不同的 cell 上，不会互相串行化。
+public class RuntimeMetrics implements RuntimeMetricsMXBean {
+    public static final String OBJECT_NAME = "frontend:type=RuntimeMetrics";
+    static final int OP_COUNT = PCode.OpCode.values().length;
+
+    public enum Phase {
+        LEX, PARSE, CODEGEN, EXECUTE
+    }
+
+    private static final RuntimeMetrics GLOBAL = new RuntimeMetrics();
+
+    private final LongAdder[] opCounts = new LongAdder[OP_COUNT];
+    private final LongAdder calls = new LongAdder();
+    private final LongAccumulator maxCallDepth = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator memoryHighWater = new LongAccumulator(Math::max, 0);
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder runsHalted = new LongAdder();
+    private final LongAdder runsFailed = new LongAdder();
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder astNodes = new LongAdder();
+    private final LongAdder generatedInstructions = new LongAdder();
+
+    public RuntimeMetrics() {
+        for (int i = 0; i < opCounts.length; i++) {
+            opCounts[i] = new LongAdder();
+        }
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    // 进程内共用的一份，Compiler 注册到 JMX 的就是它
+    public static RuntimeMetrics global() {
+        return GLOBAL;
+    }
+
+    // 注册到平台 MBeanServer，重复注册忽略
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // 已注册
+        } catch (JMException e) {
+            throw new RuntimeException("注册 RuntimeMetrics MXBean 失败", e);
+        }
+    }
+
+    // ---- 由执行器在时间片结束时调用 ----
+
+    void recordVm(long[] ops, long callCount, int callDepth, int memoryHigh, long outBytes, long readCount) {
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i] != 0) {
+                opCounts[i].add(ops[i]);
+            }
+        }
+        if (callCount != 0) {
+            calls.add(callCount);
+        }
+        maxCallDepth.accumulate(callDepth);
+        memoryHighWater.accumulate(memoryHigh);
+        if (outBytes != 0) {
+            outputBytes.add(outBytes);
+        }
+        if (readCount != 0) {
+            reads.add(readCount);
+        }
+    }
+
+    void recordFinished(PCodeExecutor.Status status) {
+        if (status == PCodeExecutor.Status.HALTED) {
+            runsHalted.increment();
+        } else if (status == PCodeExecutor.Status.FAILED) {
+            runsFailed.increment();
+        }
+    }
+
+    // ---- 编译器 ----
+
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    public void recordCompile(int tokenCount, int astNodeCount, int instructionCount) {
+        tokens.add(tokenCount);
+        astNodes.add(astNodeCount);
+        generatedInstructions.add(instructionCount);
+    }
+
+    // 输出按 UTF-8 计字节
+    static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // ---- MXBean ----
+
+    @Override
+    public long getInstructionsExecuted() {
+        long total = 0;
+        for (LongAdder c : opCounts) {
+            total += c.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getInstructionsByOpcode() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        PCode.OpCode[] ops = PCode.OpCode.values();
+        for (int i = 0; i < ops.length; i++) {
+            map.put(ops[i].name(), opCounts[i].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getMaxCallDepth() {
+        return maxCallDepth.get();
+    }
+
+    @Override
+    public long getMemoryHighWaterMark() {
+        return memoryHighWater.get();
+    }
+
+    @Override
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    @Override
+    public long getReadCount() {
+        return reads.sum();
+    }
+
+    @Override
+    public long getRunsHalted() {
+        return runsHalted.sum();
+    }
+
+    @Override
+    public long getRunsFailed() {
+        return runsFailed.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseNanos() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            map.put(phase.name().toLowerCase(Locale.ROOT), phaseNanos[phase.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public long getTokenCount() {
+        return tokens.sum();
+    }
+
+    @Override
+    public long getAstNodeCount() {
+        return astNodes.sum();
+    }
+
+    @Override
+    public long getGeneratedInstructionCount() {
+        return generatedInstructions.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder c : opCounts) {
+            c.reset();
+        }
+        for (LongAdder c : phaseNanos) {
+            c.reset();
+        }
+        calls.reset();
+        maxCallDepth.reset();
+        memoryHighWater.reset();
+        outputBytes.reset();
+        reads.reset();
+        runsHalted.reset();
+        runsFailed.reset();
+        tokens.reset();
+        astNodes.reset();
+        generatedInstructions.reset();
+    }
+
+    // ---- OpenMetrics 文本格式 ----
+
+    public void writeOpenMetrics(Writer out) throws IOException {
+        out.write("# TYPE pcode_vm_instructions counter\n");
+        out.write("# HELP pcode_vm_instructions Instructions executed, by opcode.\n");
+        for (Map.Entry<String, Long> e : getInstructionsByOpcode().entrySet()) {
+            out.write("pcode_vm_instructions_total{op=\"" + e.getKey() + "\"} " + e.getValue() + "\n");
+        }
+        counter(out, "pcode_vm_calls", "CALL instructions executed.", getCalls());
+        gauge(out, "pcode_vm_max_call_depth", "Deepest call stack seen by any VM.", getMaxCallDepth());
+        gauge(out, "pcode_vm_memory_high_water_words", "Highest memory address written plus one.", getMemoryHighWaterMark());
+        counter(out, "pcode_vm_output_bytes", "Program output in UTF-8 bytes.", getOutputBytes());
+        counter(out, "pcode_vm_reads", "READ instructions executed.", getReadCount());
+        out.write("# TYPE pcode_vm_runs counter\n");
+        out.write("# HELP pcode_vm_runs Finished VM runs, by final status.\n");
+        out.write("pcode_vm_runs_total{status=\"halted\"} " + getRunsHalted() + "\n");
+        out.write("pcode_vm_runs_total{status=\"failed\"} " + getRunsFailed() + "\n");
+
+        out.write("# TYPE pcode_compiler_phase_seconds counter\n");
+        out.write("# UNIT pcode_compiler_phase_seconds seconds\n");
+        out.write("# HELP pcode_compiler_phase_seconds Time spent in each compiler phase.\n");
+        for (Map.Entry<String, Long> e : getPhaseNanos().entrySet()) {
+            out.write("pcode_compiler_phase_seconds_total{phase=\"" + e.getKey() + "\"} " + (e.getValue() / 1e9) + "\n");
+        }
+        counter(out, "pcode_compiler_tokens", "Tokens produced by the lexer.", getTokenCount());
+        counter(out, "pcode_compiler_ast_nodes", "AST nodes produced by the parser.", getAstNodeCount());
+        counter(out, "pcode_compiler_instructions", "PCode instructions generated.", getGeneratedInstructionCount());
+        out.write("# EOF\n");
+    }
+
+    private static void counter(Writer out, String name, String help, long value) throws IOException {
+        out.write("# TYPE " + name + " counter\n");
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write(name + "_total " + value + "\n");
+    }
+
+    private static void gauge(Writer out, String name, String help, long value) throws IOException {
+        out.write("# TYPE " + name + " gauge\n");
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write(name + " " + value + "\n");
+    }
+
+    // 在 localhost:port/metrics 上提供 OpenMetrics 文本，只绑定回环地址。
+    // 返回的 server 由调用方 stop；处理线程是 HttpServer 自己的后台线程。
+    public HttpServer startHttpServer(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            StringWriter text = new StringWriter();
+            writeOpenMetrics(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/openmetrics-text; version=1.0.0; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,36 @@
+package frontend;
+
+import java.util.Map;
+
+// 通过 JMX 暴露的运行时计数，见 RuntimeMetrics
+public interface RuntimeMetricsMXBean {
+    // ---- 虚拟机 ----
+    long getInstructionsExecuted();
+
+    Map<String, Long> getInstructionsByOpcode();
+
+    long getCalls();
+
+    long getMaxCallDepth();
+
+    long getMemoryHighWaterMark();
+
+    long getOutputBytes();
+
+    long getReadCount();
+
+    long getRunsHalted();
+
+    long getRunsFailed();
+
+    // ---- 编译器 ----
+    Map<String, Long> getPhaseNanos();
+
+    long getTokenCount();
+
+    long getAstNodeCount();
+
+    long getGeneratedInstructionCount();
+
+    void reset();
+}
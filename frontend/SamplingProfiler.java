@@ -0,0 +1,164 @@
+package frontend;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+// 统计采样 profiler：后台线程定期读取 VM 发布的 (pc, 调用深度)，
+// 再按深度读执行器控制栈（callStack）里各帧的返回地址还原调用栈，按函数和源代码行累计样本。
+// 不走 memory 里的 DL / RA：CodeGenerator 不生成 INT，各层帧都从同一个 sp 开始，memory 里的帧链会被覆盖。VM 只在 CALL / RET / 向后跳转时发布一次 volatile 写，
+// 解释循环本身不做任何插桩，所以默认采样频率下开销远低于 1%。
+//
+// 输出是 collapsed stacks 格式（每行 "main;f;g 样本数"），可直接交给 flamegraph.pl。
+public class SamplingProfiler {
+    public static final long DEFAULT_INTERVAL_NANOS = 10_000_000L; // 默认 100Hz
+    private static final int MAX_DEPTH = 256; // 递归很深时只保留最内层这么多帧
+
+    private final PCodeExecutor vm;
+    private final List<PCode> code;
+    private final long intervalNanos;
+    private final int[] entries;     // 按地址排序的函数入口
+    private final String[] names;    // 与 entries 对应的函数名
+
+    private final Map<String, Long> stackSamples = new HashMap<>(); // "main;f6;f6" -> 样本数
+    private final Map<String, Long> functionSamples = new HashMap<>();
+    private final Map<Integer, Long> lineSamples = new TreeMap<>();
+    private long totalSamples = 0;
+
+    private Thread sampler;
+    private volatile boolean running = false;
+
+    public SamplingProfiler(PCodeExecutor vm, List<PCode> code, Map<String, Integer> funcEntryMap) {
+        this(vm, code, funcEntryMap, DEFAULT_INTERVAL_NANOS);
+    }
+
+    public SamplingProfiler(PCodeExecutor vm, List<PCode> code, Map<String, Integer> funcEntryMap, long intervalNanos) {
+        this.vm = vm;
+        this.code = code;
+        this.intervalNanos = intervalNanos;
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(funcEntryMap.entrySet());
+        sorted.sort(Map.Entry.comparingByValue());
+        entries = new int[sorted.size()];
+        names = new String[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            entries[i] = sorted.get(i).getValue();
+            names[i] = sorted.get(i).getKey();
+        }
+    }
+
+    public void start() {
+        running = true;
+        sampler = new Thread(this::sampleLoop, "pcode-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (sampler != null) {
+            LockSupport.unpark(sampler);
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sampleLoop() {
+        while (running && !vm.isFinished()) {
+            LockSupport.parkNanos(intervalNanos);
+            if (!running) {
+                break;
+            }
+            sample();
+        }
+    }
+
+    // 取一次样本：还原调用栈（最内层在前），再按函数 / 行累计
+    private void sample() {
+        long frame = vm.getPublishedFrame();
+        int pc = (int) frame;
+        int depth = (int) (frame >>> 32);
+        if (pc < 0 || pc >= code.size()) {
+            return;
+        }
+
+        List<Integer> pcs = new ArrayList<>();
+        pcs.add(pc);
+        // 第 0 帧是结束标记；第 d 帧的返回地址在第 d - 1 帧所在的函数里，落在 CALL 之后
+        for (int d = depth - 1; d >= 1 && pcs.size() < MAX_DEPTH; d--) {
+            int ra = vm.peekReturnAddr(d);
+            if (ra <= 0 || ra > code.size()) {
+                break; // 采样和 CALL / RET 交错时可能读到旧值，到此为止
+            }
+            pcs.add(ra - 1);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = pcs.size() - 1; i >= 0; i--) {
+            sb.append(functionAt(pcs.get(i)));
+            if (i > 0) {
+                sb.append(';');
+            }
+        }
+        stackSamples.merge(sb.toString(), 1L, Long::sum);
+        functionSamples.merge(functionAt(pc), 1L, Long::sum);
+        int line = code.get(pc).getLine();
+        if (line > 0) {
+            lineSamples.merge(line, 1L, Long::sum);
+        }
+        totalSamples++;
+    }
+
+    // 二分查找 pc 所在的函数（入口地址不超过 pc 的最后一个函数）
+    private String functionAt(int pc) {
+        int idx = Arrays.binarySearch(entries, pc);
+        if (idx < 0) {
+            idx = -idx - 2;
+        }
+        return idx >= 0 ? names[idx] : "[unknown]";
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public Map<String, Long> getFunctionSamples() {
+        return functionSamples;
+    }
+
+    public Map<Integer, Long> getLineSamples() {
+        return lineSamples;
+    }
+
+    // 写出 collapsed stacks 文件，需在 stop() 之后调用
+    public void writeCollapsed(String fileName) throws IOException {
+        try (PrintWriter writer = new PrintWriter(fileName)) {
+            for (Map.Entry<String, Long> e : stackSamples.entrySet()) {
+                writer.println(e.getKey() + " " + e.getValue());
+            }
+        }
+    }
+
+    // 写出按函数、按行的样本统计
+    public void writeReport(String fileName) throws IOException {
+        try (PrintWriter writer = new PrintWriter(fileName)) {
+            writer.println("total samples: " + totalSamples);
+            writer.println("# function samples");
+            for (Map.Entry<String, Long> e : functionSamples.entrySet()) {
+                writer.println(e.getKey() + " " + e.getValue());
+            }
+            writer.println("# line samples");
+            for (Map.Entry<Integer, Long> e : lineSamples.entrySet()) {
+                writer.println(e.getKey() + " " + e.getValue());
+            }
+        }
+    }
+}
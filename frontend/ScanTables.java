@@ -0,0 +1,252 @@
+package frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 按字节扫描用的表，类初始化时由下面的规格生成：
+//   - 字符类表 CLASS：每个字节属于哪一类。字母 / 数字 / 空格制表符各一类，每个运算符字符单独一类，
+//     其余需要专门处理的字节（换行、\r、/、引号、非 ASCII）也各自一类；
+//   - DFA 转移表 DELTA[state * CLASSES + class]：标识符、整数、非法字符和所有运算符
+//     （按拼写建成字典树）都在这张表里，最长匹配到 DEAD 为止，ACCEPT[state] 是结束时的 Token 类型；
+//     从 START 出发就是 DEAD 的字节类（空白、注释、字符串、字符常量、换行、非 ASCII）由 Lexer 单独处理；
+//   - 关键字的最小完美哈希：14 个关键字正好放进 14 个槽，先按 FNV 哈希分桶，每个桶找一个位移值
+//     让桶里的关键字落到互不冲突的空槽。查找时算一次哈希、比一次字节，不创建 String。
+final class ScanTables {
+    static final int C_OTHER = 0;   // 其余 ASCII 字节：非法字符
+    static final int C_BLANK = 1;   // 空格、制表符
+    static final int C_NL = 2;
+    static final int C_CR = 3;
+    static final int C_SLASH = 4;   // 注释或除号
+    static final int C_DQUOTE = 5;
+    static final int C_SQUOTE = 6;
+    static final int C_HIGH = 7;    // 非 ASCII
+    static final int C_LETTER = 8;  // 字母和下划线
+    static final int C_DIGIT = 9;
+
+    static final int DEAD = 0;
+    static final int START = 1;
+    static final int IDENT = 2;
+    static final int NUMBER = 3;
+    static final int OTHER = 4;
+
+    // 运算符拼写；单独的 & 和 | 也按 AND / OR 产出，但要记词法错误
+    private static final String[] OPERATORS = {
+            "<", "<=", ">", ">=", "=", "==", "!", "!=", "&", "&&", "|", "||",
+            "+", "-", "*", "%", ";", ",", "(", ")", "[", "]", "{", "}"
+    };
+    private static final TokenType[] OPERATOR_TYPES = {
+            TokenType.LSS, TokenType.LEQ, TokenType.GRE, TokenType.GEQ, TokenType.ASSIGN, TokenType.EQL,
+            TokenType.NOT, TokenType.NEQ, TokenType.AND, TokenType.AND, TokenType.OR, TokenType.OR,
+            TokenType.PLUS, TokenType.MINU, TokenType.MULT, TokenType.MOD, TokenType.SEMICN, TokenType.COMMA,
+            TokenType.LPARENT, TokenType.RPARENT, TokenType.LBRACK, TokenType.RBRACK, TokenType.LBRACE, TokenType.RBRACE
+    };
+    private static final String LONE_ERRORS = "&|";
+
+    static final byte[] CLASS = new byte[256];
+    static final int CLASSES;
+    static final byte[] DELTA;
+    static final TokenType[] ACCEPT;
+    static final boolean[] ERROR; // 在该状态结束的 Token 要记词法错误 a
+
+    static {
+        Arrays.fill(CLASS, (byte) C_OTHER);
+        CLASS[' '] = C_BLANK;
+        CLASS['\t'] = C_BLANK;
+        CLASS['\n'] = C_NL;
+        CLASS['\r'] = C_CR;
+        CLASS['/'] = C_SLASH;
+        CLASS['"'] = C_DQUOTE;
+        CLASS['\''] = C_SQUOTE;
+        for (int c = 0x80; c < 256; c++) {
+            CLASS[c] = C_HIGH;
+        }
+        for (int c = 'a'; c <= 'z'; c++) {
+            CLASS[c] = C_LETTER;
+            CLASS[c - 'a' + 'A'] = C_LETTER;
+        }
+        CLASS['_'] = C_LETTER;
+        for (int c = '0'; c <= '9'; c++) {
+            CLASS[c] = C_DIGIT;
+        }
+        int classes = C_DIGIT + 1;
+        int maxStates = OTHER + 1;
+        for (String op : OPERATORS) {
+            for (int i = 0; i < op.length(); i++) {
+                if (CLASS[op.charAt(i)] == C_OTHER) {
+                    CLASS[op.charAt(i)] = (byte) classes++;
+                }
+            }
+            maxStates += op.length();
+        }
+        CLASSES = classes;
+
+        byte[] delta = new byte[maxStates * CLASSES];
+        TokenType[] accept = new TokenType[maxStates];
+        boolean[] error = new boolean[maxStates];
+        delta[START * CLASSES + C_LETTER] = IDENT;
+        delta[IDENT * CLASSES + C_LETTER] = IDENT;
+        delta[IDENT * CLASSES + C_DIGIT] = IDENT;
+        delta[START * CLASSES + C_DIGIT] = NUMBER;
+        delta[NUMBER * CLASSES + C_DIGIT] = NUMBER;
+        delta[START * CLASSES + C_OTHER] = OTHER;
+        accept[IDENT] = TokenType.IDENFR;
+        accept[NUMBER] = TokenType.INTCON;
+        accept[OTHER] = TokenType.ERROR;
+        error[OTHER] = true;
+        int states = OTHER + 1;
+        for (int k = 0; k < OPERATORS.length; k++) {
+            String op = OPERATORS[k];
+            int state = START;
+            for (int i = 0; i < op.length(); i++) {
+                int at = state * CLASSES + CLASS[op.charAt(i)];
+                if (delta[at] == DEAD) {
+                    delta[at] = (byte) states++;
+                }
+                state = delta[at];
+            }
+            accept[state] = OPERATOR_TYPES[k];
+            error[state] = op.length() == 1 && LONE_ERRORS.indexOf(op.charAt(0)) >= 0;
+        }
+        DELTA = Arrays.copyOf(delta, states * CLASSES);
+        ACCEPT = Arrays.copyOf(accept, states);
+        ERROR = Arrays.copyOf(error, states);
+    }
+
+    // 关键字与 Lexer 原来的保留字表相同
+    private static final String[] KEYWORDS = {
+            "const", "int", "break", "continue", "if", "else", "for", "main", "void", "return",
+            "char", "getchar", "printf", "getint"
+    };
+    private static final TokenType[] KEYWORD_TYPES = {
+            TokenType.CONSTTK, TokenType.INTTK, TokenType.BREAKTK, TokenType.CONTINUETK, TokenType.IFTK,
+            TokenType.ELSETK, TokenType.FORTK, TokenType.MAINTK, TokenType.VOIDTK, TokenType.RETURNTK,
+            TokenType.CHARTK, TokenType.GETCHARTK, TokenType.PRINTFTK, TokenType.GETINTTK
+    };
+    private static final int SLOTS = KEYWORDS.length;
+    private static final int BUCKETS = (SLOTS + 1) / 2;
+    private static final int[] DISPLACEMENTS = new int[BUCKETS];
+    private static final byte[][] SLOT_BYTES = new byte[SLOTS][];
+    private static final TokenType[] SLOT_TYPES = new TokenType[SLOTS];
+    private static final int MIN_KEYWORD;
+    private static final int MAX_KEYWORD;
+
+    static {
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets.add(new ArrayList<>());
+        }
+        int[] hashes = new int[SLOTS];
+        for (int k = 0; k < SLOTS; k++) {
+            byte[] bytes = KEYWORDS[k].getBytes(StandardCharsets.US_ASCII);
+            hashes[k] = hash(bytes);
+            buckets.get(bucket(hashes[k])).add(k);
+            min = Math.min(min, bytes.length);
+            max = Math.max(max, bytes.length);
+        }
+        MIN_KEYWORD = min;
+        MAX_KEYWORD = max;
+        // 大桶先放：空槽多的时候更容易给整桶找到位置
+        Integer[] order = new Integer[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (x, y) -> buckets.get(y).size() - buckets.get(x).size());
+        for (int b : order) {
+            List<Integer> keys = buckets.get(b);
+            for (int d = 0; !keys.isEmpty(); d++) {
+                if (d == 1 << 20) {
+                    throw new IllegalStateException("关键字完美哈希构造失败");
+                }
+                int[] slots = new int[keys.size()];
+                boolean fits = true;
+                for (int i = 0; i < keys.size() && fits; i++) {
+                    slots[i] = slot(hashes[keys.get(i)], d);
+                    fits = SLOT_BYTES[slots[i]] == null;
+                    for (int j = 0; j < i && fits; j++) {
+                        fits = slots[j] != slots[i];
+                    }
+                }
+                if (fits) {
+                    DISPLACEMENTS[b] = d;
+                    for (int i = 0; i < keys.size(); i++) {
+                        SLOT_BYTES[slots[i]] = KEYWORDS[keys.get(i)].getBytes(StandardCharsets.US_ASCII);
+                        SLOT_TYPES[slots[i]] = KEYWORD_TYPES[keys.get(i)];
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    // 源码 [from, to) 是标识符时查关键字，不是关键字返回 IDENFR
+    static TokenType keyword(ByteBuffer src, int from, int to) {
+        int length = to - from;
+        if (length < MIN_KEYWORD || length > MAX_KEYWORD) {
+            return TokenType.IDENFR;
+        }
+        int h = FNV_BASIS;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (src.get(i) & 0xff)) * FNV_PRIME;
+        }
+        int s = slot(h, DISPLACEMENTS[bucket(h)]);
+        byte[] word = SLOT_BYTES[s];
+        if (word.length != length) {
+            return TokenType.IDENFR;
+        }
+        for (int i = 0; i < length; i++) {
+            if (src.get(from + i) != word[i]) {
+                return TokenType.IDENFR;
+            }
+        }
+        return SLOT_TYPES[s];
+    }
+
+    // 同上，标识符只含 ASCII 字母数字下划线，按字符算与按字节算的哈希相同
+    static TokenType keyword(CharSequence src, int from, int to) {
+        int length = to - from;
+        if (length < MIN_KEYWORD || length > MAX_KEYWORD) {
+            return TokenType.IDENFR;
+        }
+        int h = FNV_BASIS;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (src.charAt(i) & 0xff)) * FNV_PRIME;
+        }
+        int s = slot(h, DISPLACEMENTS[bucket(h)]);
+        byte[] word = SLOT_BYTES[s];
+        if (word.length != length) {
+            return TokenType.IDENFR;
+        }
+        for (int i = 0; i < length; i++) {
+            if (src.charAt(from + i) != word[i]) {
+                return TokenType.IDENFR;
+            }
+        }
+        return SLOT_TYPES[s];
+    }
+
+    private static final int FNV_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private static int hash(byte[] bytes) {
+        int h = FNV_BASIS;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static int bucket(int h) {
+        return (h >>> 1) % BUCKETS;
+    }
+
+    private static int slot(int h, int d) {
+        int x = (h ^ d) * 0x9e3779b1;
+        x ^= x >>> 16;
+        return (x >>> 1) % SLOTS;
+    }
+}
@@ -0,0 +1,211 @@
+package frontend;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+// 边扫描边读取的 TokenSource：语法分析 peek 到还没扫出的位置时，才用 Lexer.scan 往后扫一批
+// （至少 BATCH_BYTES 字节，结束在换行之后），扫出的词法单元搬进一个环形缓冲。缓冲只保留窗口内的
+// 词法单元（见 TokenSource），平时只有上一个词法单元加上一两个预读，回溯时是 mark 之后的一段；
+// 放不下时容量翻倍，所以窗口大小只取决于语法分析实际需要回看多远，与源码大小无关。
+//
+// 每批都扫到整行结束，语法分析读到某一行的词法单元时这一行的词法错误已经记下了：
+// 同一行词法错误优先于语法错误的去重结果与先扫完再分析一致。
+final class StreamingTokenSource implements TokenSource {
+    private static final TokenType[] TYPES = TokenType.values();
+    static final int BATCH_BYTES = 1 << 12;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final Lexer lexer;
+    private final ByteBuffer src;
+    private final int size;
+    private final int limit;
+    private final TokenBuffer batch;
+    private int scanned = 0;   // 源码已扫到的位置
+    private int scanLine = 1;  // scanned 处的行号
+
+    // 编号 i 的词法单元在槽 i & mask
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private byte[] lengths = new byte[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private String[] stored = new String[INITIAL_CAPACITY]; // 源码里切不出来的 lexeme
+    private int mask = INITIAL_CAPACITY - 1;
+    private int low = 0;       // 槽里还保留着的最小编号
+    private int filled = 0;    // 已扫出的词法单元个数
+    private int position = 0;
+    private int discarded = 0; // discardBefore 给出的编号
+    private int[] marks = new int[4];
+    private int markCount = 0;
+    private int maxWindow = 0;
+
+    StreamingTokenSource(Lexer lexer, ByteBuffer source) {
+        this.lexer = lexer;
+        lexer.setSource(source.slice());
+        this.src = source.slice();
+        this.size = src.remaining();
+        this.limit = Lexer.limitOf(src);
+        this.batch = new TokenBuffer(src);
+    }
+
+    // 扫描期间缓冲里同时保留过的最多词法单元数
+    int getMaxWindow() {
+        return maxWindow;
+    }
+
+    @Override
+    public int peek(int k) {
+        int i = position + k;
+        while (i >= filled) {
+            if (!fill()) {
+                return NONE;
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public int next() {
+        int i = peek(0);
+        position++;
+        return i;
+    }
+
+    @Override
+    public int mark() {
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, markCount * 2);
+        }
+        marks[markCount++] = position;
+        return position;
+    }
+
+    @Override
+    public void reset(int mark) {
+        if (markCount == 0 || marks[markCount - 1] != mark) {
+            throw new IllegalStateException("回退位置 " + mark + " 不是最近一次 mark");
+        }
+        markCount--;
+        position = mark;
+    }
+
+    @Override
+    public void discardBefore(int token) {
+        discarded = token;
+    }
+
+    @Override
+    public int finish() {
+        while (fill()) {
+            low = filled; // 不会再读，扫出的直接丢掉
+        }
+        return filled;
+    }
+
+    @Override
+    public TokenType type(int token) {
+        return TYPES[types[slot(token)]];
+    }
+
+    @Override
+    public String lexeme(int token) {
+        int s = slot(token);
+        String spelling = TokenBuffer.spelling(types[s], lengths[s]);
+        if (spelling != null) {
+            return spelling;
+        }
+        if (stored[s] != null) {
+            return stored[s];
+        }
+        return TokenBuffer.slice(src, types[s], starts[s], lengths[s] & 0xff);
+    }
+
+    @Override
+    public int line(int token) {
+        return lines[slot(token)];
+    }
+
+    @Override
+    public Token token(int token) {
+        return token == NONE ? null : new Token(type(token), lexeme(token), line(token));
+    }
+
+    private int slot(int token) {
+        if (token < low || token >= filled) {
+            throw new IndexOutOfBoundsException("Token 编号 " + token + " 不在窗口 [" + low + ", " + filled + ") 内");
+        }
+        return token & mask;
+    }
+
+    // 往后扫一批，扫出至少一个词法单元返回 true，源码扫完返回 false
+    private boolean fill() {
+        while (scanned < limit) {
+            int to = Math.min(scanned + BATCH_BYTES, limit);
+            while (to < size && src.get(to - 1) != '\n') {
+                to++;
+            }
+            if (to >= size) {
+                to = limit;
+            }
+            batch.clear();
+            scanned = lexer.scan(batch, scanned, to, Lexer.ENTER_NORMAL, scanLine);
+            scanLine = lexer.line;
+            if (batch.size() > 0) {
+                append();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void append() {
+        int keep = Math.min(discarded, position);
+        for (int m = 0; m < markCount; m++) {
+            keep = Math.min(keep, marks[m]);
+        }
+        low = Math.max(low, Math.min(keep, filled));
+        int n = batch.size();
+        int window = filled + n - low;
+        if (window > mask + 1) {
+            grow(Integer.highestOneBit(window - 1) << 1);
+        }
+        maxWindow = Math.max(maxWindow, window);
+        for (int j = 0; j < n; j++) {
+            int s = (filled + j) & mask;
+            types[s] = batch.rawType(j);
+            starts[s] = batch.start(j);
+            lengths[s] = batch.rawLength(j);
+            lines[s] = batch.line(j);
+            stored[s] = null;
+        }
+        for (Map.Entry<Integer, String> entry : batch.storedLexemes().entrySet()) {
+            stored[(filled + entry.getKey()) & mask] = entry.getValue();
+        }
+        filled += n;
+    }
+
+    // 按编号把 [low, filled) 搬到新容量的槽里
+    private void grow(int capacity) {
+        byte[] newTypes = new byte[capacity];
+        int[] newStarts = new int[capacity];
+        byte[] newLengths = new byte[capacity];
+        int[] newLines = new int[capacity];
+        String[] newStored = new String[capacity];
+        int newMask = capacity - 1;
+        for (int i = low; i < filled; i++) {
+            int from = i & mask;
+            int to = i & newMask;
+            newTypes[to] = types[from];
+            newStarts[to] = starts[from];
+            newLengths[to] = lengths[from];
+            newLines[to] = lines[from];
+            newStored[to] = stored[from];
+        }
+        types = newTypes;
+        starts = newStarts;
+        lengths = newLengths;
+        lines = newLines;
+        stored = newStored;
+        mask = newMask;
+    }
+}
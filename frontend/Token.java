@@ -5,11 +5,13 @@ public class Token {
     public TokenType type;
     public String value;
     public int lineNumber;
+    public Literal literal; // 字面量解码后的值，其他 Token 为 null
      
     public Token(TokenType type, String value, int lineNumber) {
         this.type = type;
         this.value = value;
         this.lineNumber = lineNumber;
+        this.literal = Literal.decode(type, value);
     }
      public String toString() {
         return type.name() + " " + value;
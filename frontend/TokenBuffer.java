@@ -0,0 +1,228 @@
+package frontend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 结构化数组存储的 Token 序列：每个 Token 只占 type / start / length / line 四个平行数组里的一格
+// （1 + 4 + 1 + 4 字节），不再是一个堆对象加一个 String。lexeme 按需生成：关键字和符号用固定拼写，标识符、数字、
+// 字符串从源码字节里切；源码里切不出来的（含 \r 或非 ASCII 的字符串、未闭合的常量、解码后的非法字符）
+// 以及 255 字节以上的长 lexeme 单独存在 lexemes 里。
+//
+// start 总是 Token 在源码里开始的位置（字符串常量是开头的引号，lexeme 从下一个字节切），
+// 增量重扫靠它在旧的 Token 序列里定位，见 IncrementalLexer。
+//
+// Parser 通过 TokenBufferSource 按下标直接读 type(i) / lexeme(i) / line(i)，不创建 Token；
+// 作为 List<Token> 使用时 get(i) 才临时构造一个 Token（AST 叶子节点需要）。
+public final class TokenBuffer extends AbstractList<Token> {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final String[] SPELLINGS = new String[TYPES.length];
+    private static final int LONG = 0xff;
+    private static final byte STRCON = (byte) TokenType.STRCON.ordinal();
+
+    static {
+        String[][] fixed = {
+                {"CONSTTK", "const"}, {"INTTK", "int"}, {"BREAKTK", "break"}, {"CONTINUETK", "continue"},
+                {"IFTK", "if"}, {"ELSETK", "else"}, {"FORTK", "for"}, {"MAINTK", "main"}, {"VOIDTK", "void"},
+                {"RETURNTK", "return"}, {"CHARTK", "char"}, {"GETCHARTK", "getchar"}, {"PRINTFTK", "printf"},
+                {"GETINTTK", "getint"}, {"NOT", "!"}, {"AND", "&&"}, {"OR", "||"}, {"MULT", "*"}, {"DIV", "/"}, {"MOD", "%"}, {"PLUS", "+"},
+                {"MINU", "-"}, {"ASSIGN", "="}, {"SEMICN", ";"}, {"COMMA", ","}, {"LSS", "<"}, {"LEQ", "<="},
+                {"GRE", ">"}, {"GEQ", ">="}, {"EQL", "=="}, {"NEQ", "!="}, {"LPARENT", "("}, {"RPARENT", ")"},
+                {"LBRACK", "["}, {"RBRACK", "]"}, {"LBRACE", "{"}, {"RBRACE", "}"}
+        };
+        for (String[] pair : fixed) {
+            SPELLINGS[TokenType.valueOf(pair[0]).ordinal()] = pair[1];
+        }
+    }
+
+    private final ByteBuffer source; // 为 null 时所有 lexeme 都在 lexemes 里
+    private byte[] types = new byte[256];
+    private int[] starts = new int[256];
+    private byte[] lengths = new byte[256]; // 无符号，LONG 表示 lexeme 在 lexemes 里
+    private int[] lines = new int[256];
+    private int size = 0;
+    private final Map<Integer, String> lexemes = new HashMap<>();
+
+    public TokenBuffer(ByteBuffer source) {
+        this.source = source;
+    }
+
+    // 把已有的 Token 列表装进来（lexeme 全部单独保存），给只有 List<Token> 的调用方用
+    public static TokenBuffer of(List<Token> tokens) {
+        if (tokens instanceof TokenBuffer) {
+            return (TokenBuffer) tokens;
+        }
+        TokenBuffer buffer = new TokenBuffer(null);
+        for (Token token : tokens) {
+            buffer.add(token.type, 0, token.value, token.lineNumber);
+        }
+        return buffer;
+    }
+
+    // lexeme 是源码 [start, start + length) 的 ASCII 字节（字符串常量再往后一个字节，跳过引号），或 type 的固定拼写
+    void add(TokenType type, int start, int length, int line) {
+        if (size == types.length) {
+            grow(size * 2);
+        }
+        if (length >= LONG && !lexemes.containsKey(size)) {
+            lexemes.put(size, slice(source, (byte) type.ordinal(), start, length));
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = (byte) Math.min(length, LONG);
+        lines[size] = line;
+        size++;
+    }
+
+    // lexeme 切不出来、单独保存，start 仍是 Token 在源码里的位置
+    void add(TokenType type, int start, String lexeme, int line) {
+        lexemes.put(size, lexeme);
+        add(type, start, lexeme.length(), line);
+    }
+
+    // 接上另一段扫描结果（两者切 lexeme 的源码相同），行号加上 lineBase
+    void append(TokenBuffer other, int lineBase) {
+        if (types.length < size + other.size) {
+            grow(Math.max(size + other.size, types.length * 2));
+        }
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            lines[size + i] = other.lines[i] + lineBase;
+        }
+        for (Map.Entry<Integer, String> entry : other.lexemes.entrySet()) {
+            lexemes.put(size + entry.getKey(), entry.getValue());
+        }
+        size += other.size;
+    }
+
+    // 增量重扫后拼出新的序列：old 的 [0, from) 不变，[oldTo, old.size) 起点和行号分别平移 byteDelta / lineDelta，
+    // 中间换成 middle 的前 mid 个（已经按新源码扫描，位置是新源码里的绝对位置）
+    static TokenBuffer splice(TokenBuffer old, ByteBuffer newSource, int from, int oldTo, TokenBuffer middle, int mid,
+                              int byteDelta, int lineDelta) {
+        int tail = old.size - oldTo;
+        TokenBuffer out = new TokenBuffer(newSource);
+        out.grow(from + mid + tail);
+        System.arraycopy(old.types, 0, out.types, 0, from);
+        System.arraycopy(old.starts, 0, out.starts, 0, from);
+        System.arraycopy(old.lengths, 0, out.lengths, 0, from);
+        System.arraycopy(old.lines, 0, out.lines, 0, from);
+        System.arraycopy(middle.types, 0, out.types, from, mid);
+        System.arraycopy(middle.starts, 0, out.starts, from, mid);
+        System.arraycopy(middle.lengths, 0, out.lengths, from, mid);
+        System.arraycopy(middle.lines, 0, out.lines, from, mid);
+        int at = from + mid;
+        System.arraycopy(old.types, oldTo, out.types, at, tail);
+        System.arraycopy(old.lengths, oldTo, out.lengths, at, tail);
+        for (int i = 0; i < tail; i++) {
+            out.starts[at + i] = old.starts[oldTo + i] + byteDelta;
+            out.lines[at + i] = old.lines[oldTo + i] + lineDelta;
+        }
+        for (Map.Entry<Integer, String> entry : old.lexemes.entrySet()) {
+            int i = entry.getKey();
+            if (i < from) {
+                out.lexemes.put(i, entry.getValue());
+            } else if (i >= oldTo) {
+                out.lexemes.put(i - oldTo + at, entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, String> entry : middle.lexemes.entrySet()) {
+            if (entry.getKey() < mid) {
+                out.lexemes.put(from + entry.getKey(), entry.getValue());
+            }
+        }
+        out.size = at + tail;
+        return out;
+    }
+
+    // 切 lexeme 用的源码，由 Token 列表转来的为 null
+    ByteBuffer source() {
+        return source;
+    }
+
+    // 词法分析结束后去掉扩容留下的空位
+    void trim() {
+        grow(size);
+    }
+
+    // 清空后重复使用，已经扩出的容量保留
+    @Override
+    public void clear() {
+        size = 0;
+        lexemes.clear();
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // 按下标读原始数据，StreamingTokenSource 把一批扫描结果搬进环形缓冲时用
+    byte rawType(int i) {
+        return types[i];
+    }
+
+    int start(int i) {
+        return starts[i];
+    }
+
+    byte rawLength(int i) {
+        return lengths[i];
+    }
+
+    Map<Integer, String> storedLexemes() {
+        return lexemes;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[types[i]];
+    }
+
+    public int line(int i) {
+        return lines[i];
+    }
+
+    public String lexeme(int i) {
+        String spelling = spelling(types[i], lengths[i]);
+        if (spelling != null) {
+            return spelling;
+        }
+        String lexeme = lexemes.get(i);
+        if (lexeme != null) {
+            return lexeme;
+        }
+        return slice(source, types[i], starts[i], lengths[i] & 0xff);
+    }
+
+    // 类型的固定拼写；单个的 & / | 长度和固定拼写不同，返回 null，和其他 ERROR 字符一样从源码里切
+    static String spelling(byte type, byte length) {
+        String spelling = SPELLINGS[type];
+        return spelling != null && (length & 0xff) == spelling.length() ? spelling : null;
+    }
+
+    static String slice(ByteBuffer source, byte type, int start, int length) {
+        byte[] bytes = new byte[length];
+        source.get(type == STRCON ? start + 1 : start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public Token get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Token 下标 " + i + " 越界，共 " + size + " 个");
+        }
+        return new Token(type(i), lexeme(i), lines[i]);
+    }
+}
@@ -0,0 +1,87 @@
+package frontend;
+
+// 已经扫完的 TokenBuffer 上的 TokenSource：编号就是下标，所有词法单元一直可读，不需要丢弃
+final class TokenBufferSource implements TokenSource {
+    private final TokenBuffer tokens;
+    private final int end;
+    private int position;
+    private boolean readPastEnd = false;
+
+    TokenBufferSource(TokenBuffer tokens) {
+        this(tokens, 0, tokens.size());
+    }
+
+    // 只读 [from, to) 一段（并行分析函数体时用），编号仍是整个 TokenBuffer 的下标，to 之后当作已经读完
+    TokenBufferSource(TokenBuffer tokens, int from, int to) {
+        this.tokens = tokens;
+        this.position = from;
+        this.end = to;
+    }
+
+    @Override
+    public int peek(int k) {
+        int i = position + k;
+        if (i < end) {
+            return i;
+        }
+        if (k > 0 || position > end) {
+            readPastEnd = true;
+        }
+        return NONE;
+    }
+
+    // 读完这一段之后还往后看过：在整个序列上分析，结果可能取决于 to 之后的词法单元
+    boolean readPastEnd() {
+        return readPastEnd;
+    }
+
+    TokenBuffer buffer() {
+        return tokens;
+    }
+
+    @Override
+    public int next() {
+        int i = peek(0);
+        position++;
+        return i;
+    }
+
+    @Override
+    public int mark() {
+        return position;
+    }
+
+    @Override
+    public void reset(int mark) {
+        position = mark;
+    }
+
+    @Override
+    public void discardBefore(int token) {
+    }
+
+    @Override
+    public int finish() {
+        return end;
+    }
+
+    @Override
+    public TokenType type(int token) {
+        return tokens.type(token);
+    }
+
+    @Override
+    public String lexeme(int token) {
+        return tokens.lexeme(token);
+    }
+
+    @Override
+    public int line(int token) {
+        return tokens.line(token);
+    }
+
+    @Override
+    public Token token(int token) {
+        return token == NONE ? null : tokens.get(token);
+    }
+}
@@ -0,0 +1,28 @@
+package frontend;
+
+import java.util.List;
+
+// 一次增量重扫的结果。tokens 是编辑后的完整序列，其中 [from, from + added) 是重新扫出来的，
+// 替换了旧序列的 [from, from + removed)；再往后的 Token 与旧序列相同，只是起点平移 byteDelta、行号平移 lineDelta
+public final class TokenEdit {
+    public final TokenBuffer tokens;
+    public final int from;
+    public final int removed;
+    public final int added;
+    public final int byteDelta;
+    public final int lineDelta;
+    public final List<Error> errors;  // 重扫范围内的词法错误，行号是编辑后的
+    public final int rescannedBytes;  // 重扫了多少字节源码
+
+    TokenEdit(TokenBuffer tokens, int from, int removed, int added, int byteDelta, int lineDelta,
+              List<Error> errors, int rescannedBytes) {
+        this.tokens = tokens;
+        this.from = from;
+        this.removed = removed;
+        this.added = added;
+        this.byteDelta = byteDelta;
+        this.lineDelta = lineDelta;
+        this.errors = errors;
+        this.rescannedBytes = rescannedBytes;
+    }
+}
@@ -0,0 +1,43 @@
+package frontend;
+
+// 语法分析读取词法单元的接口。词法单元按流中的顺序编号（从 0 开始），Parser 持有的是编号，
+// 通过 type / lexeme / line 读内容；只有一小段窗口内的编号保证可读：
+//   - 当前位置之后 peek 过的；
+//   - discardBefore 给出的编号之后的（Parser 用它保留上一个词法单元，报错要用它的行号）；
+//   - 仍未 reset 的 mark 之后的（回溯需要回到那里重新解析）。
+// 窗口之外还要用的词法单元由 Parser 自己用 token(i) 取成 Token 保存。
+public interface TokenSource {
+    int NONE = -1;
+
+    // 当前位置之后第 k 个词法单元的编号（k = 0 是当前位置上的），已经读完返回 NONE
+    int peek(int k);
+
+    // 返回当前位置上的编号并前进一个，已经读完返回 NONE
+    int next();
+
+    // 记下当前位置，reset 之前这之后的词法单元都保留
+    int mark();
+
+    // 回到 mark 记下的位置，这个 mark 随之作废（按后进先出的顺序使用）
+    void reset(int mark);
+
+    // 编号小于 token 的词法单元之后不会再读
+    void discardBefore(int token);
+
+    // 语法分析结束后把剩余的源码也扫完（没读到的部分同样要记词法错误），返回词法单元总数
+    int finish();
+
+    TokenType type(int token);
+
+    String lexeme(int token);
+
+    int line(int token);
+
+    // 取成独立的 Token（AST 叶子节点、或要保存到窗口之外的时候），NONE 返回 null
+    Token token(int token);
+
+    // 与 Token.toString() 一致，NONE 输出 "null"（调试输出里拼接 Token 的写法）
+    default String describe(int token) {
+        return token < 0 ? "null" : type(token).name() + " " + lexeme(token);
+    }
+}
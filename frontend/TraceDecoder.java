@@ -0,0 +1,69 @@
+package frontend;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// 把 TraceRecorder dump 出的二进制轨迹还原成执行器原来的文本格式。
+// 用法：java frontend.TraceDecoder data/trace.bin [输出文件]
+public class TraceDecoder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法: java frontend.TraceDecoder <trace.bin> [输出文件]");
+            return;
+        }
+        Writer out = args.length > 1 ? Files.newBufferedWriter(Paths.get(args[1])) : new OutputStreamWriter(System.out);
+        try (PrintWriter writer = new PrintWriter(out)) {
+            decode(args[0], writer);
+        }
+    }
+
+    public static void decode(String fileName, PrintWriter writer) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buf.remaining() < TraceRecorder.HEADER_SIZE || buf.getInt() != TraceRecorder.MAGIC) {
+            throw new IOException("不是 PCode 轨迹文件: " + fileName);
+        }
+        int version = buf.getInt();
+        int recordSize = buf.getInt();
+        int records = buf.getInt();
+        long total = buf.getLong();
+        if (version != TraceRecorder.VERSION || recordSize != TraceRecorder.RECORD_SIZE) {
+            throw new IOException("不支持的轨迹版本 " + version + " / 记录长度 " + recordSize);
+        }
+
+        writer.println("[TRACE] 共执行 " + total + " 条指令，轨迹保留最后 " + records + " 条");
+        PCode.OpCode[] ops = PCode.OpCode.values();
+        for (int i = 0; i < records; i++) {
+            int pos = TraceRecorder.HEADER_SIZE + i * recordSize;
+            int pc = buf.getInt(pos);
+            PCode.OpCode op = ops[buf.get(pos + 4)];
+            int level = buf.get(pos + 5);
+            int flags = buf.get(pos + 6);
+            int paramCount = buf.get(pos + 7);
+            int address = buf.getInt(pos + 8);
+            int tos = buf.getInt(pos + 12);
+            String inst = new PCode(op, level, address, paramCount).toString();
+
+            writer.println("[TRACE] 当前 PC = " + pc + ", 当前指令: " + inst);
+            writer.println("[DEBUG] === PC: " + pc + ", 指令: " + inst + ", 栈顶: " + ((flags & TraceRecorder.FLAG_TOS) != 0 ? tos : "空") + " ===");
+            if ((flags & TraceRecorder.FLAG_WRITE) != 0) {
+                int memAddr = buf.getInt(pos + 16);
+                int memVal = buf.getInt(pos + 20);
+                if (op == PCode.OpCode.STO) {
+                    writer.println(PCodeExecutor.storeLine(memVal, memAddr, memVal));
+                } else {
+                    writer.println("[DEBUG] " + op + ": 内存[" + memAddr + "]=" + memVal);
+                }
+            }
+        }
+    }
+}
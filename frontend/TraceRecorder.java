@@ -0,0 +1,133 @@
+package frontend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// 紧凑的二进制执行轨迹：每条指令一条定长记录，写入堆外环形缓冲区，
+// 只保留最近 capacity 条。出错时（或按需）dump 到文件，再用 TraceDecoder 还原成
+// 与 [TRACE]/[DEBUG] 文本相同的格式，代替每条指令拼接字符串打印到 stdout。
+//
+// 记录格式（RECORD_SIZE = 24 字节，小端）：
+//   int  pc
+//   byte op（PCode.OpCode 序号）
+//   byte level
+//   byte flags（FLAG_TOS：执行前栈非空；FLAG_WRITE：本指令写了内存）
+//   byte paramCount（CALL 的参数个数）
+//   int  address
+//   int  tos（执行前的栈顶）
+//   int  memAddr / int memVal（本指令最后一次内存写）
+public class TraceRecorder {
+    public static final int RECORD_SIZE = 24;
+    public static final int MAGIC = 0x52544350; // "PCTR"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int DEFAULT_CAPACITY = 1 << 20; // 约 100 万条，24MB 堆外内存
+
+    static final int FLAG_TOS = 1;
+    static final int FLAG_WRITE = 2;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private long count = 0;   // 累计写入的记录数
+    private int current = -1; // 当前记录的起始字节偏移
+    private String failureDumpPath = "data/trace.bin";
+
+    public TraceRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TraceRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity 必须为正数: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // 执行一条指令前调用
+    public void record(int pc, PCode inst, boolean hasTos, int tos) {
+        int pos = (int) (count % capacity) * RECORD_SIZE;
+        buffer.putInt(pos, pc);
+        buffer.put(pos + 4, (byte) inst.getOp().ordinal());
+        buffer.put(pos + 5, (byte) inst.getLevel());
+        buffer.put(pos + 6, (byte) (hasTos ? FLAG_TOS : 0));
+        buffer.put(pos + 7, (byte) inst.getParamCount());
+        buffer.putInt(pos + 8, inst.getAddress());
+        buffer.putInt(pos + 12, tos);
+        buffer.putInt(pos + 16, 0);
+        buffer.putInt(pos + 20, 0);
+        current = pos;
+        count++;
+    }
+
+    // 当前指令写内存时调用，覆盖本记录的内存写字段
+    public void memoryWrite(int addr, int value) {
+        if (current < 0) {
+            return;
+        }
+        buffer.put(current + 6, (byte) (buffer.get(current + 6) | FLAG_WRITE));
+        buffer.putInt(current + 16, addr);
+        buffer.putInt(current + 20, value);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setFailureDumpPath(String failureDumpPath) {
+        this.failureDumpPath = failureDumpPath;
+    }
+
+    public String getFailureDumpPath() {
+        return failureDumpPath;
+    }
+
+    // 把缓冲区中的记录按从旧到新的顺序写到文件
+    public void dump(String fileName) throws IOException {
+        int retained = (int) Math.min(count, capacity);
+        int oldest = (int) ((count - retained) % capacity);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(retained).putLong(count);
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            // 环形缓冲区分两段：[oldest, 末尾) 和 [0, oldest)
+            int firstPart = Math.min(retained, capacity - oldest);
+            writeRange(channel, oldest, firstPart);
+            writeRange(channel, 0, retained - firstPart);
+        }
+    }
+
+    private void writeRange(FileChannel channel, int firstRecord, int records) throws IOException {
+        if (records <= 0) {
+            return;
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((firstRecord + records) * RECORD_SIZE);
+        slice.position(firstRecord * RECORD_SIZE);
+        while (slice.hasRemaining()) {
+            channel.write(slice);
+        }
+    }
+
+    // 出错时由执行器调用，失败不再抛出
+    void dumpOnFailure() {
+        try {
+            dump(failureDumpPath);
+            System.err.println("[TRACE] 最近 " + Math.min(count, capacity) + " 条指令轨迹已写入 " + failureDumpPath);
+        } catch (IOException e) {
+            System.err.println("[TRACE] 轨迹写入失败: " + e.getMessage());
+        }
+    }
+}
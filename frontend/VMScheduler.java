@@ -0,0 +1,244 @@
+package frontend;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 协作式分时调度器：用少量载体线程轮流运行大量 PCodeExecutor。
+// 每个 VM 每次最多跑一个时间片（在向后跳转 / CALL 处检查），然后回到运行队列。
+// 公平性按虚拟运行时间（vruntime）排序：vruntime = 已执行指令数 * NICE_0_WEIGHT / weight，
+// 优先级越高 weight 越大，vruntime 增长越慢，因而更常被调度；同优先级之间按 vruntime 轮转。
+public class VMScheduler {
+    public static final long DEFAULT_QUANTUM = 10_000; // 每个时间片的指令数
+    public static final int MIN_PRIORITY = 1;
+    public static final int NORM_PRIORITY = 5;
+    public static final int MAX_PRIORITY = 10;
+    private static final long NICE_0_WEIGHT = 1024;
+
+    private final PriorityBlockingQueue<Task> runQueue = new PriorityBlockingQueue<>();
+    private final List<Thread> carriers = new ArrayList<>();
+    private final long quantum;
+    private final AtomicLong sequence = new AtomicLong(); // vruntime 相同时按提交顺序
+    private volatile long minVruntime = 0; // 新任务从当前最小 vruntime 开始，避免饿死老任务
+    private volatile boolean shutdown = false;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+
+    // 一个被调度的 VM 及其计账信息
+    public static class Task implements Comparable<Task> {
+        public final PCodeExecutor vm;
+        public final int priority;
+        private final long weight;
+        private long vruntime;
+        private long seq;
+        private long instructions = 0; // 已执行指令数
+        private long cpuNanos = 0;     // 累计 CPU 时间（不支持时为墙钟时间）
+        private int slices = 0;        // 被调度的次数
+        private PCodeExecutor.Status status = null;
+        private boolean parked = false; // 因等待输入而离开运行队列
+
+        Task(PCodeExecutor vm, int priority) {
+            this.vm = vm;
+            this.priority = priority;
+            this.weight = NICE_0_WEIGHT * priority / NORM_PRIORITY;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (vruntime != other.vruntime) {
+                return Long.compare(vruntime, other.vruntime);
+            }
+            return Long.compare(seq, other.seq);
+        }
+
+        public synchronized long getInstructions() {
+            return instructions;
+        }
+
+        public synchronized long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public synchronized int getSlices() {
+            return slices;
+        }
+
+        public synchronized PCodeExecutor.Status getStatus() {
+            return status;
+        }
+
+        public synchronized boolean isDone() {
+            return status != null;
+        }
+
+        public synchronized boolean isParked() {
+            return parked;
+        }
+
+        // 挂起等待输入，调用方需持有 task 锁并已确认输入尚未到达
+        private synchronized void park() {
+            parked = true;
+            notifyAll();
+        }
+
+        private synchronized boolean unpark() {
+            if (!parked) {
+                return false;
+            }
+            parked = false;
+            return true;
+        }
+
+        // 等待 VM 运行结束，返回最终状态
+        public synchronized PCodeExecutor.Status await() throws InterruptedException {
+            while (status == null) {
+                wait();
+            }
+            return status;
+        }
+
+        // 等待 VM 结束或因等待输入被挂起
+        public synchronized void awaitIdle() throws InterruptedException {
+            while (status == null && !parked) {
+                wait();
+            }
+        }
+
+        private synchronized void account(long executed, long nanos) {
+            instructions += executed;
+            cpuNanos += nanos;
+            slices++;
+            vruntime += executed * NICE_0_WEIGHT / weight;
+        }
+
+        private synchronized void finish(PCodeExecutor.Status finalStatus) {
+            status = finalStatus;
+            notifyAll();
+        }
+
+        @Override
+        public String toString() {
+            return "[prio=" + priority + ", instructions=" + instructions + ", cpu=" + (cpuNanos / 1000) + "us, slices=" + slices + ", status=" + status + "]";
+        }
+    }
+
+    public VMScheduler(int carrierCount) {
+        this(carrierCount, DEFAULT_QUANTUM);
+    }
+
+    public VMScheduler(int carrierCount, long quantum) {
+        if (carrierCount <= 0 || quantum <= 0) {
+            throw new IllegalArgumentException("carrierCount 和 quantum 必须为正数");
+        }
+        this.quantum = quantum;
+        this.cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+        for (int i = 0; i < carrierCount; i++) {
+            Thread t = new Thread(this::carrierLoop, "vm-carrier-" + i);
+            t.setDaemon(true);
+            carriers.add(t);
+            t.start();
+        }
+    }
+
+    public Task submit(PCodeExecutor vm) {
+        return submit(vm, NORM_PRIORITY);
+    }
+
+    public Task submit(PCodeExecutor vm, int priority) {
+        if (shutdown) {
+            throw new IllegalStateException("调度器已关闭");
+        }
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("优先级必须在 " + MIN_PRIORITY + ".." + MAX_PRIORITY + " 之间: " + priority);
+        }
+        Task task = new Task(vm, priority);
+        task.vruntime = minVruntime;
+        task.seq = sequence.getAndIncrement();
+        runQueue.add(task);
+        return task;
+    }
+
+    // 载体线程：取出 vruntime 最小的 VM，跑一个时间片，未结束则重新入队
+    private void carrierLoop() {
+        while (!shutdown) {
+            Task task;
+            try {
+                task = runQueue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+            minVruntime = task.vruntime;
+
+            long before = task.vm.getInstructionCount();
+            long t0 = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+            PCodeExecutor.Status result;
+            try {
+                result = task.vm.run(quantum);
+            } catch (RuntimeException e) {
+                result = PCodeExecutor.Status.FAILED;
+            }
+            long t1 = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+            task.account(task.vm.getInstructionCount() - before, t1 - t0);
+
+            if (result == PCodeExecutor.Status.YIELDED) {
+                task.seq = sequence.getAndIncrement();
+                runQueue.add(task);
+            } else if (result == PCodeExecutor.Status.NEEDS_INPUT) {
+                // 挂起：不占用载体线程，也不在运行队列里，等 resume 送来输入
+                synchronized (task) {
+                    if (task.vm.isInputReady()) {
+                        task.seq = sequence.getAndIncrement();
+                        runQueue.add(task);
+                    } else {
+                        task.park();
+                    }
+                }
+            } else {
+                task.finish(result);
+            }
+        }
+    }
+
+    // 向挂起（或仍在运行）的 VM 送入一行输入；若它正因等待输入挂起则重新入队
+    public void resume(Task task, String line) {
+        synchronized (task) {
+            task.vm.feedInput(line);
+            wake(task);
+        }
+    }
+
+    // 通知 VM 不会再有输入
+    public void closeInput(Task task) {
+        synchronized (task) {
+            task.vm.closeInput();
+            wake(task);
+        }
+    }
+
+    private void wake(Task task) {
+        if (task.unpark()) {
+            task.vruntime = Math.max(task.vruntime, minVruntime);
+            task.seq = sequence.getAndIncrement();
+            runQueue.add(task);
+        }
+    }
+
+    public int getQueuedCount() {
+        return runQueue.size();
+    }
+
+    // 停止所有载体线程；仍在队列中的 VM 不再被调度
+    public void shutdown() {
+        shutdown = true;
+        for (Thread t : carriers) {
+            t.interrupt();
+        }
+    }
+}